@@ -0,0 +1,16 @@
+#!/bin/bash
+#
+# Compile and run one benchmark from src/com/ds/avare/bench
+# Usage: ./run.sh <BenchmarkClass> [args]
+#
+
+set -e
+
+DIR=$(cd $(dirname $0); pwd)
+OUT=$DIR/out
+NAME=$1
+shift
+
+mkdir -p $OUT
+javac -nowarn -d $OUT -sourcepath $DIR/src:$DIR/shim:$DIR/../../src $DIR/src/com/ds/avare/bench/$NAME.java
+java -cp $OUT com.ds.avare.bench.$NAME "$@"
@@ -0,0 +1,185 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.bench;
+
+import java.util.Random;
+
+import com.ds.avare.gdl90.BitInputStream;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Reads FIS-B APDU headers with the register based BitInputStream, and with 
+ * the older bit at a time reader kept here for comparison.
+ *
+ */
+public class BitInputStreamBench {
+
+    private static final int APDUS = 4096;
+    private static final int APDU_LEN = 64;
+
+    /**
+     * Bit at a time reader, as BitInputStream was before.
+     */
+    private static class BitByBitInputStream {
+
+        private byte mBuffer[];
+        private int mLocation;
+        private int mIBuffer;
+        private int mBitsLeft;
+     
+        public BitByBitInputStream(byte buffer[]) {
+            mBuffer = buffer;
+            mLocation = 0;
+            mBitsLeft = 8;
+            mIBuffer = ((int)buffer[0]) & 0xFF;
+        }
+     
+        public int getBits(final int aNumberOfBits) {
+            int value = 0;
+            int num = aNumberOfBits;
+            while(num-- > 0) {
+                value <<= 1;
+                value |= readBit();
+            }
+            return value;
+        }
+     
+        public int readBit() { 
+            if (mBitsLeft == 0) {
+                mIBuffer = ((int)mBuffer[++mLocation]) & 0xFF;
+                mBitsLeft = 8;
+            }
+            mBitsLeft--;
+            return (mIBuffer >> mBitsLeft) & 0x1;
+        } 
+        
+        public int totalRead() {
+            return mLocation + 1;
+        }
+    }
+
+    /**
+     * Same fields as ProductFactory reads
+     * @param data
+     * @return
+     */
+    private static int headerOld(byte data[][]) {
+        int sum = 0;
+        for(int i = 0; i < data.length; i++) {
+            BitByBitInputStream s = new BitByBitInputStream(data[i]);
+            boolean app = s.getBits(1) != 0;
+            boolean geo = s.getBits(1) != 0;
+            s.getBits(1);
+            sum += s.getBits(11);
+            if(app) {
+                s.getBits(8);
+            }
+            if(geo) {
+                s.getBits(20);
+            }
+            s.getBits(1);
+            int opts = s.getBits(2);
+            if((opts & 0x02) != 0) {
+                sum += s.getBits(4);
+                sum += s.getBits(5);
+            }
+            sum += s.getBits(5);
+            sum += s.getBits(6);
+            if((opts & 0x01) != 0) {
+                sum += s.getBits(6);
+            }
+            sum += s.totalRead();
+        }
+        return sum;
+    }
+
+    /**
+     * 
+     * @param data
+     * @return
+     */
+    private static int headerNew(byte data[][]) {
+        int sum = 0;
+        BitInputStream s = new BitInputStream();
+        for(int i = 0; i < data.length; i++) {
+            s.reset(data[i], 0, data[i].length);
+            boolean app = s.getBits(1) != 0;
+            boolean geo = s.getBits(1) != 0;
+            s.skipBits(1);
+            sum += s.getBits(11);
+            if(app) {
+                s.skipBits(8);
+            }
+            if(geo) {
+                s.skipBits(20);
+            }
+            s.skipBits(1);
+            int opts = s.getBits(2);
+            if((opts & 0x02) != 0) {
+                sum += s.getBits(4);
+                sum += s.getBits(5);
+            }
+            sum += s.getBits(5);
+            sum += s.getBits(6);
+            if((opts & 0x01) != 0) {
+                sum += s.getBits(6);
+            }
+            sum += s.totalRead();
+        }
+        return sum;
+    }
+
+    /**
+     * 
+     * @param args [iterations]
+     */
+    public static void main(String args[]) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+        Random r = new Random(0);
+        byte data[][] = new byte[APDUS][APDU_LEN];
+        for(int i = 0; i < APDUS; i++) {
+            r.nextBytes(data[i]);
+        }
+
+        if(headerOld(data) != headerNew(data)) {
+            System.out.println("Readers disagree");
+            System.exit(1);
+        }
+
+        /*
+         * Warm up, then measure
+         */
+        int sink = 0;
+        for(int i = 0; i < iterations / 4; i++) {
+            sink += headerOld(data) + headerNew(data);
+        }
+
+        long t0 = System.nanoTime();
+        for(int i = 0; i < iterations; i++) {
+            sink += headerOld(data);
+        }
+        long t1 = System.nanoTime();
+        for(int i = 0; i < iterations; i++) {
+            sink += headerNew(data);
+        }
+        long t2 = System.nanoTime();
+
+        double n = (double)iterations * APDUS;
+        System.out.println(String.format("bit by bit : %6.1f ns/header", (t1 - t0) / n));
+        System.out.println(String.format("register   : %6.1f ns/header", (t2 - t1) / n));
+        System.out.println(String.format("speedup    : %6.2fx", (double)(t1 - t0) / (double)(t2 - t1)));
+        System.out.println("(" + sink + ")");
+    }
+}
@@ -0,0 +1,140 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+
+import com.ds.avare.gdl90.CaptureTransport;
+import com.ds.avare.gdl90.DataBuffer;
+import com.ds.avare.gdl90.FisBuffer;
+import com.ds.avare.gdl90.Id6364Product;
+import com.ds.avare.gdl90.Message;
+import com.ds.avare.gdl90.MessageFactory;
+import com.ds.avare.gdl90.Product;
+import com.ds.avare.gdl90.UplinkMessage;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Throughput of the ADS-B decode path, DataBuffer -> MessageFactory -> 
+ * ProductFactory -> NEXRAD blocks, replaying a capture as fast as possible.
+ * Reports frames/sec, products/sec and bytes allocated per frame.
+ *
+ */
+public class DecodeBench {
+
+    private long mFrames;
+    private long mProducts;
+    private long mBlocks;
+    
+    /**
+     * Replay whole capture once through the decode path
+     * @param capture
+     */
+    private void run(byte capture[]) {
+        CaptureTransport t = new CaptureTransport(new ByteArrayInputStream(capture), 0);
+        t.connect();
+        DataBuffer buffer = new DataBuffer(32768);
+        byte read[] = new byte[32768];
+        byte frame[] = new byte[1024];
+        UplinkMessage uplink = new UplinkMessage();
+        
+        int red;
+        while((red = t.read(read)) >= 0) {
+            buffer.put(read, red);
+            int len;
+            while(0 != (len = buffer.get(frame))) {
+                mFrames++;
+                Message m = MessageFactory.buildMessage(frame, len, null, uplink);
+                if(!(m instanceof UplinkMessage)) {
+                    continue;
+                }
+                FisBuffer fis = ((UplinkMessage)m).getFis();
+                for(int i = 0; i < fis.getProductCount(); i++) {
+                    Product p = fis.getProduct(i);
+                    if(null == p) {
+                        continue;
+                    }
+                    mProducts++;
+                    if(p instanceof Id6364Product && null != ((Id6364Product)p).getRle()) {
+                        mBlocks++;
+                    }
+                }
+            }
+        }
+        t.disconnect();
+    }
+    
+    /**
+     * 
+     * @return bytes allocated so far by this thread, -1 if JVM cannot tell
+     */
+    private static long allocated() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return -1;
+    }
+    
+    /**
+     * 
+     * @param args [capture file] [iterations]
+     * @throws IOException
+     */
+    public static void main(String args[]) throws IOException {
+        byte capture[];
+        if(args.length > 0 && !args[0].equals("-")) {
+            InputStream in = new FileInputStream(args[0]);
+            capture = new byte[(int)new java.io.File(args[0]).length()];
+            int red = 0;
+            while(red < capture.length) {
+                red += in.read(capture, red, capture.length - red);
+            }
+            in.close();
+        }
+        else {
+            capture = SyntheticCapture.make(600, 0);
+        }
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        
+        /*
+         * Warm up
+         */
+        for(int i = 0; i < Math.max(1, iterations / 4); i++) {
+            new DecodeBench().run(capture);
+        }
+        
+        DecodeBench b = new DecodeBench();
+        long a0 = allocated();
+        long t0 = System.nanoTime();
+        for(int i = 0; i < iterations; i++) {
+            b.run(capture);
+        }
+        long t1 = System.nanoTime();
+        long a1 = allocated();
+        
+        double sec = (t1 - t0) / 1e9;
+        System.out.println(String.format("frames/sec   : %12.0f", b.mFrames / sec));
+        System.out.println(String.format("products/sec : %12.0f", b.mProducts / sec));
+        System.out.println(String.format("blocks/sec   : %12.0f", b.mBlocks / sec));
+        if(a0 >= 0) {
+            System.out.println(String.format("bytes/frame  : %12.1f", (double)(a1 - a0) / b.mFrames));
+        }
+    }
+}
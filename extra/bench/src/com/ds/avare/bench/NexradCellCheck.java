@@ -0,0 +1,51 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.bench;
+
+import com.ds.avare.gdl90.Nexrad;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Walks every NEXRAD block number and checks that each lands in a cell of 
+ * its own on the block grid NexradImage makes its pages from.
+ * Exits with 1 on the first two blocks that share a cell.
+ *
+ */
+public class NexradCellCheck {
+
+    /*
+     * 900 rings of 450 blocks up to 60 degrees, then 450 rings of 225
+     */
+    private static final int BLOCKS = 405000 + 450 * 225;
+
+    public static void main(String args[]) {
+        int rows = 900 + 450;
+        int cells[] = new int[rows * Nexrad.COLUMNS];
+        for(int block = 0; block < BLOCKS; block++) {
+            int col = Nexrad.getBlockColumn(block);
+            int row = Nexrad.getBlockRow(block);
+            if(col < 0 || col >= Nexrad.COLUMNS || row < 0 || row >= rows) {
+                System.out.println("Block " + block + " off the grid at " + col + "," + row);
+                System.exit(1);
+            }
+            int cell = row * Nexrad.COLUMNS + col;
+            if(0 != cells[cell]) {
+                System.out.println("Blocks " + (cells[cell] - 1) + " and " + block + " share cell " + col + "," + row);
+                System.exit(1);
+            }
+            cells[cell] = block + 1;
+        }
+        System.out.println(BLOCKS + " blocks in " + BLOCKS + " cells, OK");
+    }
+}
@@ -0,0 +1,173 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import com.ds.avare.gdl90.CaptureRecorder;
+import com.ds.avare.gdl90.Crc;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Makes a deterministic capture of heartbeat, ownship and uplink frames, 
+ * uplinks full of NEXRAD blocks, for when no recorded capture is at hand.
+ *
+ */
+public class SyntheticCapture {
+
+    private static final int UPLINKS_PER_SECOND = 4;
+    private static final int PAYLOAD = 424;
+
+    /**
+     * 
+     * @param seconds of traffic to make
+     * @param seed
+     * @return capture file contents
+     */
+    public static byte[] make(int seconds, long seed) {
+        Random r = new Random(seed);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            CaptureRecorder rec = new CaptureRecorder(out);
+            for(int s = 0; s < seconds; s++) {
+                byte f[] = frame(0x00, new byte[] {(byte)0x81, 0x41, (byte)0xDB, (byte)0xD0, 0x08, 0x02});
+                rec.write(f, f.length, 0);
+                f = frame(0x0A, ownship(r));
+                rec.write(f, f.length, 100);
+                for(int u = 0; u < UPLINKS_PER_SECOND; u++) {
+                    f = frame(0x07, uplink(r));
+                    rec.write(f, f.length, 1000 / (UPLINKS_PER_SECOND + 1));
+                }
+            }
+            rec.close();
+        }
+        catch(IOException e) {
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * 
+     * @param r
+     * @return
+     */
+    private static byte[] ownship(Random r) {
+        byte msg[] = new byte[27];
+        r.nextBytes(msg);
+        return msg;
+    }
+    
+    /**
+     * Uplink with NEXRAD RLE blocks, product 63
+     * @param r
+     * @return
+     */
+    private static byte[] uplink(Random r) {
+        byte msg[] = new byte[3 + 8 + PAYLOAD];
+        msg[3 + 6] = 0x20; // application data valid
+        int i = 3 + 8;
+        int end = i + PAYLOAD;
+        while(true) {
+            byte apdu[] = nexrad(r);
+            if(i + 2 + apdu.length > end) {
+                break;
+            }
+            int len = apdu.length;
+            msg[i] = (byte)(len >> 1);
+            msg[i + 1] = (byte)((len & 1) << 7);
+            System.arraycopy(apdu, 0, msg, i + 2, len);
+            i += 2 + len;
+        }
+        return msg;
+    }
+    
+    /**
+     * 
+     * @param r
+     * @return
+     */
+    private static byte[] nexrad(Random r) {
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        
+        /*
+         * APDU header, no app method, no geo locator, product 63, 
+         * not segmented, hours and minutes only: 28 bits
+         */
+        int header = (63 << 18) | (r.nextInt(24) << 10) | (r.nextInt(60) << 4);
+        b.write(header >> 24);
+        b.write(header >> 16);
+        b.write(header >> 8);
+        b.write(header);
+        
+        int block = r.nextInt(400000);
+        b.write(0x80 | ((block >> 16) & 0x0F));
+        b.write(block >> 8);
+        b.write(block);
+        
+        int bins = 32 * 4;
+        while(bins > 0) {
+            int run = Math.min(bins, 1 + r.nextInt(24));
+            b.write(((run - 1) << 3) | r.nextInt(8));
+            bins -= run;
+        }
+        return b.toByteArray();
+    }
+    
+    /**
+     * Add type, CRC, escapes and flags
+     * @param type
+     * @param msg
+     * @return
+     */
+    private static byte[] frame(int type, byte msg[]) {
+        byte raw[] = new byte[msg.length + 3];
+        raw[0] = (byte)type;
+        System.arraycopy(msg, 0, raw, 1, msg.length);
+        int crc = 0;
+        for(int i = 0; i < msg.length + 1; i++) {
+            crc = Crc.update(crc, raw[i]);
+        }
+        raw[msg.length + 1] = (byte)crc;
+        raw[msg.length + 2] = (byte)(crc >> 8);
+        
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0x7E);
+        for(int i = 0; i < raw.length; i++) {
+            if(raw[i] == 0x7E || raw[i] == 0x7D) {
+                out.write(0x7D);
+                out.write(raw[i] ^ 0x20);
+            }
+            else {
+                out.write(raw[i]);
+            }
+        }
+        out.write(0x7E);
+        return out.toByteArray();
+    }
+    
+    /**
+     * Write a synthetic capture to a file
+     * @param args file [seconds]
+     * @throws IOException
+     */
+    public static void main(String args[]) throws IOException {
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+        FileOutputStream f = new FileOutputStream(args[0]);
+        f.write(make(seconds, 0));
+        f.close();
+    }
+}
@@ -420,6 +420,11 @@ public class ChartsDownloadActivity extends Activity {
                     Toast.makeText(ChartsDownloadActivity.this, getString(R.string.download) + " " 
                             + getString(R.string.Success), Toast.LENGTH_SHORT).show();
     
+                    /*
+                     * New files in place, connections to old ones go
+                     */
+                    mService.getDBResource().close();
+    
                     /*
                      * If TFR fetched, parse it. 
                      */
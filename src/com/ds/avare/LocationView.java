@@ -16,7 +16,10 @@ package com.ds.avare;
 import java.util.LinkedList;
 import java.util.List;
 
-import com.ds.avare.gdl90.NexradBitmap;
+import com.ds.avare.gdl90.NexradImage;
+import com.ds.avare.gdl90.NexradPage;
+import com.ds.avare.gdl90.TrafficLayer;
+import com.ds.avare.gdl90.TrafficSnapshot;
 import com.ds.avare.gps.GpsParams;
 import com.ds.avare.place.Destination;
 import com.ds.avare.place.Obstacle;
@@ -89,6 +92,16 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
     private BitmapHolder               mObstacleBitmap;
     private BitmapHolder               mLineHeadingBitmap;
     
+    /**
+     * ADS-B traffic
+     */
+    private TrafficLayer               mTrafficLayer;
+    
+    /*
+     * Visible lon/lat window, west, east, north, south
+     */
+    private double                     mWindow[];
+    
     /**
      * The magic of multi touch
      */
@@ -272,6 +285,8 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         mLineHeadingBitmap = new BitmapHolder(context, R.drawable.line_heading);
         mRunwayBitmap = new BitmapHolder(context, R.drawable.runway_extension);
         mObstacleBitmap = new BitmapHolder(context, R.drawable.obstacle);
+        mTrafficLayer = new TrafficLayer(context);
+        mWindow = new double[4];
         mMultiTouchC = new MultiTouchController<Object>(this);
         mCurrTouchPoint = new PointInfo();
         
@@ -816,6 +831,57 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
     }
 
     
+    /**
+     * Lon/lat window that can be seen on screen
+     * @param window west, east, north, south
+     */
+    private void getWindow(double window[]) {
+        double west = mOrigin.getLongitudeLeft();
+        double east = mOrigin.getLongitudeRight();
+        double north = mOrigin.getLatitudeUpper();
+        double south = mOrigin.getLatitudeLower();
+        if(mTrackUp) {
+            /*
+             * Map is rotated around us, so screen can show anything as far 
+             * as its farthest corner from us.
+             */
+            float x = (float)mOrigin.getOffsetX(mGpsParams.getLongitude());
+            float y = (float)mOrigin.getOffsetY(mGpsParams.getLatitude());
+            double dx = Math.max(x, getWidth() - x);
+            double dy = Math.max(y, getHeight() - y);
+            double r = Math.sqrt(dx * dx + dy * dy);
+            double lonpx = (east - west) / getWidth();
+            double latpx = (north - south) / getHeight();
+            west = mGpsParams.getLongitude() - r * lonpx;
+            east = mGpsParams.getLongitude() + r * lonpx;
+            north = mGpsParams.getLatitude() + r * latpx;
+            south = mGpsParams.getLatitude() - r * latpx;
+        }
+        window[0] = west;
+        window[1] = east;
+        window[2] = north;
+        window[3] = south;
+    }
+    
+    /**
+     * 
+     * @param canvas
+     */
+    private void drawTraffic(Canvas canvas) {
+        if(mService == null || null != mPointProjection) {
+            return;
+        }
+        TrafficSnapshot traffic = mService.getTraffic();
+        if(traffic.getCount() == 0) {
+            mService.setTrafficCounts(0, 0);
+            return;
+        }
+        
+        getWindow(mWindow);
+        mTrafficLayer.draw(canvas, mOrigin, traffic, mWindow[0], mWindow[1], mWindow[2], mWindow[3]);
+        mService.setTrafficCounts(mTrafficLayer.getDrawn(), mTrafficLayer.getCulled());
+    }
+
     /**
      * 
      * @param canvas
@@ -824,29 +890,47 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
         if(mService == null) {
             return;
         }
-        SparseArray<NexradBitmap> bitmaps = mService.getNexradImages();
-        if(null == bitmaps) {
+        NexradImage image = mService.getNexradImage();
+        if(null == image) {
             return;
         }
-        for(int i = 0; i < bitmaps.size(); i++) {
-            int key = bitmaps.keyAt(i);
-            NexradBitmap b = bitmaps.get(key);
-            BitmapHolder bitmap = b.getBitmap();
+        SparseArray<NexradPage> pages = image.getImages();
+        getWindow(mWindow);
+        image.newFrame();
+        long now = System.currentTimeMillis();
+        for(int i = 0; i < pages.size(); i++) {
+            NexradPage p = pages.valueAt(i);
+            if(p.getLonTopLeft() > mWindow[1] || p.getLonRight() < mWindow[0] ||
+                    p.getLatTopLeft() < mWindow[3] || p.getLatBottom() > mWindow[2]) {
+                /*
+                 * Not on screen
+                 */
+                continue;
+            }
+            /*
+             * Only pages on screen are made into bitmaps
+             */
+            BitmapHolder bitmap = image.getBitmap(p);
             
             if(null != bitmap) {                 
                 /*
                  * 
                  */
-                float scalex = (float)(b.getScaleX() / mPx);
-                float scaley = (float)(b.getScaleY() / mPy);
-                float x = (float)mOrigin.getOffsetX(b.getLonTopLeft());
-                float y = (float)mOrigin.getOffsetY(b.getLatTopLeft());
+                float scalex = (float)(p.getScaleX() / mPx);
+                float scaley = (float)(p.getScaleY() / mPy);
+                float x = (float)mOrigin.getOffsetX(p.getLonTopLeft());
+                float y = (float)mOrigin.getOffsetY(p.getLatTopLeft());
                 bitmap.getTransform().setScale(scalex * mScale.getScaleFactor(), scaley * mScale.getScaleCorrected());
                 bitmap.getTransform().postTranslate(x, y);
     
+                /*
+                 * Fade old weather
+                 */
+                mPaint.setAlpha((now - p.getNewestTime()) > p.getTtl() / 2 ? 0x7F : 0xFF);
                 canvas.drawBitmap(bitmap.getBitmap(), bitmap.getTransform(), mPaint);
             }
         }
+        mPaint.setAlpha(0xFF);
     }
     
     /**
@@ -1091,6 +1175,7 @@ public class LocationView extends View implements MultiTouchObjectCanvas<Object>
     	drawAirSigMet(canvas);
         drawTrack(canvas);
         drawObstacles(canvas);
+        drawTraffic(canvas);
         drawAircraft(canvas);
         if(mTrackUp) {
             canvas.restore();
@@ -0,0 +1,225 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare;
+
+import java.util.Locale;
+
+import com.ds.avare.R;
+import com.ds.avare.storage.DataSource;
+import com.ds.avare.storage.Preferences;
+import com.ds.avare.storage.QueryStats;
+import com.ds.avare.utils.Helper;
+
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.app.Activity;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.Window;
+import android.view.View.OnClickListener;
+import android.widget.Button;
+import android.widget.TextView;
+
+/**
+ * @author zkhan
+ * Shows time taken by database lookups, per method and per query, and connections,
+ * and traffic targets drawn and culled in last map frame.
+ * Text can be shared to send it with a report.
+ * Index benchmark runs on a copy of databases in maps folder, and its result is added to text.
+ */
+public class QueryStatsActivity extends Activity {
+
+    private TextView mText;
+    private Button mRefreshButton;
+    private Button mResetButton;
+    private Button mShareButton;
+    private Button mBenchmarkButton;
+    
+    /*
+     * Result of last index benchmark
+     */
+    private String mBenchmark;
+    
+    private StorageService mService;
+    
+    /* (non-Javadoc)
+     * @see android.app.Activity#onCreate(android.os.Bundle)
+     */
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        Helper.setTheme(this);
+        super.onCreate(savedInstanceState);
+        
+        requestWindowFeature(Window.FEATURE_NO_TITLE);
+
+        LayoutInflater layoutInflater = (LayoutInflater)getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+        View view = layoutInflater.inflate(R.layout.querystats, null);
+        setContentView(view);
+        mText = (TextView)view.findViewById(R.id.querystats_text);
+        
+        mRefreshButton = (Button)view.findViewById(R.id.querystats_button_refresh);
+        mRefreshButton.setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                update();
+            }
+        });
+        
+        mResetButton = (Button)view.findViewById(R.id.querystats_button_reset);
+        mResetButton.setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                QueryStats.getInstance().reset();
+                update();
+            }
+        });
+        
+        mShareButton = (Button)view.findViewById(R.id.querystats_button_share);
+        mShareButton.setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                Intent intent = new Intent(Intent.ACTION_SEND);
+                intent.setType("text/plain");
+                intent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.QueryStatsLabel));
+                intent.putExtra(Intent.EXTRA_TEXT, getReport());
+                try {
+                    startActivity(Intent.createChooser(intent, getString(R.string.Share)));
+                }
+                catch (Exception e) {
+                }
+            }
+        });
+
+        mBenchmarkButton = (Button)view.findViewById(R.id.querystats_button_benchmark);
+        mBenchmarkButton.setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if(null == mService) {
+                    return;
+                }
+                mBenchmarkButton.setEnabled(false);
+                new BenchmarkTask().execute(mService.getDBResource(), 
+                        new Preferences(getApplicationContext()).mapsFolder());
+            }
+        });
+
+        mService = null;
+        mBenchmark = null;
+    }
+    
+    /**
+     * Slow, copies databases
+     */
+    private class BenchmarkTask extends AsyncTask<Object, Void, String> {
+
+        /* (non-Javadoc)
+         * @see android.os.AsyncTask#doInBackground(Params[])
+         */
+        @Override
+        protected String doInBackground(Object... vals) {
+            return ((DataSource)vals[0]).benchmarkIndexes((String)vals[1]);
+        }
+        
+        /* (non-Javadoc)
+         * @see android.os.AsyncTask#onPostExecute(java.lang.Object)
+         */
+        @Override
+        protected void onPostExecute(String result) {
+            mBenchmark = result;
+            mBenchmarkButton.setEnabled(true);
+            update();
+        }
+    }
+    
+    /**
+     * 
+     * @return text dump of all numbers
+     */
+    private String getReport() {
+        String report = QueryStats.getInstance().getReport();
+        if(null != mService) {
+            report += "\n" + mService.getDBResource().getPoolStats();
+            report += String.format(Locale.US, "\ntraffic last frame drawn %d culled %d\n", 
+                    mService.getTrafficDrawn(), mService.getTrafficCulled());
+        }
+        if(null != mBenchmark) {
+            report += "\n" + mBenchmark;
+        }
+        return report;
+    }
+    
+    /**
+     * 
+     */
+    private void update() {
+        mText.setText(getReport());
+    }
+
+    /** Defines callbacks for service binding, passed to bindService() */
+    /**
+     * 
+     */
+    private ServiceConnection mConnection = new ServiceConnection() {
+
+        /* (non-Javadoc)
+         * @see android.content.ServiceConnection#onServiceConnected(android.content.ComponentName, android.os.IBinder)
+         */
+        @Override
+        public void onServiceConnected(ComponentName className,
+                IBinder service) {
+            /* 
+             * We've bound to LocalService, cast the IBinder and get LocalService instance
+             */
+            StorageService.LocalBinder binder = (StorageService.LocalBinder)service;
+            mService = binder.getService();
+            update();
+        }    
+
+        /* (non-Javadoc)
+         * @see android.content.ServiceConnection#onServiceDisconnected(android.content.ComponentName)
+         */
+        @Override
+        public void onServiceDisconnected(ComponentName arg0) {
+        }
+    };
+
+    /* (non-Javadoc)
+     * @see android.app.Activity#onResume()
+     */
+    @Override
+    public void onResume() {
+        super.onResume();
+     
+        Helper.setOrientationAndOn(this);
+        
+        /*
+         * Bind now.
+         */
+        Intent intent = new Intent(this, StorageService.class);
+        getApplicationContext().bindService(intent, mConnection, Context.BIND_AUTO_CREATE);
+        update();
+    }
+    
+    /* (non-Javadoc)
+     * @see android.app.Activity#onPause()
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        getApplicationContext().unbindService(mConnection);
+    }    
+}
@@ -18,8 +18,8 @@ import java.util.TimerTask;
 
 import com.ds.avare.gdl90.AdsbStatus;
 import com.ds.avare.gdl90.Id6364Product;
-import com.ds.avare.gdl90.NexradBitmap;
 import com.ds.avare.gdl90.NexradImage;
+import com.ds.avare.gdl90.TrafficSnapshot;
 import com.ds.avare.gps.*;
 import com.ds.avare.network.TFRFetcher;
 import com.ds.avare.place.Area;
@@ -41,7 +41,6 @@ import android.location.Location;
 import android.location.LocationManager;
 import android.os.Binder;
 import android.os.IBinder;
-import android.util.SparseArray;
 
 /**
  * @author zkhan
@@ -144,6 +143,12 @@ public class StorageService extends Service {
     
     private NexradImage mNexradImg;
     
+    /*
+     * Traffic targets drawn, and skipped as off screen, in last frame
+     */
+    private int mTrafficDrawn;
+    private int mTrafficCulled;
+    
     /**
      * @author zkhan
      *
@@ -345,6 +350,9 @@ public class StorageService extends Service {
         if(mGps != null) {
             mGps.stop();
         }
+        if(mImageDataSource != null) {
+            mImageDataSource.close();
+        }
         super.onDestroy();
         
         System.runFinalizersOnExit(true);
@@ -628,8 +636,42 @@ public class StorageService extends Service {
      * 
      * @return
      */
-    public SparseArray<NexradBitmap> getNexradImages() {
-        return mNexradImg.getImages();
+    public NexradImage getNexradImage() {
+        return mNexradImg;
+    }
+    
+    /**
+     * Latest traffic. Call from UI thread only.
+     * @return
+     */
+    public TrafficSnapshot getTraffic() {
+        return mGps.getTraffic().getSnapshot();
+    }
+    
+    /**
+     * Counts of last frame drawn, for debug
+     * @param drawn
+     * @param culled
+     */
+    public void setTrafficCounts(int drawn, int culled) {
+        mTrafficDrawn = drawn;
+        mTrafficCulled = culled;
+    }
+    
+    /**
+     * 
+     * @return traffic targets drawn in last frame
+     */
+    public int getTrafficDrawn() {
+        return mTrafficDrawn;
+    }
+    
+    /**
+     * 
+     * @return traffic targets skipped in last frame as they were off screen
+     */
+    public int getTrafficCulled() {
+        return mTrafficCulled;
     }
     
     /**
@@ -15,16 +15,118 @@ package com.ds.avare.gdl90;
  * 
  * @author zkhan
  *
+ * UAT ADS-B message passed through by the receiver. 
+ * Decodes header and state vector, common with long report.
+ *
  */
-public class BasicReportMessage extends Message {
+public class BasicReportMessage extends TargetMessage {
 
+    /*
+     * 24 bit lon/lat in 360 / 2^24 degrees
+     */
+    private static final double UAT_RESOLUTION = 360.0 / 16777216.0;
+    
+    int mAddressQualifier;
+    int mNIC;
+    boolean mIsGeometricAltitude;
+    
     public BasicReportMessage() {
         super(MessageType.BASIC_REPORT);
     }
 
+    protected BasicReportMessage(int type) {
+        super(type);
+    }
+
+    /**
+     * 
+     * @param msg
+     * @param offset
+     * @param len
+     */
     @Override
-    protected void parse(byte[] msg) {
-        Logger.Logit("Not implemented basic report");
+    protected void parse(byte[] msg, int offset, int len) {
+        clear();
+        
+        /*
+         * First 3 bytes are time of reception
+         */
+        if(len < 3 + 17) {
+            return;
+        }
+        int p = offset + 3;
+        
+        /*
+         * Header
+         */
+        mAddressQualifier = msg[p + 0] & 0x07;
+        mAddress = ((msg[p + 1] & 0xFF) << 16) + ((msg[p + 2] & 0xFF) << 8) + (msg[p + 3] & 0xFF);
+        
+        /*
+         * State vector
+         */
+        mNIC = msg[p + 11] & 0x0F;
+        int lat = ((msg[p + 4] & 0xFF) << 15) + ((msg[p + 5] & 0xFF) << 7) + ((msg[p + 6] & 0xFF) >> 1);
+        int lon = ((msg[p + 6] & 0x01) << 23) + ((msg[p + 7] & 0xFF) << 15) + ((msg[p + 8] & 0xFF) << 7) + ((msg[p + 9] & 0xFF) >> 1);
+        mPositionValid = (lat != 0 || lon != 0 || mNIC != 0);
+        double dlat = lat * UAT_RESOLUTION;
+        if(dlat > 90) {
+            dlat -= 180;
+        }
+        double dlon = lon * UAT_RESOLUTION;
+        if(dlon > 180) {
+            dlon -= 360;
+        }
+        mLat = (float)dlat;
+        mLon = (float)dlon;
+        
+        /*
+         * Altitude, 0 is invalid
+         */
+        int alt = ((msg[p + 10] & 0xFF) << 4) + ((msg[p + 11] & 0xF0) >> 4);
+        mAltitudeValid = alt != 0;
+        mAltitude = (alt - 1) * 25 - 1000;
+        mIsGeometricAltitude = (msg[p + 9] & 0x01) != 0;
+        
+        int airGround = (msg[p + 12] & 0xC0) >> 6;
+        int a = ((msg[p + 12] & 0x1F) << 6) + ((msg[p + 13] & 0xFC) >> 2);
+        int b = ((msg[p + 13] & 0x03) << 9) + ((msg[p + 14] & 0xFF) << 1) + ((msg[p + 15] & 0x80) >> 7);
+        
+        if(airGround == 2) {
+            /*
+             * On ground: speed and track
+             */
+            mHorizontalVelocity = (a & 0x3FF) == 0 ? 0 : (a & 0x3FF) - 1;
+            if((b & 0x600) != 0) {
+                mTrack = (b & 0x1FF) * 360.f / 512.f;
+            }
+            mVerticalVelocity = 0;
+        }
+        else if(airGround < 2) {
+            /*
+             * Airborne: north and east velocity, x4 if supersonic
+             */
+            int mult = (airGround == 1) ? 4 : 1;
+            int ns = (a & 0x3FF) == 0 ? 0 : ((a & 0x3FF) - 1) * mult;
+            if((a & 0x400) != 0) {
+                ns = -ns;
+            }
+            int ew = (b & 0x3FF) == 0 ? 0 : ((b & 0x3FF) - 1) * mult;
+            if((b & 0x400) != 0) {
+                ew = -ew;
+            }
+            mHorizontalVelocity = (int)Math.sqrt(ns * ns + ew * ew);
+            if(ns != 0 || ew != 0) {
+                double track = Math.toDegrees(Math.atan2(ew, ns));
+                mTrack = (float)(track < 0 ? track + 360 : track);
+            }
+            
+            int vs = ((msg[p + 15] & 0x7F) << 4) + ((msg[p + 16] & 0xF0) >> 4);
+            mVerticalVelocity = (vs & 0x1FF) == 0 ? 0 : ((vs & 0x1FF) - 1) * 64;
+            if((vs & 0x200) != 0) {
+                mVerticalVelocity = -mVerticalVelocity;
+            }
+        }
     }
 
 }
@@ -13,6 +13,8 @@ package com.ds.avare.gdl90;
 
 /**
  * A class that reads bits from a data stream.
+ * Whole bytes are pulled into a 64 bit register, bits are served from it
+ * with shifts and masks. Reads past end of data return 0 bits.
  * @author zkhan
  *
  */
@@ -20,61 +22,118 @@ public class BitInputStream {
 
     private byte mBuffer[];
     private int mLocation;
+    private int mEnd;
  
-    private int mIBuffer;
-    
+    private long mLBuffer;
  
     private int mBitsLeft;
+    
+    private int mBitsRead;
  
     /**
      * 
      * @param buffer
      */
     public BitInputStream(byte buffer[]) {
+        reset(buffer, 0, buffer.length);
+    }
+    
+    /**
+     * 
+     */
+    public BitInputStream() {
+        reset(null, 0, 0);
+    }
+ 
+    /**
+     * Start reading a new buffer, so one object is used for many
+     * @param buffer
+     * @param offset
+     * @param len
+     */
+    public void reset(byte buffer[], int offset, int len) {
         mBuffer = buffer;
-        mLocation = 0;
-        mBitsLeft = 8;
-        mIBuffer = ((int)buffer[0]) & 0xFF;
+        mLocation = offset;
+        mEnd = offset + len;
+        mLBuffer = 0;
+        mBitsLeft = 0;
+        mBitsRead = 0;
+    }
+    
+    /**
+     * Top up the register to at least 57 bits
+     */
+    private void fill() {
+        while(mBitsLeft <= 56) {
+            int b = 0;
+            if(mLocation < mEnd) {
+                b = ((int)mBuffer[mLocation]) & 0xFF;
+            }
+            mLocation++;
+            mLBuffer = (mLBuffer << 8) | b;
+            mBitsLeft += 8;
+        }
     }
  
     /**
      * 
-     * @param aNumberOfBits
+     * @param aNumberOfBits up to 32
      * @return
      */
     public int getBits(final int aNumberOfBits) {
-        int value = 0;
-        int num = aNumberOfBits;
-        while(num-- > 0) {
-            value <<= 1;
-            value |= readBit();
-        }
+        int value = peekBits(aNumberOfBits);
+        mBitsLeft -= aNumberOfBits;
+        mBitsRead += aNumberOfBits;
         return value;
     }
+    
+    /**
+     * Get bits but do not consume them
+     * @param aNumberOfBits up to 32
+     * @return
+     */
+    public int peekBits(final int aNumberOfBits) {
+        if(aNumberOfBits <= 0) {
+            return 0;
+        }
+        if(mBitsLeft < aNumberOfBits) {
+            fill();
+        }
+        return (int)((mLBuffer >>> (mBitsLeft - aNumberOfBits)) & ((1L << aNumberOfBits) - 1));
+    }
+    
+    /**
+     * 
+     * @param aNumberOfBits
+     */
+    public void skipBits(int aNumberOfBits) {
+        while(aNumberOfBits > 32) {
+            getBits(32);
+            aNumberOfBits -= 32;
+        }
+        getBits(aNumberOfBits);
+    }
+    
+    /**
+     * Skip to start of next byte, if not on one already
+     */
+    public void alignToByte() {
+        skipBits((8 - (mBitsRead & 7)) & 7);
+    }
  
     /**
      * 
      * @return
      */
     public int readBit() { 
-        if (mBitsLeft == 0) {
-            mIBuffer = ((int)mBuffer[++mLocation]) & 0xFF;
-            mBitsLeft = 8;
-        }
- 
-        mBitsLeft--;
-        int bit = (mIBuffer >> mBitsLeft) & 0x1;
- 
-        bit = (bit == 0) ? 0 : 1;
- 
-        return bit;
+        return getBits(1);
     } 
     
     /**
      * 
-     * @return
+     * @return bytes read, partly read byte included
      */
     public int totalRead() {
-        return mLocation + 1;
+        return (mBitsRead + 7) >> 3;
     }
 }
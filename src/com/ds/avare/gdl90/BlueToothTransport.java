@@ -0,0 +1,162 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+import java.io.InputStream;
+import java.util.Set;
+import java.util.UUID;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Bluetooth SPP (RFCOMM) receiver
+ *
+ */
+public class BlueToothTransport implements Gdl90Transport {
+
+    private BluetoothAdapter mBtAdapter;
+    private BluetoothSocket mBtSocket;
+    private InputStream mStream;
+    private String mDevice;
+    
+    /*
+     *  Well known SPP UUID
+     */
+    private static final UUID MY_UUID =
+            UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+
+    /**
+     * 
+     * @param devNameMatch will connect to first paired device whose
+     * name matched this string.
+     */
+    public BlueToothTransport(String devNameMatch) {
+        mDevice = devNameMatch;
+        mBtAdapter = BluetoothAdapter.getDefaultAdapter();
+        mBtSocket = null;
+        mStream = null;
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public boolean connect() {
+        if(null == mBtAdapter) {
+            return false;
+        }
+        Set<BluetoothDevice> pairedDevices = mBtAdapter.getBondedDevices();
+
+        /*
+         * Find device
+         */
+        if(null == pairedDevices) {            
+            return false;
+        }
+        BluetoothDevice device = null;
+        for(BluetoothDevice bt : pairedDevices) {
+           if(bt.getName().contains(mDevice)) {
+               device = bt;
+           }
+        }
+   
+        /*
+         * Stop discovery
+         */
+        mBtAdapter.cancelDiscovery();
+ 
+        if(null == device) {
+            return false;
+        }
+        
+        /*
+         * Make socket
+         */
+        try {
+            mBtSocket = device.createRfcommSocketToServiceRecord(MY_UUID);
+        } 
+        catch(Exception e) {
+            return false;
+        }
+    
+        /*
+         * Establish the connection.  This will block until it connects.
+         */
+        try {
+            mBtSocket.connect();
+        } 
+        catch(Exception e) {
+            disconnect();
+            return false;
+        } 
+
+        try {
+            mStream = mBtSocket.getInputStream();
+        } 
+        catch (Exception e) {
+            disconnect();
+            return false;
+        } 
+
+        return true;
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public int read(byte[] buffer) {
+        int red = -1;
+        try {
+            red = mStream.read(buffer, 0, buffer.length);
+        } 
+        catch(Exception e) {
+            red = -1;
+        }
+        return red;
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public void disconnect() {
+        try {
+            if(null != mStream) {
+                mStream.close();
+            }
+        } 
+        catch(Exception e2) {
+        }
+        
+        try {
+            if(null != mBtSocket) {
+                mBtSocket.close();
+            }
+        } 
+        catch(Exception e2) {
+        }    
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public String getName() {
+        return mDevice;
+    }
+}
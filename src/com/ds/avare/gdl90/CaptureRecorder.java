@@ -0,0 +1,120 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Records raw GDL90 frames with time stamps so a session can be replayed
+ * by CaptureTransport. File format:
+ * 
+ * "GDL9", version byte, then for each frame:
+ * varint milliseconds since previous frame, varint length, frame bytes as received.
+ *
+ */
+public class CaptureRecorder {
+
+    public static final byte MAGIC[] = {'G', 'D', 'L', '9'};
+    public static final int VERSION = 1;
+    
+    private OutputStream mStream;
+    private long mLast;
+    private long mFrames;
+    
+    /**
+     * 
+     * @param file
+     * @throws IOException
+     */
+    public CaptureRecorder(String file) throws IOException {
+        this(new BufferedOutputStream(new FileOutputStream(file)));
+    }
+    
+    /**
+     * 
+     * @param stream
+     * @throws IOException
+     */
+    public CaptureRecorder(OutputStream stream) throws IOException {
+        mStream = stream;
+        mStream.write(MAGIC);
+        mStream.write(VERSION);
+        mLast = -1;
+        mFrames = 0;
+    }
+    
+    /**
+     * Write a frame stamped with now
+     * @param frame
+     * @param len
+     */
+    public void write(byte frame[], int len) {
+        long now = System.nanoTime() / 1000000L;
+        write(frame, len, (mLast < 0) ? 0 : now - mLast);
+        mLast = now;
+    }
+    
+    /**
+     * 
+     * @param frame
+     * @param len
+     * @param deltaMs time since previous frame
+     */
+    public void write(byte frame[], int len, long deltaMs) {
+        try {
+            writeVarint(deltaMs);
+            writeVarint(len);
+            mStream.write(frame, 0, len);
+            mFrames++;
+        }
+        catch(IOException e) {
+        }
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public long getFrames() {
+        return mFrames;
+    }
+    
+    /**
+     * 
+     */
+    public void close() {
+        try {
+            mStream.close();
+        }
+        catch(IOException e) {
+        }
+    }
+    
+    /**
+     * 7 bits per byte, high bit set when more follow
+     * @param val
+     * @throws IOException
+     */
+    private void writeVarint(long val) throws IOException {
+        while((val & ~0x7FL) != 0) {
+            mStream.write((int)((val & 0x7F) | 0x80));
+            val >>>= 7;
+        }
+        mStream.write((int)val);
+    }
+}
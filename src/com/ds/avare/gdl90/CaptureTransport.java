@@ -0,0 +1,166 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Replays a file made by CaptureRecorder, one frame per read.
+ * Speed of 1 is real time, N is N times faster, 0 is as fast as possible.
+ *
+ */
+public class CaptureTransport implements Gdl90Transport {
+
+    private String mFile;
+    private InputStream mStream;
+    private double mSpeed;
+    private long mStart;
+    private long mClock;
+    
+    /**
+     * 
+     * @param file
+     * @param speed
+     */
+    public CaptureTransport(String file, double speed) {
+        mFile = file;
+        mSpeed = speed;
+        mStream = null;
+    }
+    
+    /**
+     * 
+     * @param stream already open capture
+     * @param speed
+     */
+    public CaptureTransport(InputStream stream, double speed) {
+        mFile = "capture";
+        mSpeed = speed;
+        mStream = stream;
+    }
+    
+    /**
+     * 
+     */
+    @Override
+    public boolean connect() {
+        try {
+            if(null == mStream) {
+                mStream = new BufferedInputStream(new FileInputStream(mFile));
+            }
+            for(int i = 0; i < CaptureRecorder.MAGIC.length; i++) {
+                if(mStream.read() != CaptureRecorder.MAGIC[i]) {
+                    disconnect();
+                    return false;
+                }
+            }
+            if(mStream.read() != CaptureRecorder.VERSION) {
+                disconnect();
+                return false;
+            }
+            mStart = System.nanoTime();
+            mClock = 0;
+        }
+        catch(Exception e) {
+            disconnect();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public int read(byte[] buffer) {
+        try {
+            long delta = readVarint();
+            int len = (int)readVarint();
+            if(len > buffer.length) {
+                return -1;
+            }
+            
+            /*
+             * Pace against total capture time so sleep rounding does not add up
+             */
+            mClock += delta;
+            if(mSpeed > 0) {
+                long wait = (long)(mClock / mSpeed) - (System.nanoTime() - mStart) / 1000000L;
+                if(wait > 0) {
+                    Thread.sleep(wait);
+                }
+            }
+            
+            int red = 0;
+            while(red < len) {
+                int r = mStream.read(buffer, red, len - red);
+                if(r < 0) {
+                    return -1;
+                }
+                red += r;
+            }
+            return len;
+        }
+        catch(Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public void disconnect() {
+        try {
+            if(null != mStream) {
+                mStream.close();
+            }
+        }
+        catch(Exception e) {
+        }
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public String getName() {
+        return mFile;
+    }
+    
+    /**
+     * 
+     * @return
+     * @throws IOException at end of file
+     */
+    private long readVarint() throws IOException {
+        long val = 0;
+        int shift = 0;
+        while(true) {
+            int b = mStream.read();
+            if(b < 0) {
+                throw new IOException();
+            }
+            val |= ((long)(b & 0x7F)) << shift;
+            if((b & 0x80) == 0) {
+                return val;
+            }
+            shift += 7;
+        }
+    }
+}
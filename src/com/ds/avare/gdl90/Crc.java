@@ -54,6 +54,20 @@ public class Crc {
     };
 
 
+    /**
+     * Add one byte to a running CRC. Start with crc of 0.
+     * @param crc
+     * @param b
+     * @return
+     */
+    public static int update(int crc, byte b) {
+        /*
+         * From GDL90 spec
+         */
+        int crc16 = crc & 0xFFFF;
+        return CRC_TABLE[crc16 >> 8] ^ (b & 0xFF) ^ ((crc16 << 8) & 0xFFFF);
+    }
+
     /**
      * 
      * @param bytes
@@ -62,17 +76,9 @@ public class Crc {
      */
     public static boolean checkCrc(byte[] bytes, int length, int msgCrc) {
         int crc = 0;
-        int crc16 = 0;
 
-        /*
-         * From GDL90 spec
-         */
         for(int i = 0; i < length; i++) {
-           crc16 = crc & 0xFFFF;
-           int entry2 = bytes[i] & 0xFF;
-           int entry = CRC_TABLE[crc16 >> 8] ^ entry2;
-           int entry3 = (crc16 << 8) & 0xFFFF;
-           crc = entry ^ entry3;
+           crc = update(crc, bytes[i]);
         }
         
         if(crc != msgCrc) {
@@ -10,129 +10,201 @@ Redistribution and use in source and binary forms, with or without modification,
     *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package com.ds.avare.gdl90;
-import java.util.LinkedList;
 
 /**
  * 
  * @author zkhan
  *
  * Accumulates GDL90 messages, joins fragments.
+ * Fixed capacity circular buffer. Only newly arrived bytes are scanned for 
+ * 0x7E flags, and frames are copied out into a caller supplied array so no 
+ * allocation is done per frame.
  *
  */
 public class DataBuffer {
     
-    int mSize;
-    int mElem;
-    byte mBuffer[];
-    byte mBuffer2[];
-    LinkedList<Integer> mIndexes;
+    private static final byte FLAG = (byte)0x7E;
+    
+    private int mSize;
+    private int mMask;
+    private byte mBuffer[];
+    
+    /*
+     * Running counts of bytes read and written. Only differences, and 
+     * values masked to size are used so wrap around is harmless.
+     */
+    private int mHead;
+    private int mTail;
+    
+    /*
+     * Positions (as running counts) of 0x7E flags in buffer, in a ring
+     */
+    private int mFlags[];
+    private int mFlagHead;
+    private int mFlagTail;
     
     /**
      * 
-     * @param size
+     * @param size will be rounded up to a power of 2
      */
     public DataBuffer(int size) {
-        mSize = size;
-        mIndexes = new LinkedList<Integer>();
-        mElem = 0;
-        mBuffer = new byte[size];
-        mBuffer2 = new byte[size];
+        mSize = 1;
+        while(mSize < size) {
+            mSize <<= 1;
+        }
+        mMask = mSize - 1;
+        mBuffer = new byte[mSize];
+        mFlags = new int[mSize];
+        flush();
     }
     
     /**
      * 
      */
     private void flush() {
-        mElem = 0;
-        mIndexes.clear();
+        mHead = mTail = 0;
+        mFlagHead = mFlagTail = 0;
     }
     
     /**
      * 
+     * @return
      */
-    private void compute() {
-        mIndexes.clear();
-        for(int i = 0; i < mElem; i++) {
-            if(mBuffer[i] == (byte)0x7E) {
-                mIndexes.add(i);
-            }
-        }        
+    private int getElem() {
+        return mTail - mHead;
     }
     
     /**
-     * 
-     * @param len
-     * @return
+     * Discard bytes from beginning till (not including) pos
+     * @param pos
      */
-    private byte[] getAtBegin(int len) {
-        byte buffer[] = new byte[len];
-        System.arraycopy(mBuffer, 0, buffer, 0, len);
-        mElem -= len;
-        System.arraycopy(mBuffer, len, mBuffer2, 0, mElem);
-        
-        byte tmp[] = mBuffer;
-        mBuffer = mBuffer2;
-        mBuffer2 = tmp;
-
-        compute();
-        return buffer;
+    private void discardTo(int pos) {
+        mHead = pos;
+        while((mFlagTail - mFlagHead) > 0 && (mFlags[mFlagHead & mMask] - pos) < 0) {
+            mFlagHead++;
+        }
     }
-
+    
     /**
-     * 
-     * @return
+     * Copy out frame including flags into out
+     * @param out
+     * @param beg
+     * @param len
      */
-    private int getNext() {
-        if(mIndexes.isEmpty()) {
-            return -1;
+    private void copyOut(byte out[], int beg, int len) {
+        int start = beg & mMask;
+        int first = Math.min(len, mSize - start);
+        System.arraycopy(mBuffer, start, out, 0, first);
+        if(first < len) {
+            System.arraycopy(mBuffer, 0, out, first, len - first);
         }
-        return mIndexes.remove();
     }
     
     /**
-     * 
-     * @return
+     * Get next complete frame, 0x7E to 0x7E
+     * @param out Frame is copied here, flags included
+     * @return length of frame in out, 0 if no frame is ready
      */
-    public byte[] get() {
-        int beg = getNext();
+    public int get(byte out[]) {
         
-        if(beg < 0) {
-            /*
-             * Empty, or bad data. No 0x7E in it.
-             */
-            flush();
-            return null;
-        }
-        else if(beg > 0) {
-            /*
-             * Bad data. Mid stream. Move to first 0x7E
-             */
-            getAtBegin(beg);
-            beg = getNext();
+        while(true) {
+            if((mFlagTail - mFlagHead) <= 0) {
+                /*
+                 * Empty, or bad data. No 0x7E in it.
+                 */
+                flush();
+                return 0;
+            }
+            
+            int beg = mFlags[mFlagHead & mMask];
+            if(beg != mHead) {
+                /*
+                 * Bad data. Mid stream. Move to first 0x7E
+                 */
+                discardTo(beg);
+            }
+            
+            if((mFlagTail - mFlagHead) < 2) {
+                /*
+                 * Not complete yet. Wait for complete packet
+                 */
+                return 0;
+            }
+            
+            int end = mFlags[(mFlagHead + 1) & mMask];
+            int len = end - beg + 1;
+            if(len <= 2) {
+                /*
+                 * Back to back flags means we were mid stream and the second flag
+                 * starts a frame.
+                 */
+                discardTo(end);
+                continue;
+            }
+            if(len > out.length) {
+                /*
+                 * Does not fit, drop it.
+                 */
+                discardTo(end + 1);
+                continue;
+            }
+            
+            copyOut(out, beg, len);
+            discardTo(end + 1);
+            return len;
         }
+    }
         
-        int end = getNext();
-        if(end < 0) {
+    /**
+     * 
+     * @param data
+     * @param len
+     */
+    public void put(byte data[], int len) {
+        
+        if(len > mSize) {
             /*
-             * Not complete yet. Wait for complete packet
+             * Keep only what fits
              */
-            return null;
+            put(data, len - mSize, mSize);
+            return;
         }
-        
-        byte buf[] = getAtBegin(end - beg + 1);
-        return buf;
-
+        put(data, 0, len);
     }
-        
+
     /**
      * 
      * @param data
+     * @param offset
      * @param len
      */
-    public void put(byte data[], int len) {
-        System.arraycopy(data, 0, mBuffer, mElem, len);
-        mElem += len;
-        compute();
+    private void put(byte data[], int offset, int len) {
+        
+        int free = mSize - getElem();
+        if(len > free) {
+            /*
+             * Overflow, drop oldest
+             */
+            discardTo(mHead + (len - free));
+        }
+        
+        int start = mTail & mMask;
+        int first = Math.min(len, mSize - start);
+        System.arraycopy(data, offset, mBuffer, start, first);
+        if(first < len) {
+            System.arraycopy(data, offset + first, mBuffer, 0, len - first);
+        }
+        
+        /*
+         * Scan only new data for flags
+         */
+        for(int i = offset; i < offset + len; i++) {
+            if(data[i] == FLAG) {
+                mFlags[mFlagTail & mMask] = mTail + (i - offset);
+                mFlagTail++;
+            }
+        }
+        mTail += len;
     }
     
 }
@@ -21,10 +21,10 @@ public class Decode {
     /**
      * The main decode function.
      * @param bufin Input from receiver
-     * @param lens length of data
+     * @param len length of data
      */
-    public Message decode(byte[] bufin) {
+    public Message decode(byte[] bufin, int len) {
                 
-        return MessageFactory.buildMessage(bufin);
+        return MessageFactory.buildMessage(bufin, len);
     }
 }
@@ -0,0 +1,411 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import com.ds.avare.gps.GpsInterface;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Reader -> decoder -> UI pipeline for GDL90 data.
+ * The reader thread frames bytes into preallocated slots, the decoder thread
+ * decodes them and prepares products, and the UI thread is told at most once
+ * per display frame that something changed. Stages are joined by single 
+ * producer single consumer queues.
+ *
+ */
+public class DecodePipeline {
+
+    private static final int FRAME_SIZE = 1024;
+    private static final int FRAMES = 64;
+    private static final int PRODUCTS = 256;
+    private static final int TARGETS = 256;
+    private static final int FRAME_MS = 16;
+    private static final int EVICT_MS = 1000;
+    private static final int GEO_ALTITUDE_MS = 2500;
+    
+    /**
+     * A frame and its length
+     */
+    private static class Slot {
+        byte mBuf[] = new byte[FRAME_SIZE];
+        int mLen;
+    }
+    
+    /*
+     * Slots go reader -> decoder in mFrames, and back in mFree
+     */
+    private SpscQueue<Slot> mFrames;
+    private SpscQueue<Slot> mFree;
+    private SpscQueue<Product> mProducts;
+    
+    /*
+     * Only latest ownship matters, stale ones are overwritten
+     */
+    private AtomicReference<Location> mLocation;
+    private AtomicReference<AdsbStatus> mStatus;
+    private AtomicBoolean mPending;
+    private TrafficStore mTraffic;
+    
+    /*
+     * Reused for every uplink, decoder thread only
+     */
+    private UplinkMessage mUplink;
+    
+    /*
+     * Reader thread only
+     */
+    private DataBuffer mBuffer;
+    private Slot mSpare;
+    private byte mScratch[];
+    private CaptureRecorder mRecorder;
+    
+    /*
+     * Decoder thread only
+     */
+    private int mGeoAltitude;
+    private long mGeoAltitudeTime;
+    
+    /**
+     * Decoder thread, with its own run flag so an old one stopping never sees a new start
+     */
+    private class Decoder extends Thread {
+        private volatile boolean mRun = true;
+        
+        @Override
+        public void run() {
+            decodeLoop(this);
+        }
+    }
+    
+    private Decoder mDecoder;
+    private volatile GpsInterface mListener;
+    private Handler mHandler;
+    
+    /*
+     * Written on UI thread, read on decoder thread
+     */
+    private volatile long mLastDrain;
+    private String mProvider;
+    
+    private volatile int mFramesDropped;
+    private volatile int mProductsDropped;
+    
+    /**
+     * 
+     */
+    public DecodePipeline() {
+        mProvider = "";
+        mFrames = new SpscQueue<Slot>(FRAMES);
+        mFree = new SpscQueue<Slot>(FRAMES);
+        for(int i = 0; i < FRAMES; i++) {
+            mFree.offer(new Slot());
+        }
+        mProducts = new SpscQueue<Product>(PRODUCTS);
+        mLocation = new AtomicReference<Location>();
+        mStatus = new AtomicReference<AdsbStatus>();
+        mPending = new AtomicBoolean(false);
+        mTraffic = new TrafficStore(TARGETS);
+        mUplink = new UplinkMessage();
+        mBuffer = new DataBuffer(32768);
+        mScratch = new byte[FRAME_SIZE];
+        mHandler = new Handler(Looper.getMainLooper());
+        mLastDrain = 0;
+        mGeoAltitudeTime = -GEO_ALTITUDE_MS;
+        mFramesDropped = 0;
+        mProductsDropped = 0;
+    }
+    
+    /**
+     * 
+     * @param listener
+     */
+    public void setListener(GpsInterface listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 
+     * @param provider name for locations made from ownship reports
+     */
+    public void setProvider(String provider) {
+        mProvider = provider;
+    }
+
+    /**
+     * Frames are recorded as framed on reader thread, null to not record
+     * @param recorder
+     */
+    public void setRecorder(CaptureRecorder recorder) {
+        mRecorder = recorder;
+    }
+
+    /**
+     * Start the decoder thread. A decoder still stopping is waited for first, as queues 
+     * have a single consumer.
+     */
+    public void start() {
+        Decoder old = mDecoder;
+        if(null != old) {
+            old.mRun = false;
+            LockSupport.unpark(old);
+            try {
+                old.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        mDecoder = new Decoder();
+        mDecoder.start();
+    }
+    
+    /**
+     * 
+     */
+    public void stop() {
+        Decoder decoder = mDecoder;
+        if(null != decoder) {
+            decoder.mRun = false;
+            LockSupport.unpark(decoder);
+        }
+    }
+    
+    /**
+     * Called on reader thread with data as read from receiver
+     * @param data
+     * @param len
+     */
+    public void put(byte data[], int len) {
+        mBuffer.put(data, len);
+        
+        boolean added = false;
+        while(true) {
+            if(null == mSpare) {
+                mSpare = mFree.poll();
+            }
+            byte out[] = (null == mSpare) ? mScratch : mSpare.mBuf;
+            int red = mBuffer.get(out);
+            if(0 == red) {
+                break;
+            }
+            if(null != mRecorder) {
+                mRecorder.write(out, red);
+            }
+            if(null == mSpare) {
+                /*
+                 * Decoder is behind, all slots in use
+                 */
+                mFramesDropped++;
+                continue;
+            }
+            if(red > 1 && (out[1] & 0xFF) == MessageType.OWNSHIP
+                    && mFrames.size() > (FRAMES / 2)) {
+                /*
+                 * Under load drop ownship first, a newer one is coming soon.
+                 */
+                mFramesDropped++;
+                continue;
+            }
+            mSpare.mLen = red;
+            mFrames.offer(mSpare);
+            mSpare = null;
+            added = true;
+        }
+        
+        if(added) {
+            LockSupport.unpark(mDecoder);
+        }
+    }
+    
+    /**
+     * Called from any thread on state change
+     * @param status
+     */
+    public void putStatus(AdsbStatus status) {
+        mStatus.set(status);
+        notifyUi();
+    }
+    
+    /**
+     * 
+     * @return traffic, snapshots of which may be read on UI thread
+     */
+    public TrafficStore getTraffic() {
+        return mTraffic;
+    }
+    
+    /**
+     * 
+     * @return frames and products dropped due to backpressure
+     */
+    public int getDropped() {
+        return mFramesDropped + mProductsDropped;
+    }
+    
+    /**
+     * 
+     */
+    private void decodeLoop(Decoder self) {
+        long lastPublish = 0;
+        long lastEvict = 0;
+        while(self.mRun) {
+            
+            /*
+             * Traffic is published at most once per display frame
+             */
+            long now = SystemClock.elapsedRealtime();
+            if((now - lastEvict) >= EVICT_MS) {
+                mTraffic.evict(now);
+                lastEvict = now;
+            }
+            if((now - lastPublish) >= FRAME_MS) {
+                mTraffic.publish(now);
+                lastPublish = now;
+            }
+            
+            Slot s = mFrames.poll();
+            if(null == s) {
+                /*
+                 * Sleep till data comes, or till traffic must be published or evicted.
+                 * With no traffic, nothing wakes us but data or stop.
+                 */
+                if(mTraffic.isDirty()) {
+                    LockSupport.parkNanos(Math.max(1, lastPublish + FRAME_MS - now) * 1000000L);
+                }
+                else if(mTraffic.getCount() > 0) {
+                    LockSupport.parkNanos(Math.max(1, lastEvict + EVICT_MS - now) * 1000000L);
+                }
+                else {
+                    LockSupport.park();
+                }
+                continue;
+            }
+            
+            com.ds.avare.gdl90.Message m = MessageFactory.buildMessage(s.mBuf, s.mLen, mTraffic, mUplink);
+            mFree.offer(s);
+            
+            if(m instanceof TargetMessage) {
+                mTraffic.put((TargetMessage)m, now);
+            }
+            else if(m instanceof UplinkMessage) {
+                FisBuffer fis = ((UplinkMessage)m).getFis();
+                for(int i = 0; i < fis.getProductCount(); i++) {
+                    Product p = fis.getProduct(i);
+                    if(p instanceof Id6364Product) {
+                        if(!mProducts.offer(p)) {
+                            mProductsDropped++;
+                        }
+                    }
+                }
+                notifyUi();
+            }
+            else if(m instanceof OwnshipMessage) {
+                
+                /*
+                 * Make a GPS locaiton message from ADSB ownship message.
+                 */
+                OwnshipMessage om = (OwnshipMessage)m;
+                if(!om.isValid()) {
+                    continue;
+                }
+                Location l = new Location(mProvider);
+                
+                /*
+                 * Geometric altitude is what GPS reports, prefer it over pressure altitude.
+                 * It comes right after ownship so the one from last report is used.
+                 */
+                if((now - mGeoAltitudeTime) < GEO_ALTITUDE_MS) {
+                    l.setAltitude(mGeoAltitude / 3.28);  // ft to m
+                }
+                else {
+                    l.setAltitude(om.mAltitude / 3.28);  // ft to m
+                }
+                l.setLatitude(om.mLat);
+                l.setLongitude(om.mLon);
+                l.setSpeed((float)(om.mHorizontalVelocity / 1.944)); // kt to ms/s
+                l.setBearing(om.mDirection);
+                l.setTime(System.currentTimeMillis());
+                
+                /*
+                 * Quality for source arbitration
+                 */
+                float accuracy = om.getAccuracy();
+                if(accuracy > 0) {
+                    l.setAccuracy(accuracy);
+                }
+                mLocation.set(l);
+                notifyUi();
+            }
+            else if(m instanceof OwnshipGeometricAltitudeMessage) {
+                mGeoAltitude = ((OwnshipGeometricAltitudeMessage)m).mAltitudeWGS84;
+                mGeoAltitudeTime = now;
+            }
+        }
+    }
+
+    /**
+     * Coalesce, at most one pending drain and one per display frame.
+     */
+    private void notifyUi() {
+        if(!mPending.compareAndSet(false, true)) {
+            return;
+        }
+        long delay = FRAME_MS - (SystemClock.uptimeMillis() - mLastDrain);
+        mHandler.postDelayed(mDrain, delay > 0 ? delay : 0);
+    }
+    
+    /**
+     * Runs on UI thread
+     */
+    private Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            mPending.set(false);
+            mLastDrain = SystemClock.uptimeMillis();
+            GpsInterface listener = mListener;
+            
+            Product p;
+            while(null != (p = mProducts.poll())) {
+                if(null != listener) {
+                    listener.adbsMessageCallbackNexrad((Id6364Product)p);
+                }
+            }
+            
+            if(null == listener) {
+                return;
+            }
+
+            AdsbStatus status = mStatus.getAndSet(null);
+            if(null != status) {
+                listener.timeoutCallback(false);
+                listener.adbsStatusCallback(status);
+            }
+            
+            Location l = mLocation.getAndSet(null);
+            if(null != l) {
+                listener.locationCallback(l);
+            }
+        }
+    };
+}
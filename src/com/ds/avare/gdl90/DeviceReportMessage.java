@@ -28,15 +28,17 @@ public class DeviceReportMessage extends Message {
     /**
      * 
      * @param msg
+     * @param offset
+     * @param len
      */
-    public void parse(byte msg[]) {
+    public void parse(byte msg[], int offset, int len) {
 
         /*
          * Battery status
          */
         int vbat = 0;
-        vbat = ((int)msg[0] & 0xFF) << 8;
-        vbat += ((int)msg[1]) & 0xFF;
+        vbat = ((int)msg[offset + 0] & 0xFF) << 8;
+        vbat += ((int)msg[offset + 1]) & 0xFF;
         float batLevel = (float)(vbat - 3500) / 600.0f;
         if (batLevel > 1.0) {
             mBatteryVoltage = 1.0f;
@@ -51,7 +53,7 @@ public class DeviceReportMessage extends Message {
         /*
          * Charge
          */
-        if( (msg[4] & 0x04) != 0) {
+        if( (msg[offset + 4] & 0x04) != 0) {
             mIsCharging = true;
         }
         else {
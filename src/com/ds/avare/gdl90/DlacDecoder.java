@@ -0,0 +1,74 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Decodes DLAC text, 4 six bit characters in 3 bytes, into a reused char array.
+ *
+ */
+public class DlacDecoder {
+
+    private static final char ETX = 0x03;
+    
+    private char mChars[];
+    
+    /**
+     * 
+     * @param size chars, grows as needed
+     */
+    public DlacDecoder(int size) {
+        mChars = new char[size];
+    }
+    
+    /**
+     * Decode till end of text, nulls are left out
+     * @param msg
+     * @param offset
+     * @param len bytes
+     * @return number of chars in getChars()
+     */
+    public int decode(byte msg[], int offset, int len) {
+        int need = (len / 3 + 1) * 4;
+        if(need > mChars.length) {
+            mChars = new char[need];
+        }
+        
+        int n = 0;
+        for(int i = offset; i + 2 < offset + len; i += 3) {
+            int holder = 
+                    (((int)msg[i + 0] & 0xFF) << 16) + 
+                    (((int)msg[i + 1] & 0xFF) << 8) +
+                    (((int)msg[i + 2] & 0xFF));
+            for(int shift = 18; shift >= 0; shift -= 6) {
+                char c = (char)Constants.DLAC_CODE[(holder >> shift) & 0x3F];
+                if(ETX == c) {
+                    return n;
+                }
+                if(0 != c) {
+                    mChars[n++] = c;
+                }
+            }
+        }
+        return n;
+    }
+    
+    /**
+     * 
+     * @return chars of last decode
+     */
+    public char[] getChars() {
+        return mChars;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Hashed timer wheel for expiring products. Scheduling, rescheduling and
+ * cancelling are O(1), and advancing only looks at slots for the time passed.
+ * Entries are made once by their owner and reused. Not thread safe.
+ *
+ */
+public class ExpiryWheel {
+
+    /**
+     * A thing to expire
+     */
+    public static class Entry {
+        private Object mOwner;
+        private int mKey;
+        private long mDeadline;
+        private Entry mPrev;
+        private Entry mNext;
+        private int mSlot;
+        
+        /**
+         * 
+         * @param owner
+         * @param key
+         */
+        public Entry(Object owner, int key) {
+            mOwner = owner;
+            mKey = key;
+            mSlot = -1;
+        }
+        
+        public Object getOwner() {
+            return mOwner;
+        }
+        
+        public int getKey() {
+            return mKey;
+        }
+
+        public long getDeadline() {
+            return mDeadline;
+        }
+        
+        public boolean isScheduled() {
+            return mSlot >= 0;
+        }
+    }
+    
+    /**
+     * 
+     */
+    public interface Listener {
+        /**
+         * Entry is no longer scheduled when called. Do not schedule or cancel
+         * other entries from here.
+         * @param e
+         */
+        void expired(Entry e);
+    }
+    
+    private Entry mSlots[];
+    private int mMask;
+    private long mTick;
+    
+    /*
+     * Last tick advanced to
+     */
+    private long mCursor;
+    private int mCount;
+    
+    /**
+     * 
+     * @param slots rounded up to power of 2. slots * tick should be about the longest TTL
+     * @param tick ms
+     */
+    public ExpiryWheel(int slots, long tick) {
+        int size = 1;
+        while(size < slots) {
+            size <<= 1;
+        }
+        mSlots = new Entry[size];
+        mMask = size - 1;
+        mTick = tick;
+        mCursor = Long.MIN_VALUE;
+        mCount = 0;
+    }
+    
+    /**
+     * Schedule, or reschedule an entry
+     * @param e
+     * @param deadline ms
+     */
+    public void schedule(Entry e, long deadline) {
+        cancel(e);
+        long tick = deadline / mTick;
+        if(mCursor != Long.MIN_VALUE && tick < mCursor) {
+            /*
+             * Already due, will be found on next advance
+             */
+            tick = mCursor;
+        }
+        int slot = (int)(tick & mMask);
+        e.mDeadline = deadline;
+        e.mSlot = slot;
+        e.mPrev = null;
+        e.mNext = mSlots[slot];
+        if(null != e.mNext) {
+            e.mNext.mPrev = e;
+        }
+        mSlots[slot] = e;
+        mCount++;
+    }
+    
+    /**
+     * 
+     * @param e
+     */
+    public void cancel(Entry e) {
+        if(e.mSlot < 0) {
+            return;
+        }
+        if(null != e.mPrev) {
+            e.mPrev.mNext = e.mNext;
+        }
+        else {
+            mSlots[e.mSlot] = e.mNext;
+        }
+        if(null != e.mNext) {
+            e.mNext.mPrev = e.mPrev;
+        }
+        e.mPrev = null;
+        e.mNext = null;
+        e.mSlot = -1;
+        mCount--;
+    }
+    
+    /**
+     * Expire all entries due by now
+     * @param now ms
+     * @param listener
+     */
+    public void advance(long now, Listener listener) {
+        long target = now / mTick;
+        if(mCursor == Long.MIN_VALUE || target - mCursor > mMask) {
+            /*
+             * First time, or a whole turn passed
+             */
+            mCursor = target - mMask;
+        }
+        for(long tick = mCursor; tick <= target; tick++) {
+            Entry e = mSlots[(int)(tick & mMask)];
+            while(null != e) {
+                Entry next = e.mNext;
+                if(e.mDeadline <= now) {
+                    cancel(e);
+                    listener.expired(e);
+                }
+                e = next;
+            }
+        }
+        mCursor = target;
+    }
+    
+    /**
+     * 
+     * @return entries scheduled
+     */
+    public int getCount() {
+        return mCount;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Replay raw GDL90 bytes stored in a file, for debugging
+ *
+ */
+public class FileTransport implements Gdl90Transport {
+
+    private String mFile;
+    private InputStream mStream;
+    
+    /**
+     * 
+     * @param file
+     */
+    public FileTransport(String file) {
+        mFile = file;
+        mStream = null;
+    }
+    
+    /**
+     * 
+     */
+    @Override
+    public boolean connect() {
+        try {
+            mStream = new BufferedInputStream(new FileInputStream(mFile));
+        }
+        catch(Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public int read(byte[] buffer) {
+        try {
+            return mStream.read(buffer, 0, buffer.length);
+        }
+        catch(Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public void disconnect() {
+        try {
+            if(null != mStream) {
+                mStream.close();
+            }
+        }
+        catch(Exception e) {
+        }
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public String getName() {
+        return mFile;
+    }
+}
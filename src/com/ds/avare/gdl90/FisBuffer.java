@@ -11,18 +11,42 @@ Redistribution and use in source and binary forms, with or without modification,
 */
 package com.ds.avare.gdl90;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 
 /**
  * 
  * @author zkhan
  *
+ * Products of one uplink. Made once and reused for every uplink, so its
+ * list and bit reader are not allocated per frame.
+ *
  */
 public class FisBuffer {
 
-    private int mSize;
+    private static final int SIZE = 424;
+    
+    private int mOffset;
     private byte mBuffer[];
-    private LinkedList<Product> mProducts;
+    private ArrayList<Product> mProducts;
+    private BitInputStream mStream;
+    
+    /**
+     * 
+     */
+    public FisBuffer() {
+        mProducts = new ArrayList<Product>();
+        mStream = new BitInputStream();
+        mBuffer = null;
+        mOffset = 0;
+    }
+    
+    /**
+     * Forget products of last uplink
+     */
+    public void clear() {
+        mProducts.clear();
+        mBuffer = null;
+    }
     
     /**
      * 
@@ -34,12 +58,13 @@ public class FisBuffer {
      * @param lat
      * @param lon
      */
-    public FisBuffer(byte buffer[], int offset, int slotId, int fisbId, boolean pvalid, float lat, float lon) {
-        mSize = 424;
+    public void set(byte buffer[], int offset, int slotId, int fisbId, boolean pvalid, float lat, float lon) {
+        clear();
+        /*
+         * No copy, buffer is only used in makeProducts()
+         */
         mBuffer = buffer;
-        mProducts = new LinkedList<Product>();
-        mBuffer = new byte[mSize];
-        System.arraycopy(buffer, offset, mBuffer, 0, mSize);
+        mOffset = offset;
     }
     
     /**
@@ -47,31 +72,37 @@ public class FisBuffer {
      */
     public void makeProducts() {
         int i = 0;
-        while(i < mSize) {
+        while((i + 2) <= SIZE) {
             
-            int iFrameLength = (((int)mBuffer[i]) & 0xFF) << 1;
-            iFrameLength += (((int)mBuffer[i + 1]) & 0x80) >> 7;
+            int iFrameLength = (((int)mBuffer[mOffset + i]) & 0xFF) << 1;
+            iFrameLength += (((int)mBuffer[mOffset + i + 1]) & 0x80) >> 7;
             
-            if(0 == iFrameLength) {
+            if(0 == iFrameLength || (i + 2 + iFrameLength) > SIZE) {
                 break;
             }
             
-            int frameType = (((int)mBuffer[i + 1]) & 0x0F);
-            
-            Fis f = new Fis(frameType, mBuffer, i + 2, iFrameLength);
-            
-            Product p = ProductFactory.buildProduct(f.mBuffer);
+            Product p = ProductFactory.buildProduct(mStream, mBuffer, mOffset + i + 2, iFrameLength);
             mProducts.add(p);
             
             i += iFrameLength + 2;
         }
+        mBuffer = null;
+    }
+    
+    /**
+     * 
+     * @return products of last uplink, may have nulls for products not understood
+     */
+    public int getProductCount() {
+        return mProducts.size();
     }
     
     /**
      * 
+     * @param index
      * @return
      */
-    public LinkedList<Product> getProducts() {
-        return mProducts;
+    public Product getProduct(int index) {
+        return mProducts.get(index);
     }
 }
@@ -0,0 +1,287 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package com.ds.avare.gdl90;
+
+import com.ds.avare.gps.GpsInterface;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Reads a GDL90 receiver through a transport (Bluetooth, UDP, TCP, file)
+ * and feeds the bytes to the decode pipeline. One instance per receiver,
+ * each with its own pipeline and traffic.
+ *
+ */
+public class Gdl90Connection {
+
+    private volatile boolean mRunning = false;
+    private GpsInterface mListener;
+    
+    private String mCaptureFile;
+    private AdsbStatus mAdsbStatus;
+    private DecodePipeline mPipeline;
+    private Gdl90Transport mTransport;
+    
+    /*
+     * Transport of the running connection
+     */
+    private volatile Gdl90Transport mActive;
+    
+    /**
+     * 
+     */
+    public Gdl90Connection() {
+        mAdsbStatus = new AdsbStatus();
+        mAdsbStatus.setState(AdsbStatus.DISCONNECTED);
+        mPipeline = new DecodePipeline();
+    }
+
+    /**
+     * 
+     * @param source bt:name, udp:port, tcp:host:port, file:path, or
+     * capture:speed:path (speed 1 real time, 0 as fast as possible)
+     * @return null if source is not understood
+     */
+    public static Gdl90Transport makeTransport(String source) {
+        if(null == source) {
+            return null;
+        }
+        String tokens[] = source.split(":", 2);
+        if(tokens.length < 2) {
+            return null;
+        }
+        try {
+            if(tokens[0].equals("bt")) {
+                return new BlueToothTransport(tokens[1]);
+            }
+            else if(tokens[0].equals("udp")) {
+                return new UdpTransport(Integer.parseInt(tokens[1]));
+            }
+            else if(tokens[0].equals("tcp")) {
+                int index = tokens[1].lastIndexOf(':');
+                return new TcpTransport(tokens[1].substring(0, index), 
+                        Integer.parseInt(tokens[1].substring(index + 1)));
+            }
+            else if(tokens[0].equals("file")) {
+                return new FileTransport(tokens[1]);
+            }
+            else if(tokens[0].equals("capture")) {
+                int index = tokens[1].indexOf(':');
+                return new CaptureTransport(tokens[1].substring(index + 1), 
+                        Double.parseDouble(tokens[1].substring(0, index)));
+            }
+        }
+        catch(Exception e) {
+        }
+        return null;
+    }
+
+    /**
+     * Transport to use on next start(). Ignored while connected.
+     * @param transport
+     */
+    public void setTransport(Gdl90Transport transport) {
+        if(mAdsbStatus.getState() != AdsbStatus.DISCONNECTED) {
+            return;
+        }
+        mTransport = transport;
+    }
+    
+    /**
+     * Record frames to this file from next start(), null to not record
+     * @param file
+     */
+    public void setCaptureFile(String file) {
+        mCaptureFile = file;
+    }
+    
+    /**
+     * 
+     */
+    public void stop() {
+        /*
+         * Also while connecting, so a reader still connecting never runs
+         */
+        mRunning = false;
+        
+        /*
+         * Unblock the reader, or a connect in progress
+         */
+        Gdl90Transport transport = mActive;
+        if(null != transport) {
+            transport.disconnect();
+        }
+    }
+
+    /**
+     * 
+     */
+    public void registerListener(GpsInterface listener) {
+        mListener = listener;
+        mPipeline.setListener(listener);
+    }
+    
+    /**
+     * 
+     */
+    public void start() {
+        
+        if(mAdsbStatus.getState() != AdsbStatus.DISCONNECTED) {
+            return;
+        }
+        if(null == mTransport) {
+            return;
+        }
+        
+        mRunning = true;
+        
+        final Gdl90Transport transport = mTransport;
+        mActive = transport;
+        
+        /*
+         * Thread that reads transport
+         */
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                
+                byte[] buffer = new byte[32768];
+                CaptureRecorder recorder = null;
+                
+                if(!connect(transport)) {
+                    return;
+                }
+                
+                /*
+                 * Decoding happens on pipeline's own thread
+                 */
+                mPipeline.setProvider(transport.getName());
+                mPipeline.start();
+                
+                /*
+                 * Record for replay? 
+                 */
+                if(mCaptureFile != null) {
+                    try {
+                        recorder = new CaptureRecorder(mCaptureFile);
+                    }
+                    catch (Exception e) {
+                        recorder = null;
+                    }
+                }
+                mPipeline.setRecorder(recorder);
+                
+                /*
+                 * This state machine will keep trying to connect to 
+                 * ADBS receiver
+                 */
+                try {
+                    while(mRunning) {
+                        
+                        /*
+                         * Read.
+                         */
+                        int red = transport.read(buffer);
+                        if(red < 0) {
+                            /*
+                             * Lost connection, or data ended
+                             */
+                            mRunning = false;
+                            continue;
+                        }
+                        if(0 == red) {
+                            continue;
+                        }
+                        
+                        /*
+                         * Frame and hand over to decoder
+                         */
+                        mPipeline.put(buffer, red);
+                    }
+                }
+                finally {
+                    /*
+                     * Capture is ended with the connection, however the connection ends
+                     */
+                    mPipeline.stop();
+                    mPipeline.setRecorder(null);
+                    if(recorder != null) {
+                        recorder.close();
+                    }
+                    
+                    /*
+                     * Exit
+                     */
+                    transport.disconnect();
+                    setState(AdsbStatus.DISCONNECTED);
+                }
+            }
+        };
+        thread.start();
+    }
+    
+    /**
+     * 
+     * @param state
+     */
+    private void setState(int state) {
+        if(mListener != null) {
+            mAdsbStatus.setState(state);
+            mPipeline.putStatus(mAdsbStatus);
+        }
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    private boolean connect(Gdl90Transport transport) {
+        /*
+         * Only when not connected, connect
+         */
+        if(mAdsbStatus.getState() != AdsbStatus.DISCONNECTED) {
+            return false;
+        }
+        setState(AdsbStatus.CONNECTING);
+        
+        /*
+         * Establish the connection.  This will block until it connects.
+         */
+        if(!transport.connect()) {
+            setState(AdsbStatus.DISCONNECTED);
+            return false;
+        }
+
+        setState(AdsbStatus.CONNECTED);
+
+        return true;
+    }
+    
+    /**
+     * 
+     * @return traffic from receiver, read snapshots on UI thread only
+     */
+    public TrafficStore getTraffic() {
+        return mPipeline.getTraffic();
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public boolean isConnected() {
+        return mAdsbStatus.getState() == AdsbStatus.CONNECTED;
+    }
+
+}
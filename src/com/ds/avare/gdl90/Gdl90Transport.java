@@ -15,16 +15,35 @@ package com.ds.avare.gdl90;
  * 
  * @author zkhan
  *
+ * A source of raw GDL90 bytes, like a Bluetooth serial port, a UDP port, 
+ * a TCP stream, or a recorded file.
+ * All calls except disconnect() are made from the reader thread.
+ *
  */
-public class Fis {
-
-    public Fis(int type, byte buffer[], int offset, int len) {
+public interface Gdl90Transport {
 
-        mBuffer = new byte[len];
-        System.arraycopy(buffer, offset, mBuffer, 0, len);
-    }
+    /**
+     * Blocks till connected
+     * @return true if connected
+     */
+    boolean connect();
     
-    int type;
-    byte mBuffer[];
-
+    /**
+     * Blocks till some data is available
+     * @param buffer
+     * @return bytes read, 0 if nothing came (like an empty datagram), 
+     * -1 when connection is lost or data ended
+     */
+    int read(byte buffer[]);
+    
+    /**
+     * Close, may be called from another thread to unblock read()
+     */
+    void disconnect();
+    
+    /**
+     * 
+     * @return name used as location provider
+     */
+    String getName();
 }
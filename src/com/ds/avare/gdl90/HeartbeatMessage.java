@@ -33,12 +33,14 @@ public class HeartbeatMessage extends Message {
     /**
     *
     * @param msg
+    * @param offset
+    * @param len
     */
-   public void parse(byte msg[]) {
+   public void parse(byte msg[], int offset, int len) {
        /*
         * Some useful fields
         */
-       int d = msg[0] & 0xFF;
+       int d = msg[offset + 0] & 0xFF;
        mGpsPositionValid = (d & 0x80L) != 0;
        mBatteryLow = (d & 0x40L) != 0;
        mDeviceRunning = (d & 0x01L) != 0;
@@ -46,9 +48,9 @@ public class HeartbeatMessage extends Message {
        /*
         * Get time
         */
-       int d1 = msg[1] & 0xFF;
-       int d2 = msg[2] & 0xFF;
-       int d3 = msg[3] & 0xFF;
+       int d1 = msg[offset + 1] & 0xFF;
+       int d2 = msg[offset + 2] & 0xFF;
+       int d3 = msg[offset + 3] & 0xFF;
 
        long timeStamp = ((d1 & 0x80L) << 9) | (d3 << 8) | d2;
        double mHourFrac = (float)timeStamp / 3600.0f;
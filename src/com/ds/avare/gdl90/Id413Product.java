@@ -11,14 +11,25 @@ Redistribution and use in source and binary forms, with or without modification,
 */
 package com.ds.avare.gdl90;
 
+import com.ds.avare.weather.UplinkWeather;
+
 /**
  * 
  * @author zkhan
  *
+ * Text weather. Reports go to UplinkWeather as they are found.
+ *
  */
 public class Id413Product extends Product {
 
-    String mText;
+    private static final char RS = 0x1E;
+    
+    /*
+     * Products are parsed on the decoder thread only
+     */
+    private static DlacDecoder mDecoder = new DlacDecoder(1024);
+    
+    private int mReports;
  
     public Id413Product() {
         super(ProductType.PRODUCT_TYPE_TEXT);
@@ -27,36 +38,32 @@ public class Id413Product extends Product {
     @Override
     protected void parse(byte[] msg) {
 
-        mText = "";
-        int len = msg.length;
-        int holder = 0;
-        int i = 0;
-        
         /*
          * Decode text: begins with @METAR, @TAF, @SPECI, @SUA, @PIREP, @WINDS
+         * Reports are separated by record separator.
          */
-        for(i = 0; i < (len - 3); i += 3) { 
-            holder = 
-                    (((int)msg[i + 0] & 0xFF) << 24) + 
-                    (((int)msg[i + 1] & 0xFF) << 16) +
-                    (((int)msg[i + 2] & 0xFF) << 8);
-            
-            /*
-             * 4 chars in 3 bytes
-             */
-            int firstChar = Constants.DLAC_CODE[((holder & 0xFC000000) >> 26) & 0x3F]; 
-            int secondChar = Constants.DLAC_CODE[((holder & 0x03F00000) >> 20) & 0x3F]; 
-            int thirdChar = Constants.DLAC_CODE[((holder & 0x000FC000) >> 14) & 0x3F];
-            int fourthChar = Constants.DLAC_CODE[((holder & 0x00003F00) >> 8) & 0x3F];
-            
-            mText += String.format("%c%c%c%c", firstChar, secondChar, thirdChar, fourthChar);
-        }
+        int len = mDecoder.decode(msg, 0, msg.length);
+        char c[] = mDecoder.getChars();
+        long now = System.currentTimeMillis();
+        UplinkWeather weather = UplinkWeather.getInstance();
         
-        if(!mText.equals("")) {
-            mText = mText.split("\u001E")[0];
-            Logger.Logit(mText);
+        mReports = 0;
+        int start = 0;
+        for(int i = 0; i <= len; i++) {
+            if(i == len || c[i] == RS) {
+                if(i > start && weather.put(c, start, i, now)) {
+                    mReports++;
+                }
+                start = i + 1;
+            }
         }
-        
     }
 
+    /**
+     * 
+     * @return number of weather reports stored from this product
+     */
+    public int getReports() {
+        return mReports;
+    }
 }
@@ -11,9 +11,6 @@ Redistribution and use in source and binary forms, with or without modification,
 */
 package com.ds.avare.gdl90;
 
-import java.util.LinkedList;
-
-
 /**
  * 
  * @author zkhan
@@ -37,6 +34,11 @@ public class Id6364Product extends Product {
         return mConus;
     }
     
+    @Override
+    public long getTtl() {
+        return mConus ? ProductType.TTL_NEXRAD_CONUS : ProductType.TTL_NEXRAD_REGIONAL;
+    }
+    
     @Override
     protected void parse(byte[] msg) {
         mNexrad = new Nexrad();
@@ -55,16 +57,24 @@ public class Id6364Product extends Product {
      * 
      * @return
      */
-    public int[] getData() {
-       return mNexrad.getData(); 
+    public byte[] getRle() {
+       return mNexrad.getRle(); 
     }
 
     /**
      * 
      * @return
      */
-    public LinkedList<Integer> getEmpty() {
+    public int[] getEmpty() {
        return mNexrad.getEmpty(); 
     }
 
+    /**
+     * 
+     * @return
+     */
+    public int getEmptyCount() {
+       return mNexrad.getEmptyCount(); 
+    }
+
 }
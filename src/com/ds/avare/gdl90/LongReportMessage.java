@@ -15,17 +15,13 @@ package com.ds.avare.gdl90;
  * 
  * @author zkhan
  *
+ * Same as basic report for position, adds mode status which is not used
+ *
  */
-public class LongReportMessage extends Message {
+public class LongReportMessage extends BasicReportMessage {
 
     public LongReportMessage() {
         super(MessageType.LONG_REPORT);
     }
 
-    @Override
-    protected void parse(byte[] msg) {
-        Logger.Logit("Not implemented long report");
-
-    }
-
 }
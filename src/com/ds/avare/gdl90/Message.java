@@ -34,6 +34,12 @@ public abstract class Message {
         return mType;
     }
 
-    protected abstract void parse(byte msg[]);
+    /**
+     * 
+     * @param msg buffer with message data, type and CRC stripped
+     * @param offset where data begins in msg
+     * @param len length of data
+     */
+    protected abstract void parse(byte msg[], int offset, int len);
 
 }
@@ -18,10 +18,40 @@ package com.ds.avare.gdl90;
  */
 public class MessageFactory {
 
-    
-    public static Message buildMessage(byte bufin[]) {
-        
-        int len = bufin.length;
+    /**
+     * 
+     * @param bufin frame with flags, de-escaped in place
+     * @param len length of frame in bufin
+     * @return
+     */
+    public static Message buildMessage(byte bufin[], int len) {
+        return buildMessage(bufin, len, null, null);
+    }
+
+    /**
+     * Traffic reports are parsed into messages reused from traffic and
+     * are valid till the next traffic report.
+     * @param bufin frame with flags, de-escaped in place
+     * @param len length of frame in bufin
+     * @param traffic
+     * @return
+     */
+    public static Message buildMessage(byte bufin[], int len, TrafficStore traffic) {
+        return buildMessage(bufin, len, traffic, null);
+    }
+
+    /**
+     * Uplinks are parsed into uplink, so the busiest message does not allocate. 
+     * Products found are valid till the next uplink is parsed. 
+     * Use one uplink per decoding thread.
+     * @param bufin frame with flags, de-escaped in place
+     * @param len length of frame in bufin
+     * @param traffic null to make new traffic messages
+     * @param uplink null to make new uplink messages
+     * @return
+     */
+    public static Message buildMessage(byte bufin[], int len, TrafficStore traffic, UplinkMessage uplink) {
+        byte out[] = bufin;
         
         /*
          * Strip flag bytes 0x7E
@@ -29,13 +59,11 @@ public class MessageFactory {
         if(len < 5) {
             return null;
         }
-        byte strp[] = new byte[len - 2];
-        System.arraycopy(bufin, 1, strp, 0, len - 2);
         
         /* Check CRC */
-        byte[] inbuf = process(strp);
+        int length = process(bufin, 1, len - 2, out);
 
-        if(null == inbuf) {
+        if(length < 3) {
             /*
              * CRC fail
              */
@@ -45,14 +73,8 @@ public class MessageFactory {
         /*
          * Strip type and CRC to get actual data
          */
-        int type = inbuf[0] & 0xFF;
-        byte data[] = new byte[inbuf.length - 3];
-        System.arraycopy(inbuf, 1, data, 0, inbuf.length - 3);
+        int type = out[0] & 0xFF;
 
-        /*
-         * data has actual data and type is its type
-         * Parse now
-         */
         Message m;
         switch(type) {
 
@@ -61,7 +83,7 @@ public class MessageFactory {
                 break;
                 
             case MessageType.UPLINK:
-                m = new UplinkMessage();
+                m = (null == uplink) ? new UplinkMessage() : uplink;
                 break;
                 
             case MessageType.OWNSHIP:
@@ -73,15 +95,15 @@ public class MessageFactory {
                 break;
                 
             case MessageType.TRAFFIC_REPORT:
-                m = new TrafficReportMessage();
+                m = (null == traffic) ? new TrafficReportMessage() : traffic.getReportMessage(type);
                 break;
                 
             case MessageType.BASIC_REPORT:
-                m = new BasicReportMessage();
+                m = (null == traffic) ? new BasicReportMessage() : traffic.getReportMessage(type);
                 break;
                 
             case MessageType.LONG_REPORT:
-                m = new LongReportMessage();
+                m = (null == traffic) ? new LongReportMessage() : traffic.getReportMessage(type);
                 break;
                 
             case MessageType.DEVICE_REPORT:
@@ -97,61 +119,65 @@ public class MessageFactory {
          * Parse it.
          */
         if(null != m) {
-            m.parse(data);
+            m.parse(out, 1, length - 3);
         }
         return(m);
         
     }
     
     /**
-     * CRC16 process with 0x7D escape remove
+     * CRC16 process with 0x7D escape remove, in one pass.
+     * out may be the same array as msg as output never runs ahead of input.
      * @param msg
-     * @return
+     * @param offset
+     * @param len
+     * @param out
+     * @return length of corrected message in out, -1 if CRC fails
      */
-    private static byte[] process(byte msg[]) {
-        int i = 0;
+    private static int process(byte msg[], int offset, int len, byte out[]) {
+        int i = offset;
+        int end = offset + len;
         int length = 0;
-        int len = msg.length;
-        byte msgCrc[] = new byte[len];
+        int crc = 0;
         byte msgChar;
-        while (i < len) {
+        while (i < end) {
             /*
              * 0x7D skip, and ^ with 0x20 to correct.
              */
             if (msg[i] == 0x7D) {
                 i++;
-                if(i >= len) {
+                if(i >= end) {
                     break;
                 }
                 msgChar = (byte)(msg[i] ^ 0x20);
-                msgCrc[length] = msgChar;
             }
             else {
-                msgCrc[length] = msg[i];
+                msgChar = msg[i];
             }
+            
+            /*
+             * CRC lags 2 bytes behind to exclude CRC in CRC compute
+             */
+            if(length >= 2) {
+                crc = Crc.update(crc, out[length - 2]);
+            }
+            out[length] = msgChar;
             length++;
             i++;
         }
         
-        /*
-         *  exclude CRC in CRC compute
-         */
-        int msb = ((int)msgCrc[length - 1]) & 0xFF;
-        int lsb = ((int)msgCrc[length - 2]) & 0xFF;
+        if(length < 2) {
+            return -1;
+        }
+        int msb = ((int)out[length - 1]) & 0xFF;
+        int lsb = ((int)out[length - 2]) & 0xFF;
         int inCrc = (msb << 8) + lsb;
-        if(!Crc.checkCrc(msgCrc, length - 2, inCrc)) {
+        if(crc != inCrc) {
             Logger.Logit("CRC failed");
-            return null;
+            return -1;
         }
 
-        /*
-         * Return corrected message.
-         */
-        byte ret[] = new byte[length];
-        System.arraycopy(msgCrc, 0, ret, 0, length);
-        return ret;
+        return length;
     }
     
-    
-    
 }
@@ -12,7 +12,7 @@ Redistribution and use in source and binary forms, with or without modification,
 
 package com.ds.avare.gdl90;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 
 /**
  * 
@@ -32,13 +32,20 @@ public class Nexrad {
         0xFFFF00FF
     };    
 
+    /*
+     * Where RLE data starts in the message
+     */
+    public static final int RLE_OFFSET = 3;
+    
     private int mBlock;
-    private int mData[];
-    private LinkedList<Integer> mEmpty;
+    private byte mRle[];
+    private int mEmpty[];
+    private int mEmptyCount;
 
     public Nexrad() {
         mEmpty = null;
-        mData = null;
+        mEmptyCount = 0;
+        mRle = null;
         mBlock = -1;
     }
 
@@ -81,6 +88,44 @@ public class Nexrad {
         lonlat[0] = -fracLon; // XXX: -ve sign?
     }
 
+    /*
+     * Block grid, minutes. Rings from 60 degrees north have half the blocks, each two columns wide.
+     */
+    public static final int BLOCK_WIDTH = 48;
+    public static final int BLOCK_HEIGHT = 4;
+    public static final int COLUMNS = 450;
+    private static final int HIGH_RING_BLOCKS = 225;
+    private static final int HIGH_BLOCK = 405000;
+    private static final int HIGH_RING = HIGH_BLOCK / COLUMNS;
+    
+    /**
+     * Blocks are numbered east from 0 longitude.
+     * @param blockNumber
+     * @return column of block, in BLOCK_WIDTH steps east of -180
+     */
+    public static int getBlockColumn(int blockNumber) {
+        int col;
+        if(blockNumber < HIGH_BLOCK) {
+            col = blockNumber % COLUMNS;
+        }
+        else {
+            col = 2 * ((blockNumber - HIGH_BLOCK) % HIGH_RING_BLOCKS);
+        }
+        return (col + COLUMNS / 2) % COLUMNS;
+    }
+
+    /**
+     * 
+     * @param blockNumber
+     * @return row (ring) of block, in BLOCK_HEIGHT steps north of equator
+     */
+    public static int getBlockRow(int blockNumber) {
+        if(blockNumber < HIGH_BLOCK) {
+            return blockNumber / COLUMNS;
+        }
+        return HIGH_RING + (blockNumber - HIGH_BLOCK) / HIGH_RING_BLOCKS;
+    }
+
     /**
      * Parse graphics
      */
@@ -98,87 +143,70 @@ public class Nexrad {
         int index = 3;
         
         /*
-         * Decode blocks RLE encoded
+         * Blocks RLE encoded are kept as they are, see expand()
          */
         if(elementIdentifier) {
-            mData = new int[Constants.COLS_PER_BIN * Constants.ROWS_PER_BIN];
+            mRle = msg;
             mEmpty = null;
-            
-            /*
-             * Each row element is 1 minute (4 minutes total)
-             * Each col element is 1.5 minute (48 minutes total)
-             */
-            for (int i = 0; i < Constants.COLS_PER_BIN * Constants.ROWS_PER_BIN; i++) {
-                mData[i] = INTENSITY[0];
-            }
-            
-            int j = 0;
-            int i;
-            while(index < len) {
-                int numberOfBins = ((msg[index] & 0xF8) >> 3) + 1;
-                for(i = 0; i < numberOfBins; i++) {
-                    mData[j] = INTENSITY[(msg[index] & 0x07)];
-                    j++;
-                }
-                index++;
-            }
+            mEmptyCount = 0;
         }
         else {
             /*
              * Make a list of empty blocks
              */
-            mData = null;
-            mEmpty = new LinkedList<Integer>();
-            mEmpty.add(mBlock);
+            mRle = null;
+            mEmpty = new int[5 + 8 * 15];
+            mEmptyCount = 0;
+            mEmpty[mEmptyCount++] = mBlock;
             int bitmaplen = (int)msg[index] & 0x0F;
             
             if(((int)msg[index] & 0x10) != 0) {
-                mEmpty.add(mBlock + 1);
+                mEmpty[mEmptyCount++] = mBlock + 1;
             }
      
             if(((int)msg[index] & 0x20) != 0) {
-                mEmpty.add(mBlock + 2);
+                mEmpty[mEmptyCount++] = mBlock + 2;
             }
             
             if(((int)msg[index] & 0x30) != 0) {
-                mEmpty.add(mBlock + 3);
+                mEmpty[mEmptyCount++] = mBlock + 3;
             }
             
             if(((int)msg[index] & 0x40) != 0) {
-                mEmpty.add(mBlock + 4);
+                mEmpty[mEmptyCount++] = mBlock + 4;
             }
             
-            for(int i = 1; i < bitmaplen; i++) {
+            for(int i = 1; i < bitmaplen && (index + i) < len; i++) {
                 if(((int)msg[index + i] & 0x01) != 0) {
-                    mEmpty.add(mBlock + i * 8 - 3);
+                    mEmpty[mEmptyCount++] = mBlock + i * 8 - 3;
                 }
 
                 if(((int)msg[index + i] & 0x02) != 0) {
-                    mEmpty.add(mBlock + i * 8 - 2);
+                    mEmpty[mEmptyCount++] = mBlock + i * 8 - 2;
                 }
                 
                 if(((int)msg[index + i] & 0x04) != 0) {
-                    mEmpty.add(mBlock + i * 8 - 1);
+                    mEmpty[mEmptyCount++] = mBlock + i * 8 - 1;
                 }
                 
                 if(((int)msg[index + i] & 0x08) != 0) {
-                    mEmpty.add(mBlock + i * 8 - 0);
+                    mEmpty[mEmptyCount++] = mBlock + i * 8 - 0;
                 }
                 
                 if(((int)msg[index + i] & 0x10) != 0) {
-                    mEmpty.add(mBlock + i * 8 + 1);
+                    mEmpty[mEmptyCount++] = mBlock + i * 8 + 1;
                 }
 
                 if(((int)msg[index + i] & 0x20) != 0) {
-                    mEmpty.add(mBlock + i * 8 + 2);
+                    mEmpty[mEmptyCount++] = mBlock + i * 8 + 2;
                 }
                 
                 if(((int)msg[index + i] & 0x40) != 0) {
-                    mEmpty.add(mBlock + i * 8 + 3);
+                    mEmpty[mEmptyCount++] = mBlock + i * 8 + 3;
                 }
                 
                 if(((int)msg[index + i] & 0x80) != 0) {
-                    mEmpty.add(mBlock + i * 8 + 4);
+                    mEmpty[mEmptyCount++] = mBlock + i * 8 + 4;
                 }
             }
         }
@@ -194,17 +222,60 @@ public class Nexrad {
     
     /**
      * 
-     * @return
+     * @return message with RLE data from RLE_OFFSET, null if empty blocks
      */
-    public int[] getData() {
-        return mData;
+    public byte[] getRle() {
+        return mRle;
     }
     
     /**
      * 
-     * @return
+     * @return empty block numbers, 0 to getEmptyCount() - 1
      */
-    public LinkedList<Integer> getEmpty() {
+    public int[] getEmpty() {
         return mEmpty;
     }    
+
+    /**
+     * 
+     * @return
+     */
+    public int getEmptyCount() {
+        return mEmptyCount;
+    }    
+
+    /**
+     * Expand RLE data of a block into colors
+     * @param rle message with RLE data from RLE_OFFSET
+     * @param out
+     * @param offset where top left of block goes in out
+     * @param stride row length of out
+     */
+    public static void expand(byte rle[], int out[], int offset, int stride) {
+        /*
+         * Each row element is 1 minute (4 minutes total)
+         * Each col element is 1.5 minute (48 minutes total)
+         */
+        for(int r = 0; r < Constants.ROWS_PER_BIN; r++) {
+            int start = offset + r * stride;
+            Arrays.fill(out, start, start + Constants.COLS_PER_BIN, INTENSITY[0]);
+        }
+        
+        int j = 0;
+        int total = Constants.COLS_PER_BIN * Constants.ROWS_PER_BIN;
+        for(int index = RLE_OFFSET; index < rle.length && j < total; index++) {
+            int numberOfBins = ((rle[index] & 0xF8) >> 3) + 1;
+            int color = INTENSITY[(rle[index] & 0x07)];
+            if(0 == (rle[index] & 0x07)) {
+                /*
+                 * Already cleared
+                 */
+                j += numberOfBins;
+                continue;
+            }
+            for(int i = 0; i < numberOfBins && j < total; i++, j++) {
+                out[offset + (j / Constants.COLS_PER_BIN) * stride + (j % Constants.COLS_PER_BIN)] = color;
+            }
+        }
+    }
 }
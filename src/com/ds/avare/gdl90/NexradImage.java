@@ -11,7 +11,7 @@ Redistribution and use in source and binary forms, with or without modification,
 */
 package com.ds.avare.gdl90;
 
-import java.util.LinkedList;
+import com.ds.avare.utils.BitmapHolder;
 
 import android.util.SparseArray;
 
@@ -19,13 +19,196 @@ import android.util.SparseArray;
  * 
  * @author zkhan
  *
+ * NEXRAD as a mosaic of pages, each a region of blocks in a few rings.
+ * Only pages with some weather in them are kept. Blocks stay RLE compressed,
+ * and bitmaps are made only for pages drawn, within a memory budget, 
+ * dropping the least recently drawn first. Blocks are removed when they 
+ * expire, see ProductType for how long they are good for.
+ *
  */
 public class NexradImage {
 
-    SparseArray<NexradBitmap> mImg;
+    /*
+     * Page key bit for low resolution blocks, which get their own pages
+     */
+    private static final int LOW_RES = 1 << 30;
+    
+    /*
+     * Default bitmap memory budget in bytes
+     */
+    public static final int BUDGET = 8 * 1024 * 1024;
+    
+    private SparseArray<NexradPage> mPages;
+    
+    /*
+     * Pages with bitmaps, newest drawn first
+     */
+    private NexradPage mNewest;
+    private NexradPage mOldest;
+    private int mBitmapBytes;
+    private int mBudget;
+    private int mFrame;
+    private int mScratch[];
+    
+    /*
+     * Block expiry, 5 second ticks over more than an hour
+     */
+    private static final int WHEEL_SLOTS = 1024;
+    private static final long WHEEL_TICK = 5000;
+    private ExpiryWheel mExpiry;
+    
+    /*
+     * Time of newest block, regional and CONUS
+     */
+    private long mNewestRegional;
+    private long mNewestConus;
+    
+    /*
+     * Result of locate()
+     */
+    private int mKey;
+    private int mX;
+    private int mY;
     
     public NexradImage() {
-        mImg = new SparseArray<NexradBitmap>();
+        this(BUDGET);
+    }
+
+    /**
+     * 
+     * @param budget bytes of bitmap memory to use
+     */
+    public NexradImage(int budget) {
+        mPages = new SparseArray<NexradPage>();
+        mNewest = null;
+        mOldest = null;
+        mBitmapBytes = 0;
+        mBudget = budget;
+        mFrame = 0;
+        mScratch = null;
+        mExpiry = new ExpiryWheel(WHEEL_SLOTS, WHEEL_TICK);
+        mNewestRegional = 0;
+        mNewestConus = 0;
+    }
+    
+    /**
+     * Block size in minutes
+     * @param conus
+     * @return
+     */
+    private static double getBlockWidth(boolean conus) {
+        /*
+         * Scales are in minutes per pixel
+         */
+        return Constants.COLS_PER_BIN * (conus ? 1.5 : 7.5);
+    }
+
+    private static double getBlockHeight(boolean conus) {
+        return Constants.ROWS_PER_BIN * (conus ? 1 : 5);
+    }
+
+    /**
+     * Find page key, and place of block in the page
+     * @param block
+     * @param conus
+     */
+    private void locate(int block, boolean conus) {
+        /*
+         * In integers, as lat/lon in floating point does not come back to the same block
+         */
+        int col = Nexrad.getBlockColumn(block) * Nexrad.BLOCK_WIDTH / (int)getBlockWidth(conus);
+        int row = Nexrad.getBlockRow(block) * Nexrad.BLOCK_HEIGHT / (int)getBlockHeight(conus);
+        int pcol = col / NexradPage.BLOCKS_X;
+        int prow = row / NexradPage.BLOCKS_Y;
+        mKey = (conus ? 0 : LOW_RES) | ((prow & 0x7FFF) << 15) | (pcol & 0x7FFF);
+        mX = col - pcol * NexradPage.BLOCKS_X;
+        
+        /*
+         * Rows go up with latitude, page rows go down
+         */
+        mY = NexradPage.BLOCKS_Y - 1 - (row - prow * NexradPage.BLOCKS_Y);
+    }
+    
+    /**
+     * 
+     * @param block
+     * @param conus
+     * @param rle
+     * @param time of block, ms
+     * @param ttl ms
+     */
+    private void put(int block, boolean conus, byte rle[], long time, long ttl) {
+        locate(block, conus);
+        NexradPage page = mPages.get(mKey);
+        if(null == page) {
+            /*
+             * Top left of page, its top row is the block row of highest latitude
+             */
+            int pcol = mKey & 0x7FFF;
+            int prow = (mKey >> 15) & 0x7FFF;
+            double lon = pcol * NexradPage.BLOCKS_X * getBlockWidth(conus) / 60 - 180;
+            double lat = (prow * NexradPage.BLOCKS_Y + NexradPage.BLOCKS_Y - 1) * getBlockHeight(conus) / 60;
+            page = new NexradPage(mKey, ttl, lon, lat, 
+                    getBlockWidth(conus) / Constants.COLS_PER_BIN / 60, 
+                    getBlockHeight(conus) / Constants.ROWS_PER_BIN / 60);
+            mPages.put(mKey, page);
+        }
+        page.put(mX, mY, rle, time);
+        mExpiry.schedule(page.getExpiry(mX, mY), time + ttl);
+    }
+    
+    /**
+     * 
+     * @param block
+     * @param conus
+     */
+    private void clear(int block, boolean conus) {
+        locate(block, conus);
+        NexradPage page = mPages.get(mKey);
+        if(null == page) {
+            return;
+        }
+        mExpiry.cancel(page.getExpiry(mX, mY));
+        page.clear(mX, mY);
+        removeIfEmpty(page);
+    }
+    
+    /**
+     * 
+     * @param page
+     */
+    private void removeIfEmpty(NexradPage page) {
+        if(0 == page.getCount()) {
+            /*
+             * All clear, free its memory
+             */
+            release(page);
+            mPages.remove(page.getKey());
+        }
+    }
+    
+    /**
+     * Blocks past their time are cleared
+     */
+    private ExpiryWheel.Listener mExpired = new ExpiryWheel.Listener() {
+        @Override
+        public void expired(ExpiryWheel.Entry e) {
+            NexradPage page = (NexradPage)e.getOwner();
+            page.clear(e.getKey());
+            removeIfEmpty(page);
+        }
+    };
+    
+    /**
+     * Remove blocks that are too old. Costs only the blocks expiring.
+     * @param now ms
+     */
+    public void expire(long now) {
+        mExpiry.advance(now, mExpired);
+        if(0 == mPages.size()) {
+            mNewestRegional = 0;
+            mNewestConus = 0;
+        }
     }
     
     /**
@@ -34,40 +217,174 @@ public class NexradImage {
      */
     public void putImg(Id6364Product product) {
         
-        int data[] = product.getData();
-        LinkedList<Integer> empty = product.getEmpty();
-        int block = product.getBlockNumber();
-        if(null == data && null != empty) {
+        byte rle[] = product.getRle();
+        int empty[] = product.getEmpty();
+        boolean conus = product.isConus();
+        long now = System.currentTimeMillis();
+        long time = product.getTime(now);
+        expire(now);
+        if(time + product.getTtl() <= now) {
             /*
-             * Empty, make dummy bitmaps of all.
+             * Too old already
              */
-            for(int b : empty) {
-                if(mImg.get(b) != null) {
-                    /*
-                     * Replace same block, but clears the bitmap
-                     */
-                    mImg.get(b).discard();
-                }
-                mImg.put((Integer)b, new NexradBitmap(null, b, product.isConus()));
+            return;
+        }
+        if(conus) {
+            mNewestConus = Math.max(mNewestConus, time);
+        }
+        else {
+            mNewestRegional = Math.max(mNewestRegional, time);
+        }
+        if(null != rle) {
+            put(product.getBlockNumber(), conus, rle, time, product.getTtl());
+        }
+        else if(null != empty) {
+            /*
+             * Empty, clear all.
+             */
+            for(int i = 0; i < product.getEmptyCount(); i++) {
+                clear(empty[i], conus);
             }
         }
+    }
+    
+    /**
+     * 
+     * @param page
+     */
+    private void unlink(NexradPage page) {
+        if(null != page.mNewer) {
+            page.mNewer.mOlder = page.mOlder;
+        }
+        else {
+            mNewest = page.mOlder;
+        }
+        if(null != page.mOlder) {
+            page.mOlder.mNewer = page.mNewer;
+        }
+        else {
+            mOldest = page.mNewer;
+        }
+        page.mNewer = null;
+        page.mOlder = null;
+    }
+    
+    /**
+     * Free bitmap of a page
+     * @param page
+     */
+    private void release(NexradPage page) {
+        if(page.hasBitmap()) {
+            unlink(page);
+            page.discard();
+            mBitmapBytes -= NexradPage.BITMAP_BYTES;
+        }
+    }
+    
+    /**
+     * Call before drawing pages of a new frame
+     */
+    public void newFrame() {
+        mFrame++;
+        expire(System.currentTimeMillis());
+    }
+    
+    /**
+     * Bitmap of a page, made or brought up to date as needed. Call from UI thread.
+     * Pages not drawn recently lose their bitmaps to stay in budget, except those 
+     * already drawn in this frame.
+     * @param page
+     * @return null if no memory
+     */
+    public BitmapHolder getBitmap(NexradPage page) {
+        boolean had = page.hasBitmap();
+        if(had) {
+            unlink(page);
+        }
         else {
-            if(mImg.get(block) != null) {
-                /*
-                 * Replace same block
-                 */
-                mImg.get(block).discard();
+            while(null != mOldest && mOldest.mFrame != mFrame && 
+                    mBitmapBytes + NexradPage.BITMAP_BYTES > mBudget) {
+                release(mOldest);
+            }
+            if(null == mScratch) {
+                mScratch = new int[NexradPage.WIDTH * NexradPage.HEIGHT];
             }
-            mImg.put((Integer)block, new NexradBitmap(data, block, product.isConus()));
         }
-        
+        BitmapHolder b = page.getBitmap(mScratch);
+        if(null == b) {
+            return null;
+        }
+        if(!had) {
+            mBitmapBytes += NexradPage.BITMAP_BYTES;
+        }
+        page.mOlder = mNewest;
+        page.mNewer = null;
+        if(null != mNewest) {
+            mNewest.mNewer = page;
+        }
+        else {
+            mOldest = page;
+        }
+        mNewest = page;
+        page.mFrame = mFrame;
+        return b;
+    }
+    
+    /**
+     * 
+     * @param now ms
+     * @param conus
+     * @return age of newest block in ms, -1 if none
+     */
+    public long getAgeOfNewest(long now, boolean conus) {
+        long newest = conus ? mNewestConus : mNewestRegional;
+        if(0 == newest) {
+            return -1;
+        }
+        return now - newest;
+    }
+    
+    /**
+     * 
+     * @return blocks waiting to expire
+     */
+    public int getBlocks() {
+        return mExpiry.getCount();
+    }
+    
+    /**
+     * 
+     * @param budget bytes of bitmap memory to use
+     */
+    public void setBudget(int budget) {
+        mBudget = budget;
+    }
+    
+    /**
+     * 
+     * @return bytes of bitmap memory used
+     */
+    public int getBitmapBytes() {
+        return mBitmapBytes;
+    }
+    
+    /**
+     * 
+     * @return bytes of compressed blocks held
+     */
+    public int getRleBytes() {
+        int bytes = 0;
+        for(int i = 0; i < mPages.size(); i++) {
+            bytes += mPages.valueAt(i).getRleBytes();
+        }
+        return bytes;
     }
     
     /**
      * 
      * @return
      */
-    public SparseArray<NexradBitmap> getImages() {
-        return mImg;
+    public SparseArray<NexradPage> getImages() {
+        return mPages;
     }    
 }
@@ -0,0 +1,286 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+import java.util.Arrays;
+
+import com.ds.avare.utils.BitmapHolder;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * A rectangular region of NEXRAD blocks, BLOCKS_X wide and BLOCKS_Y rings tall.
+ * Blocks are kept RLE compressed as received. They are expanded to pixels only
+ * when the page is drawn, and then only the rows that changed.
+ *
+ */
+public class NexradPage {
+
+    public static final int BLOCKS_X = 16;
+    public static final int BLOCKS_Y = 32;
+    public static final int WIDTH = BLOCKS_X * Constants.COLS_PER_BIN;
+    public static final int HEIGHT = BLOCKS_Y * Constants.ROWS_PER_BIN;
+    
+    /*
+     * Memory taken by bitmap of a page
+     */
+    public static final int BITMAP_BYTES = WIDTH * HEIGHT * 4;
+    
+    private byte mRle[][];
+    private ExpiryWheel.Entry mExpiry[];
+    private int mCount;
+    private int mRleBytes;
+    private int mKey;
+    private long mTtl;
+    private long mNewest;
+    
+    private BitmapHolder mBitmap;
+    
+    /*
+     * Rows not yet in bitmap, top inclusive, bottom exclusive
+     */
+    private int mDirtyTop;
+    private int mDirtyBottom;
+    
+    private double mLonLeft;
+    private double mLatTop;
+    private double mScaleX;
+    private double mScaleY;
+    
+    /*
+     * For NexradImage to keep pages with bitmaps in LRU order
+     */
+    NexradPage mOlder;
+    NexradPage mNewer;
+    int mFrame;
+    
+    /**
+     * 
+     * @param key
+     * @param ttl how long blocks are good for, ms
+     * @param lonLeft
+     * @param latTop
+     * @param scaleX degrees per pixel
+     * @param scaleY degrees per pixel
+     */
+    NexradPage(int key, long ttl, double lonLeft, double latTop, double scaleX, double scaleY) {
+        mKey = key;
+        mTtl = ttl;
+        mNewest = 0;
+        mLonLeft = lonLeft;
+        mLatTop = latTop;
+        mScaleX = scaleX;
+        mScaleY = scaleY;
+        mRle = new byte[BLOCKS_X * BLOCKS_Y][];
+        mExpiry = new ExpiryWheel.Entry[BLOCKS_X * BLOCKS_Y];
+        mCount = 0;
+        mRleBytes = 0;
+        mBitmap = null;
+        mDirtyTop = 0;
+        mDirtyBottom = HEIGHT;
+    }
+    
+    /**
+     * 
+     * @param y
+     */
+    private void dirty(int y) {
+        mDirtyTop = Math.min(mDirtyTop, y * Constants.ROWS_PER_BIN);
+        mDirtyBottom = Math.max(mDirtyBottom, (y + 1) * Constants.ROWS_PER_BIN);
+    }
+    
+    /**
+     * Put a block in
+     * @param x block column in page, 0 is west
+     * @param y block row in page, 0 is north
+     * @param rle message with RLE data from Nexrad.RLE_OFFSET
+     * @param time of block, ms
+     */
+    void put(int x, int y, byte rle[], long time) {
+        int slot = y * BLOCKS_X + x;
+        mNewest = Math.max(mNewest, time);
+        if(null == mRle[slot]) {
+            mCount++;
+        }
+        else {
+            mRleBytes -= mRle[slot].length;
+        }
+        mRle[slot] = rle;
+        mRleBytes += rle.length;
+        dirty(y);
+    }
+    
+    /**
+     * Make a block empty
+     * @param x
+     * @param y
+     */
+    void clear(int x, int y) {
+        clear(y * BLOCKS_X + x);
+    }
+    
+    /**
+     * 
+     * @param slot
+     */
+    void clear(int slot) {
+        if(null == mRle[slot]) {
+            return;
+        }
+        mRleBytes -= mRle[slot].length;
+        mRle[slot] = null;
+        mCount--;
+        dirty(slot / BLOCKS_X);
+    }
+    
+    /**
+     * Expiry entry of block, made on first use, key is slot
+     * @param x
+     * @param y
+     * @return
+     */
+    ExpiryWheel.Entry getExpiry(int x, int y) {
+        int slot = y * BLOCKS_X + x;
+        if(null == mExpiry[slot]) {
+            mExpiry[slot] = new ExpiryWheel.Entry(this, slot);
+        }
+        return mExpiry[slot];
+    }
+    
+    int getKey() {
+        return mKey;
+    }
+    
+    /**
+     * 
+     * @return how long blocks in this page are good for, ms
+     */
+    public long getTtl() {
+        return mTtl;
+    }
+    
+    /**
+     * 
+     * @return time of newest block put in this page, ms
+     */
+    public long getNewestTime() {
+        return mNewest;
+    }
+    
+    /**
+     * 
+     * @return number of blocks with weather
+     */
+    int getCount() {
+        return mCount;
+    }
+    
+    /**
+     * 
+     * @return bytes of compressed blocks
+     */
+    int getRleBytes() {
+        return mRleBytes;
+    }
+    
+    /**
+     * 
+     * @return true if bitmap memory is held
+     */
+    boolean hasBitmap() {
+        return null != mBitmap;
+    }
+    
+    /**
+     * Bring bitmap up to date with blocks, making it if needed. Call from UI thread.
+     * @param scratch WIDTH * HEIGHT pixels to expand blocks in
+     * @return null if no memory
+     */
+    BitmapHolder getBitmap(int scratch[]) {
+        if(null == mBitmap) {
+            mBitmap = new BitmapHolder(WIDTH, HEIGHT);
+            if(null == mBitmap.getBitmap()) {
+                mBitmap = null;
+                return null;
+            }
+            mDirtyTop = 0;
+            mDirtyBottom = HEIGHT;
+        }
+        if(mDirtyTop < mDirtyBottom) {
+            for(int y = mDirtyTop / Constants.ROWS_PER_BIN; y < mDirtyBottom / Constants.ROWS_PER_BIN; y++) {
+                for(int x = 0; x < BLOCKS_X; x++) {
+                    int offset = y * Constants.ROWS_PER_BIN * WIDTH + x * Constants.COLS_PER_BIN;
+                    byte rle[] = mRle[y * BLOCKS_X + x];
+                    if(null != rle) {
+                        Nexrad.expand(rle, scratch, offset, WIDTH);
+                    }
+                    else {
+                        for(int r = 0; r < Constants.ROWS_PER_BIN; r++) {
+                            int start = offset + r * WIDTH;
+                            Arrays.fill(scratch, start, start + Constants.COLS_PER_BIN, Nexrad.INTENSITY[0]);
+                        }
+                    }
+                }
+            }
+            mBitmap.getBitmap().setPixels(scratch, mDirtyTop * WIDTH, WIDTH, 0, mDirtyTop, 
+                    WIDTH, mDirtyBottom - mDirtyTop);
+            mDirtyTop = HEIGHT;
+            mDirtyBottom = 0;
+        }
+        return mBitmap;
+    }
+    
+    /**
+     * Free bitmap memory. Blocks are kept.
+     */
+    void discard() {
+        if(null != mBitmap) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+        mDirtyTop = 0;
+        mDirtyBottom = HEIGHT;
+    }
+    
+    public double getLatTopLeft() {
+        return mLatTop;
+    }
+    
+    public double getLonTopLeft() {
+        return mLonLeft;
+    }
+
+    public double getLatBottom() {
+        return mLatTop - HEIGHT * mScaleY;
+    }
+    
+    public double getLonRight() {
+        return mLonLeft + WIDTH * mScaleX;
+    }
+
+    /**
+     * 
+     * @return degrees per pixel
+     */
+    public double getScaleX() {
+        return mScaleX;
+    }
+    
+    /**
+     * 
+     * @return degrees per pixel
+     */
+    public double getScaleY() {
+        return mScaleY;
+    }    
+}
@@ -27,13 +27,15 @@ public class OwnshipGeometricAltitudeMessage extends Message {
     /**
      * 
      * @param msg
+     * @param offset
+     * @param len
      */
-    public void parse(byte msg[]) {
+    public void parse(byte msg[], int offset, int len) {
 
         /*
          *  bytes 0-1 are the altitude
          */
-        int alt = (((int)msg[0] & 0xFF) << 8) + ((int)msg[1] & 0xFF);
+        int alt = (((int)msg[offset + 0] & 0xFF) << 8) + ((int)msg[offset + 1] & 0xFF);
         alt *= 5;
         mAltitudeWGS84 = alt;
         
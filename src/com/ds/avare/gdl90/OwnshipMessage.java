@@ -47,21 +47,23 @@ public class OwnshipMessage extends Message {
     /**
      * 
      * @param msg
+     * @param offset
+     * @param len
      */
-    public void parse(byte msg[]) {
+    public void parse(byte msg[], int offset, int len) {
 
         /*
          * Lon/lat
          */
-        mLat = this.calculateDegrees((int)(msg[4] & 0xFF), (int)(msg[5] & 0xFF), (int)(msg[6] & 0xFF));
-        mLon = this.calculateDegrees((int)(msg[7] & 0xFF), (int)(msg[8] & 0xFF), (int)(msg[9] & 0xFF));
+        mLat = this.calculateDegrees((int)(msg[offset + 4] & 0xFF), (int)(msg[offset + 5] & 0xFF), (int)(msg[offset + 6] & 0xFF));
+        mLon = this.calculateDegrees((int)(msg[offset + 7] & 0xFF), (int)(msg[offset + 8] & 0xFF), (int)(msg[offset + 9] & 0xFF));
 
         /*
          * Altitude
          * XXX: Correct for -ve value;
          */
-        int upper = ((int)(msg[10] & 0xFF)) << 4;
-        int lower = ((int)(msg[11] & 0xF0)) >> 4;
+        int upper = ((int)(msg[offset + 10] & 0xFF)) << 4;
+        int lower = ((int)(msg[offset + 11] & 0xF0)) >> 4;
         int alt = upper + lower;
         alt *= 25;
         alt -= 1000;
@@ -70,28 +72,28 @@ public class OwnshipMessage extends Message {
         /*
          * Misc.
          */
-        mIsAirborne = (msg[11] & 0x08) != 0;
-        mIsExtrapolated = (msg[11] & 0x04) != 0;
-        mTrackType = msg[11] & 0x03;
+        mIsAirborne = (msg[offset + 11] & 0x08) != 0;
+        mIsExtrapolated = (msg[offset + 11] & 0x04) != 0;
+        mTrackType = msg[offset + 11] & 0x03;
         
         /*
          * Quality
          */
-        mNIC = ((msg[12] & 0xF0) >> 4) & 0x0F;
-        mNACP = msg[12] & 0x0F;
+        mNIC = ((msg[offset + 12] & 0xF0) >> 4) & 0x0F;
+        mNACP = msg[offset + 12] & 0x0F;
 
         /*
          * Velocity
          */
-        upper = ((int)(msg[13] & 0xFF)) << 4;
-        lower = ((int)(msg[14] & 0xF0)) >> 4;
+        upper = ((int)(msg[offset + 13] & 0xFF)) << 4;
+        lower = ((int)(msg[offset + 14] & 0xF0)) >> 4;
         mHorizontalVelocity = upper + lower;
 
         /*
          * VS
          * XXX: Correct for -ve value
          */
-        mVerticalVelocity = (((int)msg[14] & 0x0F) << 4) + (int)(msg[15] & 0xFF);
+        mVerticalVelocity = (((int)msg[offset + 14] & 0x0F) << 4) + (int)(msg[offset + 15] & 0xFF);
         mVerticalVelocity *= 64;
         
         /*
@@ -101,12 +103,48 @@ public class OwnshipMessage extends Message {
         mIsTrackHeadingTrueTrackAngle = ((mTrackType & 0x1) & (mTrackType ^ 0x02)) != 0;
         mIsTrackHeadingHeading = (mTrackType & 0x2) != 0;
         mIsTrackHeadingTrueHeading = (mTrackType & 0x3) != 0;
-        mDirection = ((int)msg[16] & 0xFF) * (float)Constants.HEADING_RESOLUTION;
+        mDirection = ((int)msg[offset + 16] & 0xFF) * (float)Constants.HEADING_RESOLUTION;
 
         Logger.Logit("lat " + mLat + " lon " + mLon + " horzVel " + mHorizontalVelocity + " mVerticalVelocity" + mVerticalVelocity
                 + " mAltitude "  + mAltitude + " direction " + mDirection + " trueheading " + mIsTrackHeadingTrueHeading);
     }
 
+    /**
+     * 
+     * @return false when receiver has no position, it then sends all zeros
+     */
+    boolean isValid() {
+        return !(mNIC == 0 && mNACP == 0 && mLat == 0 && mLon == 0);
+    }
+
+    /**
+     * Position quality, the worse of NIC containment radius and NACp EPU, DO-282B tables
+     * @return metres, 0 when unknown, NIC 0 or NACp 0 has no bound
+     */
+    float getAccuracy() {
+        if(mNACP <= 0 || mNACP >= EPU.length) {
+            return 0;
+        }
+        if(mNIC <= 0 || mNIC >= RC.length) {
+            return 0;
+        }
+        return Math.max(EPU[mNACP], RC[mNIC]);
+    }
+
+    /*
+     * EPU in metres for NACp 1 to 11
+     */
+    private static final float EPU[] = {
+        0, 18520f, 7408f, 3704f, 1852f, 926f, 555.6f, 185.2f, 92.6f, 30f, 10f, 3f
+    };
+
+    /*
+     * Containment radius in metres for NIC 1 to 11
+     */
+    private static final float RC[] = {
+        0, 37040f, 14816f, 7408f, 3704f, 1852f, 1111.2f, 370.4f, 185.2f, 75f, 25f, 7.5f
+    };
+
     /**
      * 
      * @param highByte
@@ -12,6 +12,7 @@ Redistribution and use in source and binary forms, with or without modification,
 package com.ds.avare.gdl90;
 
 import java.util.Calendar;
+import java.util.TimeZone;
 
 /**
  * 
@@ -22,7 +23,15 @@ public abstract class Product {
 
     private int mType;
     
-    private Calendar mTime;
+    /*
+     * Time of product in ms, 0 if not known
+     */
+    private long mTime;
+    
+    /*
+     * One calendar for working out all product times, so none is made per product
+     */
+    private static final Calendar mCalendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
     
     public Product(int type) {
         mType = type; 
@@ -32,18 +41,46 @@ public abstract class Product {
         return mType;
     }
     
+    /**
+     * Time of product, in UTC as sent. Month is 1 to 12.
+     * Without a day, a time ahead of now is from yesterday.
+     */
     public void setTime(int month, int day, int hour, int min, int sec) {
-        mTime = Calendar.getInstance();
-        mTime.set(mTime.get(Calendar.YEAR),
-                month < 0 ? mTime.get(Calendar.MONTH) : month,
-                day < 0 ? mTime.get(Calendar.DAY_OF_MONTH) : day,
-                hour,
-                min,
-                sec < 0 ? mTime.get(Calendar.SECOND) : sec);
+        synchronized(mCalendar) {
+            long now = System.currentTimeMillis();
+            mCalendar.setTimeInMillis(now);
+            mCalendar.set(mCalendar.get(Calendar.YEAR),
+                    month < 0 ? mCalendar.get(Calendar.MONTH) : month - 1,
+                    day < 0 ? mCalendar.get(Calendar.DAY_OF_MONTH) : day,
+                    hour,
+                    min,
+                    sec < 0 ? 0 : sec);
+            mCalendar.set(Calendar.MILLISECOND, 0);
+            if(day < 0 && mCalendar.getTimeInMillis() > now + 60 * 60 * 1000) {
+                mCalendar.add(Calendar.DAY_OF_MONTH, -1);
+            }
+            mTime = mCalendar.getTimeInMillis();
+        }
     }
 
-    public Calendar getTime() {
-        return mTime;
+    /**
+     * 
+     * @param now ms
+     * @return time of product in ms, now if not known or ahead of now
+     */
+    public long getTime(long now) {
+        if(0 == mTime) {
+            return now;
+        }
+        return Math.min(now, mTime);
+    }
+    
+    /**
+     * 
+     * @return how long after its time this product is good for, ms
+     */
+    public long getTtl() {
+        return ProductType.getTtl(mType);
     }
     
     protected abstract void parse(byte msg[]);
@@ -18,9 +18,40 @@ package com.ds.avare.gdl90;
  */
 public class ProductFactory {
 
+    /*
+     * Segmented products are joined here. Products are built on the decoder 
+     * thread only.
+     */
+    private static SegmentAssembler mAssembler = new SegmentAssembler();
+    
+    /**
+     * 
+     * @return
+     */
+    public static SegmentAssembler getAssembler() {
+        return mAssembler;
+    }
+
+    /**
+     * 
+     * @param bufin
+     * @return
+     */
     public static Product buildProduct(byte bufin[]) {
+        return buildProduct(new BitInputStream(), bufin, 0, bufin.length);
+    }
+
+    /**
+     * 
+     * @param s reader to reuse, reset here
+     * @param bufin
+     * @param offset where APDU begins in bufin
+     * @param len length of APDU
+     * @return
+     */
+    public static Product buildProduct(BitInputStream s, byte bufin[], int offset, int len) {
 
-        BitInputStream s = new BitInputStream(bufin);
+        s.reset(bufin, offset, len);
 
         /*
          * XXX:
@@ -30,16 +61,16 @@ public class ProductFactory {
 
         boolean flagAppMethod = s.getBits(1) != 0;
         boolean flagGeoLocator = s.getBits(1) != 0;
-        s.getBits(1); /* Provider spec flag, discard */
+        s.skipBits(1); /* Provider spec flag, discard */
 
         int productID = s.getBits(11);
       
         if(flagAppMethod) {
-            s.getBits(8);
+            s.skipBits(8);
         }
       
         if(flagGeoLocator) {
-            s.getBits(20);
+            s.skipBits(20);
         }
       
         boolean segFlag = s.getBits(1) != 0;
@@ -61,20 +92,23 @@ public class ProductFactory {
             secs = s.getBits(6);
         }
       
+        int fileId = 0;
+        int segments = 0;
+        int number = 0;
         if(segFlag) {
-            /*
-             * XXX:
-             * Implement this. Uncommon?
-             */
-            return null;
+            fileId = s.getBits(10);
+            segments = s.getBits(9);
+            number = s.getBits(9);
         }
       
         int totalRead = s.totalRead();
-        int total = bufin.length;
-      
-        int length = total - totalRead;
-        int offset = totalRead;
       
+        int length = len - totalRead;
+        offset += totalRead;
+        if(length < 0) {
+            return null;
+        }
+        
         Product p = null;
         
         switch(productID) {
@@ -112,16 +146,31 @@ public class ProductFactory {
                 break;
         }
 
-        byte data[] = new byte[length];
-        System.arraycopy(bufin, offset, data, 0, length);
+        if(null == p) {
+            return null;
+        }
+
+        byte data[];
+        if(segFlag) {
+            /*
+             * Build product once all segments are in
+             */
+            data = mAssembler.add(productID, fileId, segments, number, bufin, offset, length,
+                    System.currentTimeMillis());
+            if(null == data) {
+                return null;
+            }
+        }
+        else {
+            data = new byte[length];
+            System.arraycopy(bufin, offset, data, 0, length);
+        }
 
         /*
          * Parse it.
          */
-        if(null != p) {
-            p.parse(data);
-            p.setTime(month, day, hours, mins, secs);
-        }
+        p.parse(data);
+        p.setTime(month, day, hours, mins, secs);
         
         return(p);   
     }   
@@ -27,4 +27,30 @@ public class ProductType {
     public static final int PRODUCT_TYPE_NEXRAD = 63; /* Also 64 */
     public static final int PRODUCT_TYPE_TEXT = 413;
 
+    /*
+     * How long after its time a product is good for, ms
+     */
+    public static final long TTL_NEXRAD_REGIONAL = 15 * 60 * 1000;
+    public static final long TTL_NEXRAD_CONUS = 30 * 60 * 1000;
+    public static final long TTL_TEXT = 60 * 60 * 1000;
+    public static final long TTL_NOTAMS = 60 * 60 * 1000;
+    public static final long TTL_DEFAULT = 30 * 60 * 1000;
+
+    /**
+     * 
+     * @param type
+     * @return ms
+     */
+    public static long getTtl(int type) {
+        switch(type) {
+            case PRODUCT_TYPE_NEXRAD:
+                return TTL_NEXRAD_REGIONAL;
+            case PRODUCT_TYPE_TEXT:
+                return TTL_TEXT;
+            case PRODUCT_TYPE_NOTAMS:
+                return TTL_NOTAMS;
+        }
+        return TTL_DEFAULT;
+    }
+
 }
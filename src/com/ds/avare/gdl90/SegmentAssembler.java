@@ -0,0 +1,218 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Joins segments of segmented FIS-B APDUs. A product being joined is keyed by
+ * product ID, product file ID and number of segments, and is kept in one of 
+ * a few slots, each with a byte store allocated up front. Products not 
+ * completed in TIMEOUT_MS are dropped, as are the oldest when all slots are taken.
+ * Use from one thread.
+ *
+ */
+public class SegmentAssembler {
+
+    public static final long TIMEOUT_MS = 10 * 60 * 1000;
+    
+    private static final int SLOTS = 16;
+    private static final int STORE = 16 * 1024;
+    private static final int MAX_SEGMENTS = 512;
+    
+    /*
+     * Per slot
+     */
+    private int mKey[];
+    private boolean mUsed[];
+    private long mStarted[];
+    private int mSegments[];
+    private int mReceived[];
+    private int mSize[];
+    private byte mStore[][];
+    
+    /*
+     * Per slot, per segment offset and length in store, length -1 if not received
+     */
+    private int mOffset[][];
+    private int mLength[][];
+    
+    private int mDropped;
+    
+    /**
+     * 
+     */
+    public SegmentAssembler() {
+        mKey = new int[SLOTS];
+        mUsed = new boolean[SLOTS];
+        mStarted = new long[SLOTS];
+        mSegments = new int[SLOTS];
+        mReceived = new int[SLOTS];
+        mSize = new int[SLOTS];
+        mStore = new byte[SLOTS][STORE];
+        mOffset = new int[SLOTS][MAX_SEGMENTS];
+        mLength = new int[SLOTS][MAX_SEGMENTS];
+        mDropped = 0;
+    }
+    
+    /**
+     * 
+     * @param productId
+     * @param fileId
+     * @param segments
+     * @return
+     */
+    private static int makeKey(int productId, int fileId, int segments) {
+        return ((productId & 0x7FF) << 19) | ((fileId & 0x3FF) << 9) | (segments & 0x1FF);
+    }
+    
+    /**
+     * 
+     * @param slot
+     */
+    private void free(int slot) {
+        mUsed[slot] = false;
+    }
+    
+    /**
+     * Find slot for key, start one if not found
+     * @param key
+     * @param segments
+     * @param now
+     * @return
+     */
+    private int find(int key, int segments, long now) {
+        int empty = -1;
+        int oldest = -1;
+        for(int slot = 0; slot < SLOTS; slot++) {
+            if(mUsed[slot] && (now - mStarted[slot]) > TIMEOUT_MS) {
+                /*
+                 * Timed out, missed some segment
+                 */
+                free(slot);
+                mDropped++;
+            }
+            if(!mUsed[slot]) {
+                if(empty < 0) {
+                    empty = slot;
+                }
+                continue;
+            }
+            if(mKey[slot] == key) {
+                return slot;
+            }
+            if(oldest < 0 || mStarted[slot] < mStarted[oldest]) {
+                oldest = slot;
+            }
+        }
+        
+        if(empty < 0) {
+            /*
+             * All busy, drop oldest
+             */
+            empty = oldest;
+            mDropped++;
+        }
+        mUsed[empty] = true;
+        mKey[empty] = key;
+        mStarted[empty] = now;
+        mSegments[empty] = segments;
+        mReceived[empty] = 0;
+        mSize[empty] = 0;
+        for(int i = 0; i < segments; i++) {
+            mLength[empty][i] = -1;
+        }
+        return empty;
+    }
+    
+    /**
+     * Add a segment.
+     * @param productId
+     * @param fileId product file ID
+     * @param segments product file length, number of segments
+     * @param number APDU number of this segment, 1 to segments
+     * @param bufin
+     * @param offset segment data begins here, after APDU header
+     * @param len
+     * @param now ms
+     * @return data of whole product when this was the last segment missing, else null
+     */
+    public byte[] add(int productId, int fileId, int segments, int number,
+            byte bufin[], int offset, int len, long now) {
+        
+        if(segments < 1 || segments > MAX_SEGMENTS || number < 1 || number > segments || len < 0) {
+            return null;
+        }
+        
+        int slot = find(makeKey(productId, fileId, segments), segments, now);
+        int index = number - 1;
+        if(mLength[slot][index] >= 0) {
+            /*
+             * Repeated
+             */
+            return null;
+        }
+        
+        if(mSize[slot] + len > mStore[slot].length) {
+            /*
+             * Rare large product, grow
+             */
+            byte store[] = new byte[Math.max(mStore[slot].length * 2, mSize[slot] + len)];
+            System.arraycopy(mStore[slot], 0, store, 0, mSize[slot]);
+            mStore[slot] = store;
+        }
+        System.arraycopy(bufin, offset, mStore[slot], mSize[slot], len);
+        mOffset[slot][index] = mSize[slot];
+        mLength[slot][index] = len;
+        mSize[slot] += len;
+        mReceived[slot]++;
+        
+        if(mReceived[slot] < mSegments[slot]) {
+            return null;
+        }
+        
+        /*
+         * All here, join in order
+         */
+        byte data[] = new byte[mSize[slot]];
+        int pos = 0;
+        for(int i = 0; i < mSegments[slot]; i++) {
+            System.arraycopy(mStore[slot], mOffset[slot][i], data, pos, mLength[slot][i]);
+            pos += mLength[slot][i];
+        }
+        free(slot);
+        return data;
+    }
+    
+    /**
+     * 
+     * @return products being joined
+     */
+    public int getPending() {
+        int count = 0;
+        for(int slot = 0; slot < SLOTS; slot++) {
+            if(mUsed[slot]) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 
+     * @return products dropped before all segments came
+     */
+    public int getDropped() {
+        return mDropped;
+    }
+}
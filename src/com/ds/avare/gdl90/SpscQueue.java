@@ -0,0 +1,96 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Bounded lock free queue for exactly one producer thread and one consumer thread.
+ *
+ */
+public class SpscQueue<T> {
+
+    private Object mRing[];
+    private int mMask;
+    
+    /*
+     * Head is written by consumer only, tail by producer only
+     */
+    private AtomicLong mHead;
+    private AtomicLong mTail;
+    
+    /**
+     * 
+     * @param size will be rounded up to a power of 2
+     */
+    public SpscQueue(int size) {
+        int cap = 1;
+        while(cap < size) {
+            cap <<= 1;
+        }
+        mRing = new Object[cap];
+        mMask = cap - 1;
+        mHead = new AtomicLong(0);
+        mTail = new AtomicLong(0);
+    }
+    
+    /**
+     * Producer only
+     * @param item
+     * @return false if full
+     */
+    public boolean offer(T item) {
+        long tail = mTail.get();
+        if(tail - mHead.get() >= mRing.length) {
+            return false;
+        }
+        mRing[(int)tail & mMask] = item;
+        mTail.lazySet(tail + 1);
+        return true;
+    }
+    
+    /**
+     * Consumer only
+     * @return null if empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long head = mHead.get();
+        if(head >= mTail.get()) {
+            return null;
+        }
+        int index = (int)head & mMask;
+        T item = (T)mRing[index];
+        mRing[index] = null;
+        mHead.lazySet(head + 1);
+        return item;
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public int size() {
+        return (int)(mTail.get() - mHead.get());
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public int capacity() {
+        return mRing.length;
+    }
+}
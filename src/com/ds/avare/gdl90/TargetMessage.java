@@ -0,0 +1,59 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Position report of another aircraft, from any of the traffic messages
+ *
+ */
+public abstract class TargetMessage extends Message {
+
+    int mAddress;
+    float mLat;
+    float mLon;
+    int mAltitude;
+    float mTrack;
+    int mHorizontalVelocity;
+    int mVerticalVelocity;
+    boolean mPositionValid;
+    boolean mAltitudeValid;
+    
+    public TargetMessage(int type) {
+        super(type);
+    }
+    
+    /**
+     * 
+     */
+    protected void clear() {
+        mAddress = 0;
+        mLat = 0;
+        mLon = 0;
+        mAltitude = 0;
+        mTrack = 0;
+        mHorizontalVelocity = 0;
+        mVerticalVelocity = 0;
+        mPositionValid = false;
+        mAltitudeValid = false;
+    }
+    
+    /**
+     * 
+     * @return 24 bit ICAO address
+     */
+    public int getAddress() {
+        return mAddress;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * GDL90 stream from a TCP server
+ *
+ */
+public class TcpTransport implements Gdl90Transport {
+
+    private static final int TIMEOUT_MS = 10000;
+    
+    private String mHost;
+    private int mPort;
+    private Socket mSocket;
+    private InputStream mStream;
+    
+    /**
+     * 
+     * @param host
+     * @param port
+     */
+    public TcpTransport(String host, int port) {
+        mHost = host;
+        mPort = port;
+        mSocket = null;
+        mStream = null;
+    }
+    
+    /**
+     * 
+     */
+    @Override
+    public boolean connect() {
+        try {
+            mSocket = new Socket();
+            mSocket.setTcpNoDelay(true);
+            mSocket.connect(new InetSocketAddress(mHost, mPort), TIMEOUT_MS);
+            mStream = mSocket.getInputStream();
+        }
+        catch(Exception e) {
+            disconnect();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public int read(byte[] buffer) {
+        try {
+            return mStream.read(buffer, 0, buffer.length);
+        }
+        catch(Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public void disconnect() {
+        try {
+            if(null != mSocket) {
+                mSocket.close();
+            }
+        }
+        catch(Exception e) {
+        }
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public String getName() {
+        return mHost + ":" + mPort;
+    }
+}
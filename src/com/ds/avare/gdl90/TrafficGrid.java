@@ -0,0 +1,158 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Uniform lat/lon grid over traffic slots. Cells are hashed into a fixed
+ * number of buckets, each a doubly linked list of slots, so a target is only
+ * relinked when it crosses into another cell.
+ *
+ */
+class TrafficGrid {
+
+    /*
+     * Cell size in degrees, about 30 nm
+     */
+    static final float CELL = 0.5f;
+    
+    private int mMask;
+    private int mHead[];
+    
+    /*
+     * Per slot
+     */
+    private int mBucket[];
+    private int mNext[];
+    private int mPrev[];
+    
+    /**
+     * 
+     * @param slots
+     */
+    TrafficGrid(int slots) {
+        int size = 1;
+        while(size < slots) {
+            size <<= 1;
+        }
+        mMask = size - 1;
+        mHead = new int[size];
+        for(int b = 0; b < size; b++) {
+            mHead[b] = -1;
+        }
+        mBucket = new int[slots];
+        mNext = new int[slots];
+        mPrev = new int[slots];
+        for(int s = 0; s < slots; s++) {
+            mBucket[s] = -1;
+        }
+    }
+    
+    /**
+     * 
+     * @param lon
+     * @return
+     */
+    static int column(double lon) {
+        return (int)Math.floor((lon + 180) / CELL);
+    }
+
+    /**
+     * 
+     * @param lat
+     * @return
+     */
+    static int row(double lat) {
+        return (int)Math.floor((lat + 90) / CELL);
+    }
+    
+    /**
+     * 
+     * @param column
+     * @param row
+     * @param mask buckets - 1
+     * @return
+     */
+    static int bucket(int column, int row, int mask) {
+        return (((column * 0x9E3779B1) ^ (row * 0x85EBCA6B)) >>> 8) & mask;
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    int getBuckets() {
+        return mMask + 1;
+    }
+    
+    /**
+     * 
+     * @param bucket
+     * @return first slot in bucket, or -1
+     */
+    int getHead(int bucket) {
+        return mHead[bucket];
+    }
+    
+    /**
+     * 
+     * @param slot
+     * @return next slot in same bucket, or -1
+     */
+    int getNext(int slot) {
+        return mNext[slot];
+    }
+    
+    /**
+     * Put slot in the bucket of its position, if not already there.
+     * @param slot
+     * @param lon
+     * @param lat
+     */
+    void move(int slot, double lon, double lat) {
+        int b = bucket(column(lon), row(lat), mMask);
+        if(b == mBucket[slot]) {
+            return;
+        }
+        remove(slot);
+        mBucket[slot] = b;
+        mPrev[slot] = -1;
+        mNext[slot] = mHead[b];
+        if(mHead[b] >= 0) {
+            mPrev[mHead[b]] = slot;
+        }
+        mHead[b] = slot;
+    }
+    
+    /**
+     * 
+     * @param slot
+     */
+    void remove(int slot) {
+        int b = mBucket[slot];
+        if(b < 0) {
+            return;
+        }
+        if(mPrev[slot] >= 0) {
+            mNext[mPrev[slot]] = mNext[slot];
+        }
+        else {
+            mHead[b] = mNext[slot];
+        }
+        if(mNext[slot] >= 0) {
+            mPrev[mNext[slot]] = mPrev[slot];
+        }
+        mBucket[slot] = -1;
+    }
+}
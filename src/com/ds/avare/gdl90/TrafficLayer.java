@@ -0,0 +1,168 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+import com.ds.avare.position.Origin;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.TypedValue;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Draws traffic targets on the map. Only targets in the visible window are 
+ * drawn, and each is a single bitmap copy out of an atlas of pre-rotated icons.
+ *
+ */
+public class TrafficLayer {
+
+    /*
+     * Icon rotated in steps of 360 / STEPS degrees
+     */
+    private static final int STEPS = 36;
+    private static final int COLUMNS = 6;
+    private static final int SIZE_DIP = 24;
+    
+    private Bitmap mAtlas;
+    private int mSize;
+    private Rect mSrc;
+    private RectF mDst;
+    private Paint mPaint;
+    private int mIndex[];
+    
+    /*
+     * Last frame
+     */
+    private int mDrawn;
+    private int mCulled;
+    
+    /**
+     * 
+     * @param context
+     */
+    public TrafficLayer(Context context) {
+        mSize = (int)TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, SIZE_DIP,
+                context.getResources().getDisplayMetrics());
+        mSrc = new Rect();
+        mDst = new RectF();
+        mPaint = new Paint();
+        mPaint.setFilterBitmap(true);
+        mIndex = new int[0];
+        mDrawn = 0;
+        mCulled = 0;
+        makeAtlas();
+    }
+    
+    /**
+     * Draw the icon once per rotation step
+     */
+    private void makeAtlas() {
+        int rows = (STEPS + COLUMNS - 1) / COLUMNS;
+        mAtlas = Bitmap.createBitmap(mSize * COLUMNS, mSize * rows, Bitmap.Config.ARGB_8888);
+        Canvas c = new Canvas(mAtlas);
+        
+        /*
+         * Chevron pointing up, centered on 0, 0
+         */
+        float h = mSize * 0.8f;
+        float w = mSize * 0.6f;
+        Path path = new Path();
+        path.moveTo(0, -h / 2);
+        path.lineTo(w / 2, h / 2);
+        path.lineTo(0, h / 4);
+        path.lineTo(-w / 2, h / 2);
+        path.close();
+        
+        Paint fill = new Paint();
+        fill.setAntiAlias(true);
+        fill.setStyle(Paint.Style.FILL);
+        fill.setColor(Color.CYAN);
+        Paint stroke = new Paint(fill);
+        stroke.setStyle(Paint.Style.STROKE);
+        stroke.setStrokeWidth(2);
+        stroke.setColor(Color.BLACK);
+        
+        for(int step = 0; step < STEPS; step++) {
+            c.save();
+            c.translate((step % COLUMNS) * mSize + mSize / 2.f, (step / COLUMNS) * mSize + mSize / 2.f);
+            c.rotate(step * 360.f / STEPS);
+            c.drawPath(path, fill);
+            c.drawPath(path, stroke);
+            c.restore();
+        }
+    }
+    
+    /**
+     * 
+     * @param canvas
+     * @param origin
+     * @param snap
+     * @param west window to draw in
+     * @param east
+     * @param north
+     * @param south
+     */
+    public void draw(Canvas canvas, Origin origin, TrafficSnapshot snap,
+            double west, double east, double north, double south) {
+        
+        if(mIndex.length < snap.getLat().length) {
+            mIndex = new int[snap.getLat().length];
+        }
+        int n = snap.query(west, east, north, south, mIndex);
+        float lat[] = snap.getLat();
+        float lon[] = snap.getLon();
+        float track[] = snap.getTrack();
+        float half = mSize / 2.f;
+        
+        for(int k = 0; k < n; k++) {
+            int i = mIndex[k];
+            int step = Math.round(track[i] * STEPS / 360.f) % STEPS;
+            if(step < 0) {
+                step += STEPS;
+            }
+            int left = (step % COLUMNS) * mSize;
+            int top = (step / COLUMNS) * mSize;
+            mSrc.set(left, top, left + mSize, top + mSize);
+            
+            float x = (float)origin.getOffsetX(lon[i]);
+            float y = (float)origin.getOffsetY(lat[i]);
+            mDst.set(x - half, y - half, x + half, y + half);
+            canvas.drawBitmap(mAtlas, mSrc, mDst, mPaint);
+        }
+        mDrawn = n;
+        mCulled = snap.getCount() - n;
+    }
+
+    /**
+     * 
+     * @return targets drawn last frame
+     */
+    public int getDrawn() {
+        return mDrawn;
+    }
+
+    /**
+     * 
+     * @return targets skipped last frame as they were off screen
+     */
+    public int getCulled() {
+        return mCulled;
+    }
+}
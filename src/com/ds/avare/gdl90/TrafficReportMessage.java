@@ -16,15 +16,73 @@ package com.ds.avare.gdl90;
  * @author zkhan
  *
  */
-public class TrafficReportMessage extends Message {
+public class TrafficReportMessage extends TargetMessage {
 
+    int mAlertStatus;
+    int mAddressType;
+    int mNIC;
+    int mNACP;
+    boolean mIsAirborne;
+    
     public TrafficReportMessage() {
         super(MessageType.TRAFFIC_REPORT);
     }
 
+    /**
+     * Same layout as ownship report
+     * @param msg
+     * @param offset
+     * @param len
+     */
     @Override
-    protected void parse(byte[] msg) {
-        Logger.Logit("Not implemented traffic report");
+    protected void parse(byte[] msg, int offset, int len) {
+        clear();
+        if(len < 17) {
+            return;
+        }
+        
+        mAlertStatus = (msg[offset + 0] & 0xF0) >> 4;
+        mAddressType = msg[offset + 0] & 0x0F;
+        mAddress = ((msg[offset + 1] & 0xFF) << 16) + ((msg[offset + 2] & 0xFF) << 8) + (msg[offset + 3] & 0xFF);
+        
+        /*
+         * Lon/lat, 24 bit signed
+         */
+        int lat = ((msg[offset + 4] & 0xFF) << 16) + ((msg[offset + 5] & 0xFF) << 8) + (msg[offset + 6] & 0xFF);
+        int lon = ((msg[offset + 7] & 0xFF) << 16) + ((msg[offset + 8] & 0xFF) << 8) + (msg[offset + 9] & 0xFF);
+        lat = (lat << 8) >> 8;
+        lon = (lon << 8) >> 8;
+        mLat = (float)(lat * Constants.LON_LAT_RESOLUTION);
+        mLon = (float)(lon * Constants.LON_LAT_RESOLUTION);
+        
+        /*
+         * Quality
+         */
+        mNIC = (msg[offset + 12] & 0xF0) >> 4;
+        mNACP = msg[offset + 12] & 0x0F;
+        mPositionValid = (lat != 0 || lon != 0 || mNIC != 0);
+        
+        /*
+         * Altitude, 0xFFF is invalid
+         */
+        int alt = ((msg[offset + 10] & 0xFF) << 4) + ((msg[offset + 11] & 0xF0) >> 4);
+        mAltitudeValid = alt != 0xFFF;
+        mAltitude = alt * 25 - 1000;
+        mIsAirborne = (msg[offset + 11] & 0x08) != 0;
+        
+        /*
+         * Velocity, 0xFFF is unknown
+         */
+        int vel = ((msg[offset + 13] & 0xFF) << 4) + ((msg[offset + 14] & 0xF0) >> 4);
+        mHorizontalVelocity = (vel == 0xFFF) ? 0 : vel;
+        
+        /*
+         * VS 12 bit signed, in 64 fpm, 0x800 unknown
+         */
+        int vs = ((msg[offset + 14] & 0x0F) << 8) + (msg[offset + 15] & 0xFF);
+        mVerticalVelocity = (vs == 0x800) ? 0 : (((vs << 20) >> 20) * 64);
+        
+        mTrack = (msg[offset + 16] & 0xFF) * (float)Constants.HEADING_RESOLUTION;
     }
 
 }
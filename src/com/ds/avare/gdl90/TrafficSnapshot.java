@@ -0,0 +1,211 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Copy of all traffic at one time. Targets are 0 to getCount() - 1 in the arrays,
+ * grouped by grid bucket so query() only looks at targets near an area.
+ *
+ */
+public class TrafficSnapshot {
+
+    private int mCount;
+    private long mTime;
+    private int mAddress[];
+    private float mLat[];
+    private float mLon[];
+    private float mAltitude[];
+    private float mTrack[];
+    private float mVelocity[];
+    private long mUpdated[];
+    
+    /*
+     * Targets of bucket b are mBucketStart[b] to mBucketStart[b + 1] - 1
+     */
+    private int mBucketStart[];
+    private int mMask;
+    
+    /*
+     * Buckets already looked at in this query, as hashed cells repeat
+     */
+    private int mVisited[];
+    private int mStamp;
+    
+    /**
+     * 
+     * @param max
+     * @param buckets power of 2
+     */
+    public TrafficSnapshot(int max, int buckets) {
+        mCount = 0;
+        mTime = 0;
+        mAddress = new int[max];
+        mLat = new float[max];
+        mLon = new float[max];
+        mAltitude = new float[max];
+        mTrack = new float[max];
+        mVelocity = new float[max];
+        mUpdated = new long[max];
+        mBucketStart = new int[buckets + 1];
+        mMask = buckets - 1;
+        mVisited = new int[buckets];
+        mStamp = 0;
+    }
+
+    /**
+     * 
+     * @param count
+     * @param time
+     */
+    void set(int count, long time) {
+        mCount = count;
+        mTime = time;
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    int[] getBucketStart() {
+        return mBucketStart;
+    }
+    
+    /**
+     * Find targets in a lon/lat window. Only grid cells overlapping the window
+     * are looked at, unless the window covers more cells than there are buckets.
+     * @param west
+     * @param east
+     * @param north
+     * @param south
+     * @param out indices of targets in window
+     * @return number of indices in out
+     */
+    public int query(double west, double east, double north, double south, int out[]) {
+        int n = 0;
+        int c0 = TrafficGrid.column(west);
+        int c1 = TrafficGrid.column(east);
+        int r0 = TrafficGrid.row(south);
+        int r1 = TrafficGrid.row(north);
+        long cells = (long)(c1 - c0 + 1) * (long)(r1 - r0 + 1);
+        
+        if(cells <= 0 || cells > mMask + 1) {
+            /*
+             * Zoomed way out, grid does not help
+             */
+            for(int i = 0; i < mCount && n < out.length; i++) {
+                if(isIn(i, west, east, north, south)) {
+                    out[n++] = i;
+                }
+            }
+            return n;
+        }
+        
+        mStamp++;
+        for(int r = r0; r <= r1; r++) {
+            for(int c = c0; c <= c1; c++) {
+                int b = TrafficGrid.bucket(c, r, mMask);
+                if(mVisited[b] == mStamp) {
+                    continue;
+                }
+                mVisited[b] = mStamp;
+                for(int i = mBucketStart[b]; i < mBucketStart[b + 1] && n < out.length; i++) {
+                    if(isIn(i, west, east, north, south)) {
+                        out[n++] = i;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+    
+    /**
+     * 
+     * @param i
+     * @param west
+     * @param east
+     * @param north
+     * @param south
+     * @return
+     */
+    private boolean isIn(int i, double west, double east, double north, double south) {
+        return mLon[i] >= west && mLon[i] <= east && mLat[i] >= south && mLat[i] <= north;
+    }
+    
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * 
+     * @return time snapshot was made in ms, SystemClock.elapsedRealtime()
+     */
+    public long getTime() {
+        return mTime;
+    }
+    
+    public int[] getAddress() {
+        return mAddress;
+    }
+
+    public float[] getLat() {
+        return mLat;
+    }
+
+    public float[] getLon() {
+        return mLon;
+    }
+
+    /**
+     * 
+     * @return feet
+     */
+    public float[] getAltitude() {
+        return mAltitude;
+    }
+
+    /**
+     * 
+     * @return degrees
+     */
+    public float[] getTrack() {
+        return mTrack;
+    }
+
+    /**
+     * 
+     * @return knots
+     */
+    public float[] getVelocity() {
+        return mVelocity;
+    }
+
+    /**
+     * 
+     * @return time of last report in ms, SystemClock.elapsedRealtime()
+     */
+    public long[] getUpdated() {
+        return mUpdated;
+    }
+    
+    /**
+     * Age now, not when snapshot was made, as a snapshot is not made again till something changes
+     * @param i target
+     * @param now ms, SystemClock.elapsedRealtime()
+     * @return seconds since last report
+     */
+    public float getAge(int i, long now) {
+        return (now - mUpdated[i]) / 1000.f;
+    }
+}
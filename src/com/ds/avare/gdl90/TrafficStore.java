@@ -0,0 +1,326 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * All traffic targets, as parallel arrays indexed by slot, with an open
+ * addressing map of ICAO address to slot. Nothing is allocated per report.
+ * Slots are also kept in a lat/lon grid so snapshots come out grouped by 
+ * cell, and can be queried by area.
+ * 
+ * Written by one thread (decoder). Read by one other thread (UI) through 
+ * getSnapshot(), which never blocks: snapshots are triple buffered.
+ *
+ */
+public class TrafficStore {
+
+    public static final int STALE_MS = 30000;
+    
+    private static final int FRESH = 4;
+    private static final int INDEX = 3;
+    
+    private int mMax;
+    private int mCount;
+    
+    /*
+     * Address -> slot + 1, 0 is empty. Linear probing.
+     */
+    private int mTable[];
+    private int mMask;
+    
+    /*
+     * Per slot
+     */
+    private int mAddress[];
+    private float mLat[];
+    private float mLon[];
+    private float mAltitude[];
+    private float mTrack[];
+    private float mVelocity[];
+    private long mUpdated[];
+    private boolean mUsed[];
+    
+    private int mFree[];
+    private int mFreeCount;
+    
+    private TrafficGrid mGrid;
+    
+    /*
+     * Triple buffer. Writer fills back, swaps it with middle.
+     * Reader swaps front with middle when middle is fresh.
+     */
+    private TrafficSnapshot mSnapshots[];
+    private AtomicInteger mMiddle;
+    private int mBack;
+    private int mFront;
+    private boolean mDirty;
+    
+    /*
+     * Reused parse targets for the decoder
+     */
+    private TrafficReportMessage mTrafficReport;
+    private BasicReportMessage mBasicReport;
+    private LongReportMessage mLongReport;
+    
+    /**
+     * 
+     * @param max most targets tracked
+     */
+    public TrafficStore(int max) {
+        mMax = max;
+        int size = 1;
+        while(size < max * 2) {
+            size <<= 1;
+        }
+        mTable = new int[size];
+        mMask = size - 1;
+        
+        mAddress = new int[max];
+        mLat = new float[max];
+        mLon = new float[max];
+        mAltitude = new float[max];
+        mTrack = new float[max];
+        mVelocity = new float[max];
+        mUpdated = new long[max];
+        mUsed = new boolean[max];
+        mFree = new int[max];
+        for(int i = 0; i < max; i++) {
+            mFree[i] = max - 1 - i;
+        }
+        mFreeCount = max;
+        mCount = 0;
+        mGrid = new TrafficGrid(max);
+        
+        mSnapshots = new TrafficSnapshot[3];
+        for(int i = 0; i < 3; i++) {
+            mSnapshots[i] = new TrafficSnapshot(max, mGrid.getBuckets());
+        }
+        mBack = 0;
+        mMiddle = new AtomicInteger(1);
+        mFront = 2;
+        mDirty = false;
+        
+        mTrafficReport = new TrafficReportMessage();
+        mBasicReport = new BasicReportMessage();
+        mLongReport = new LongReportMessage();
+    }
+    
+    /**
+     * A message to parse a report into, reused, so valid till next call.
+     * @param type
+     * @return null if not a traffic type
+     */
+    TargetMessage getReportMessage(int type) {
+        switch(type) {
+            case MessageType.TRAFFIC_REPORT:
+                return mTrafficReport;
+            case MessageType.BASIC_REPORT:
+                return mBasicReport;
+            case MessageType.LONG_REPORT:
+                return mLongReport;
+        }
+        return null;
+    }
+    
+    /**
+     * 
+     * @param address
+     * @return
+     */
+    private int home(int address) {
+        return ((address * 0x9E3779B1) >>> 8) & mMask;
+    }
+    
+    /**
+     * 
+     * @param address
+     * @return slot, or -1
+     */
+    private int find(int address) {
+        int i = home(address);
+        while(mTable[i] != 0) {
+            int slot = mTable[i] - 1;
+            if(mAddress[slot] == address) {
+                return slot;
+            }
+            i = (i + 1) & mMask;
+        }
+        return -1;
+    }
+    
+    /**
+     * Remove from table by shifting back entries that probed past it
+     * @param slot
+     */
+    private void remove(int slot) {
+        int i = home(mAddress[slot]);
+        while(mTable[i] != slot + 1) {
+            i = (i + 1) & mMask;
+        }
+        mTable[i] = 0;
+        int j = i;
+        while(true) {
+            j = (j + 1) & mMask;
+            if(mTable[j] == 0) {
+                break;
+            }
+            int k = home(mAddress[mTable[j] - 1]);
+            boolean move = (j > i) ? (k <= i || k > j) : (k <= i && k > j);
+            if(move) {
+                mTable[i] = mTable[j];
+                mTable[j] = 0;
+                i = j;
+            }
+        }
+        mGrid.remove(slot);
+        mUsed[slot] = false;
+        mFree[mFreeCount++] = slot;
+        mCount--;
+        mDirty = true;
+    }
+    
+    /**
+     * 
+     * @param address
+     * @return new slot
+     */
+    private int add(int address) {
+        if(0 == mFreeCount) {
+            /*
+             * Full, drop the oldest
+             */
+            int oldest = -1;
+            for(int s = 0; s < mMax; s++) {
+                if(mUsed[s] && (oldest < 0 || mUpdated[s] < mUpdated[oldest])) {
+                    oldest = s;
+                }
+            }
+            remove(oldest);
+        }
+        int slot = mFree[--mFreeCount];
+        mUsed[slot] = true;
+        mAddress[slot] = address;
+        int i = home(address);
+        while(mTable[i] != 0) {
+            i = (i + 1) & mMask;
+        }
+        mTable[i] = slot + 1;
+        mCount++;
+        return slot;
+    }
+    
+    /**
+     * Add or update a target
+     * @param m
+     * @param now ms
+     */
+    public void put(TargetMessage m, long now) {
+        if(!m.mPositionValid) {
+            return;
+        }
+        int slot = find(m.mAddress);
+        if(slot < 0) {
+            slot = add(m.mAddress);
+        }
+        mLat[slot] = m.mLat;
+        mLon[slot] = m.mLon;
+        mGrid.move(slot, m.mLon, m.mLat);
+        if(m.mAltitudeValid) {
+            mAltitude[slot] = m.mAltitude;
+        }
+        mTrack[slot] = m.mTrack;
+        mVelocity[slot] = m.mHorizontalVelocity;
+        mUpdated[slot] = now;
+        mDirty = true;
+    }
+    
+    /**
+     * Remove targets not heard from in STALE_MS
+     * @param now ms
+     */
+    public void evict(long now) {
+        for(int s = 0; s < mMax; s++) {
+            if(mUsed[s] && (now - mUpdated[s]) > STALE_MS) {
+                remove(s);
+            }
+        }
+    }
+    
+    /**
+     * 
+     * @return true if changed since last publish
+     */
+    public boolean isDirty() {
+        return mDirty;
+    }
+    
+    /**
+     * 
+     * @return number of targets
+     */
+    public int getCount() {
+        return mCount;
+    }
+    
+    /**
+     * Make a new snapshot visible to reader, if anything changed
+     * @param now ms
+     * @return true if published
+     */
+    public boolean publish(long now) {
+        if(!mDirty) {
+            return false;
+        }
+        TrafficSnapshot snap = mSnapshots[mBack];
+        int start[] = snap.getBucketStart();
+        int buckets = mGrid.getBuckets();
+        int n = 0;
+        /*
+         * Copy out cell by cell, recording where each bucket starts
+         */
+        for(int b = 0; b < buckets; b++) {
+            start[b] = n;
+            for(int s = mGrid.getHead(b); s >= 0; s = mGrid.getNext(s)) {
+                snap.getAddress()[n] = mAddress[s];
+                snap.getLat()[n] = mLat[s];
+                snap.getLon()[n] = mLon[s];
+                snap.getAltitude()[n] = mAltitude[s];
+                snap.getTrack()[n] = mTrack[s];
+                snap.getVelocity()[n] = mVelocity[s];
+                snap.getUpdated()[n] = mUpdated[s];
+                n++;
+            }
+        }
+        start[buckets] = n;
+        snap.set(n, now);
+        mBack = mMiddle.getAndSet(mBack | FRESH) & INDEX;
+        mDirty = false;
+        return true;
+    }
+    
+    /**
+     * Latest snapshot. Call from one reader thread only.
+     * Valid till next call.
+     * @return
+     */
+    public TrafficSnapshot getSnapshot() {
+        if((mMiddle.get() & FRESH) != 0) {
+            mFront = mMiddle.getAndSet(mFront) & INDEX;
+        }
+        return mSnapshots[mFront];
+    }
+}
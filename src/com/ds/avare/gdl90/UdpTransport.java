@@ -0,0 +1,104 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gdl90;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * GDL90 broadcast over WiFi on a UDP port, usually 4000
+ *
+ */
+public class UdpTransport implements Gdl90Transport {
+
+    public static final int PORT = 4000;
+    
+    private int mPort;
+    private DatagramChannel mChannel;
+    private ByteBuffer mBuffer;
+    
+    /**
+     * 
+     * @param port
+     */
+    public UdpTransport(int port) {
+        mPort = port;
+        mChannel = null;
+        mBuffer = null;
+    }
+    
+    /**
+     * 
+     */
+    @Override
+    public boolean connect() {
+        try {
+            mChannel = DatagramChannel.open();
+            mChannel.socket().setReuseAddress(true);
+            mChannel.socket().bind(new InetSocketAddress(mPort));
+        }
+        catch(Exception e) {
+            disconnect();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public int read(byte[] buffer) {
+        /*
+         * Wrap once, not on every datagram
+         */
+        if(null == mBuffer || mBuffer.array() != buffer) {
+            mBuffer = ByteBuffer.wrap(buffer);
+        }
+        mBuffer.clear();
+        try {
+            if(null == mChannel.receive(mBuffer)) {
+                return -1;
+            }
+        }
+        catch(Exception e) {
+            return -1;
+        }
+        return mBuffer.position();
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public void disconnect() {
+        try {
+            if(null != mChannel) {
+                mChannel.close();
+            }
+        }
+        catch(Exception e) {
+        }
+    }
+
+    /**
+     * 
+     */
+    @Override
+    public String getName() {
+        return "UDP" + mPort;
+    }
+}
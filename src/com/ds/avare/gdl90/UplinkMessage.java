@@ -15,6 +15,8 @@ package com.ds.avare.gdl90;
  * 
  * @author zkhan
  *
+ * Can be reused for uplink after uplink, see MessageFactory.
+ *
  */
 public class UplinkMessage extends Message {
 
@@ -22,13 +24,16 @@ public class UplinkMessage extends Message {
 
     public UplinkMessage() {
         super(MessageType.UPLINK);
+        mFis = new FisBuffer();
     }
     
     /**
     *
     * @param msg
+    * @param offset
+    * @param len
     */
-   public void parse(byte msg[]) {
+   public void parse(byte msg[], int offset, int len) {
        
        /*
         * First 3 bytes are Zulu time,
@@ -36,7 +41,8 @@ public class UplinkMessage extends Message {
         * Rest of 424 is payload
         * 
         */
-       int skip = 3;
+       mFis.clear();
+       int skip = offset + 3;
        int lat = 0;
        lat += ((int)msg[skip + 0]) & 0xFF;
        lat <<= 8;
@@ -82,8 +88,8 @@ public class UplinkMessage extends Message {
        int tisbSiteID = (msg[skip + 7] & 0xf0) >> 4;
        
        // byte 9-432: application data (multiple iFrames).
-       skip = 3 + 8;
-       mFis = new FisBuffer(msg, skip, slotID, tisbSiteID, positionValid, degLat, degLon);
+       skip = offset + 3 + 8;
+       mFis.set(msg, skip, slotID, tisbSiteID, positionValid, degLat, degLon);
        
        /*
         * Now decode all.
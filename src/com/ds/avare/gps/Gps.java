@@ -11,11 +11,15 @@ Redistribution and use in source and binary forms, with or without modification,
 */
 package com.ds.avare.gps;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 
-import com.ds.avare.gdl90.BlueToothConnection;
+import com.ds.avare.gdl90.AdsbStatus;
+import com.ds.avare.gdl90.Gdl90Connection;
+import com.ds.avare.gdl90.Id6364Product;
+import com.ds.avare.gdl90.TrafficStore;
 import com.ds.avare.storage.Preferences;
 
 import android.content.Context;
@@ -59,6 +63,22 @@ public class Gps implements LocationListener, android.location.GpsStatus.Listene
      * GPS manager
      */
     private LocationManager mLocationManager;
+    
+    /*
+     * Internal GPS and ADS-B ownship run together, this picks one. UI thread only.
+     */
+    private GpsArbiter mArbiter;
+    
+    /*
+     * One connection per configured ADS-B receiver, in preference order
+     */
+    private String mAdsbSources[];
+    private Gdl90Connection mConnections[];
+    
+    /*
+     * Traffic when no receiver is connected
+     */
+    private TrafficStore mNoTraffic;
         
     private static final int GPS_PERIOD_LONG_MS = 8000;
 
@@ -67,11 +87,14 @@ public class Gps implements LocationListener, android.location.GpsStatus.Listene
      */
     public Gps(Context ctx, GpsInterface callback) {
         mPref = new Preferences(ctx);
-        BlueToothConnection.getInstance();
+        mAdsbSources = new String[0];
+        mConnections = new Gdl90Connection[0];
+        mNoTraffic = new TrafficStore(1);
         mContext = ctx;
         mLocationManager = null;
         mTimer = null;
         mGpsCallback = callback;
+        mArbiter = new GpsArbiter(0);
         if(mPref.isGpsUpdatePeriodShort()) {
             mGpsPeriod = 0;
         }
@@ -137,28 +160,37 @@ public class Gps implements LocationListener, android.location.GpsStatus.Listene
         }
         
         /*
-         * Start GPS but dont start if already started
+         * ADS-B ownship runs along with GPS, best of the two is used.
          */
         if(mPref.useAdsb()) {
-            
-            /*
-             * If ADSB should be used, and location manager is working, stop it.
-             */
-            if(null != mLocationManager) {
-                mLocationManager.removeUpdates(this);
-                mLocationManager.removeGpsStatusListener(this);
-                mLocationManager = null;
+            String sources[] = mPref.getAdsbSources();
+            if(!Arrays.equals(sources, mAdsbSources)) {
+                /*
+                 * Receivers changed, each gets its own connection and arbiter slot
+                 */
+                stopAdsb();
+                mAdsbSources = sources;
+                mConnections = new Gdl90Connection[sources.length];
+                for(int i = 0; i < sources.length; i++) {
+                    mConnections[i] = new Gdl90Connection();
+                    mConnections[i].registerListener(new AdsbCallback(mConnections, GpsArbiter.SOURCE_ADSB + i));
+                }
+                mArbiter = new GpsArbiter(sources.length);
+            }
+            for(int i = 0; i < mConnections.length; i++) {
+                mConnections[i].setTransport(Gdl90Connection.makeTransport(mAdsbSources[i]));
+                mConnections[i].setCaptureFile(mPref.getAdsbCaptureFile(i));
+                mConnections[i].start();
             }
-            
-            BlueToothConnection.getInstance().registerListener(mGpsCallback);
-            BlueToothConnection.getInstance().start();
         }
-        else if(null == mLocationManager) {
-            
-            /*
-             * If GPS to be used, stop BT
-             */
-            BlueToothConnection.getInstance().stop();
+        else {
+            stopAdsb();
+        }
+        
+        /*
+         * Start GPS but dont start if already started
+         */
+        if(null == mLocationManager) {
             
             mLocationManager = (LocationManager)mContext.getSystemService(Context.LOCATION_SERVICE);
 
@@ -199,7 +231,7 @@ public class Gps implements LocationListener, android.location.GpsStatus.Listene
      */
     public void stop() {
         
-        BlueToothConnection.getInstance().stop();
+        stopAdsb();
         /*
          * Stop but dont stop if already stopped
          */
@@ -207,8 +239,8 @@ public class Gps implements LocationListener, android.location.GpsStatus.Listene
             mLocationManager.removeUpdates(this);
             mLocationManager.removeGpsStatusListener(this);
             mLocationManager = null;
-            return;
         }
+        mArbiter.reset();
 
         if(null != mTimer) {
             mTimer.cancel();
@@ -216,6 +248,28 @@ public class Gps implements LocationListener, android.location.GpsStatus.Listene
         }
     }
 
+    /**
+     * 
+     */
+    private void stopAdsb() {
+        for(int i = 0; i < mConnections.length; i++) {
+            mConnections[i].stop();
+        }
+    }
+
+    /**
+     * 
+     * @return traffic from first connected ADS-B receiver, read snapshots on UI thread only
+     */
+    public TrafficStore getTraffic() {
+        for(int i = 0; i < mConnections.length; i++) {
+            if(mConnections[i].isConnected()) {
+                return mConnections[i].getTraffic();
+            }
+        }
+        return mNoTraffic;
+    }
+
     /**
      * 
      * @return
@@ -250,6 +304,10 @@ public class Gps implements LocationListener, android.location.GpsStatus.Listene
         if ((location != null)
                 && location.getProvider().equals(LocationManager.GPS_PROVIDER)) {
             
+            if(!mArbiter.offer(GpsArbiter.SOURCE_GPS, location, SystemClock.elapsedRealtime())) {
+                return;
+            }
+            
             updateTimeout();
 
             /*
@@ -261,6 +319,74 @@ public class Gps implements LocationListener, android.location.GpsStatus.Listene
         }
     }
     
+    /**
+     * 
+     * @return source of ownship in use, GpsArbiter.SOURCE_GPS or SOURCE_ADSB + receiver
+     */
+    public int getSource() {
+        return mArbiter.getSource();
+    }
+    
+    /**
+     * ADS-B receiver reports come here on UI thread, ownship goes through arbiter
+     * in this receiver's slot.
+     */
+    private class AdsbCallback implements GpsInterface {
+
+        private Gdl90Connection mOwner[];
+        private int mSource;
+        
+        /**
+         * 
+         * @param owner connections this receiver is part of
+         * @param source arbiter slot of receiver
+         */
+        public AdsbCallback(Gdl90Connection owner[], int source) {
+            mOwner = owner;
+            mSource = source;
+        }
+
+        @Override
+        public void statusCallback(GpsStatus gpsStatus) {
+            mGpsCallback.statusCallback(gpsStatus);
+        }
+
+        @Override
+        public void locationCallback(Location location) {
+            if(mOwner != mConnections) {
+                /*
+                 * Late fix from a receiver that was replaced
+                 */
+                return;
+            }
+            if(!mArbiter.offer(mSource, location, SystemClock.elapsedRealtime())) {
+                return;
+            }
+            updateTimeout();
+            mGpsCallback.locationCallback(location);
+        }
+
+        @Override
+        public void timeoutCallback(boolean timeout) {
+            mGpsCallback.timeoutCallback(timeout);
+        }
+
+        @Override
+        public void enabledCallback(boolean enabled) {
+            mGpsCallback.enabledCallback(enabled);
+        }
+
+        @Override
+        public void adbsMessageCallbackNexrad(Id6364Product pn) {
+            mGpsCallback.adbsMessageCallbackNexrad(pn);
+        }
+
+        @Override
+        public void adbsStatusCallback(AdsbStatus adsbStatus) {
+            mGpsCallback.adbsStatusCallback(adsbStatus);
+        }
+    }
+    
     /**
      * @author zkhan
      *
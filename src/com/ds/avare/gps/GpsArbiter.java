@@ -0,0 +1,142 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.gps;
+
+import android.location.Location;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Picks ownship from several sources running at the same time, like internal GPS
+ * and ADS-B receiver. The source in use is kept till it goes quiet, or till another 
+ * source is clearly more accurate. A source is quiet when it misses a few of its own
+ * report intervals, so fail over happens in seconds, not after GPS timeout.
+ * Call on one thread only.
+ *
+ */
+public class GpsArbiter {
+
+    public static final int SOURCE_GPS = 0;
+    
+    /*
+     * First GDL90 receiver, receiver n is SOURCE_ADSB + n
+     */
+    public static final int SOURCE_ADSB = 1;
+    
+    /*
+     * Quiet after this many intervals missed, but never sooner than minimum
+     */
+    private static final int STALE_INTERVALS = 3;
+    private static final long STALE_MIN_MS = 2500;
+    
+    /*
+     * Another source must be this many times more accurate to take over
+     */
+    private static final float SWITCH_RATIO = 2f;
+    
+    /*
+     * Per source
+     */
+    private long mLast[];
+    private long mInterval[];
+    private float mAccuracy[];
+    
+    private int mSource;
+    private int mSwitches;
+    
+    /**
+     * 
+     * @param receivers number of GDL90 receivers, along with internal GPS
+     */
+    public GpsArbiter(int receivers) {
+        int sources = SOURCE_ADSB + Math.max(0, receivers);
+        mLast = new long[sources];
+        mInterval = new long[sources];
+        mAccuracy = new float[sources];
+        reset();
+    }
+    
+    /**
+     * Forget all sources
+     */
+    public void reset() {
+        for(int i = 0; i < mLast.length; i++) {
+            mLast[i] = 0;
+            mInterval[i] = 0;
+            mAccuracy[i] = Float.MAX_VALUE;
+        }
+        mSource = -1;
+        mSwitches = 0;
+    }
+    
+    /**
+     * 
+     * @param source
+     * @param now
+     * @return
+     */
+    private boolean isStale(int source, long now) {
+        if(0 == mLast[source]) {
+            return true;
+        }
+        long stale = Math.max(STALE_MIN_MS, mInterval[source] * STALE_INTERVALS);
+        return (now - mLast[source]) > stale;
+    }
+    
+    /**
+     * 
+     * @param source SOURCE_GPS, or SOURCE_ADSB + receiver
+     * @param location fix from source, accuracy if present is used as quality
+     * @param now elapsed time ms
+     * @return true if this fix should be used
+     */
+    public boolean offer(int source, Location location, long now) {
+        
+        if(0 != mLast[source]) {
+            mInterval[source] = now - mLast[source];
+        }
+        mLast[source] = now;
+        mAccuracy[source] = location.hasAccuracy() ? location.getAccuracy() : Float.MAX_VALUE;
+        
+        if(source == mSource) {
+            return true;
+        }
+        
+        /*
+         * Take over from a quiet source, or from a much worse one
+         */
+        if(mSource < 0 || isStale(mSource, now) ||
+                (mAccuracy[source] * SWITCH_RATIO) < mAccuracy[mSource]) {
+            mSource = source;
+            mSwitches++;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * 
+     * @return SOURCE_* in use, -1 if none yet
+     */
+    public int getSource() {
+        return mSource;
+    }
+    
+    /**
+     * 
+     * @return number of times source changed
+     */
+    public int getSwitches() {
+        return mSwitches;
+    }
+}
@@ -24,9 +24,11 @@ import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.Enumeration;
+import java.util.LinkedList;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+import com.ds.avare.storage.DatabaseIndexer;
 import com.ds.avare.utils.Helper;
 import com.ds.avare.utils.NetworkHelper;
 
@@ -252,6 +254,7 @@ public class Download {
                     Enumeration<? extends ZipEntry> entries = zipFile.entries();
 
                     String lastName = "";
+                    LinkedList<String> databases = new LinkedList<String>();
                     while(entries.hasMoreElements()) {
                         mCode = "code unzip file error, disk full";
                         if(mStop) {
@@ -325,6 +328,9 @@ public class Download {
                         mCode = "code unable to unzip file, disk full";
                         copyInputStream(zipFile.getInputStream(entry),
                             new BufferedOutputStream(new FileOutputStream(path + "/" + entry.getName()), blocksize));
+                        if(entry.getName().endsWith(".db")) {
+                            databases.add(path + "/" + entry.getName());
+                        }
                         totalnum++;
                         newp = (int)(50 + totalnum * 50 / filenum);
                         if(lastp != newp) {
@@ -337,6 +343,14 @@ public class Download {
                     mCode = "code unable to close zip file";
                     zipFile.close();
                     
+                    /*
+                     * Index databases for lookups. Not fatal if it fails.
+                     */
+                    mCode = "code unable to index database";
+                    for(String db : databases) {
+                        DatabaseIndexer.index(db);
+                    }
+                    
                     /*
                      * Delete the downloaded file to save space
                      */
@@ -12,11 +12,8 @@ Redistribution and use in source and binary forms, with or without modification,
 
 package com.ds.avare.place;
 
-import java.util.LinkedHashMap;
-
 import com.ds.avare.position.Projection;
-import com.ds.avare.storage.DataBaseHelper;
-import com.ds.avare.utils.Helper;
+import com.ds.avare.storage.AirportRow;
 
 
 /**
@@ -37,20 +34,18 @@ public class Airport implements Comparable<Airport> {
    
     /**
      * 
-     * @param id
-     * @param lon
-     * @param lat
+     * @param row
      * @param cLon
      * @param cLat
      */
-    public Airport(LinkedHashMap<String, String> params, double cLon, double cLat) {
-        mLon = Double.parseDouble(params.get(DataBaseHelper.LONGITUDE));
-        mLat = Double.parseDouble(params.get(DataBaseHelper.LATITUDE));;
-        mId = params.get(DataBaseHelper.LOCATION_ID);
-        mName = params.get(DataBaseHelper.FACILITY_NAME);
-        mFuel = params.get(DataBaseHelper.FUEL_TYPES);
-        mElevation = params.get("Elevation");
-        mVariation = Helper.parseVariation(params.get(DataBaseHelper.MAGNETIC_VARIATION));
+    public Airport(AirportRow row, double cLon, double cLat) {
+        mLon = row.getLongitude();
+        mLat = row.getLatitude();
+        mId = row.getId();
+        mName = row.getName();
+        mFuel = row.getFuel();
+        mElevation = (long)row.getElevation() + "ft";
+        mVariation = row.getVariation();
         
         mProj = new Projection(cLon, cLat, mLon, mLat);
     }
@@ -29,6 +29,7 @@ import com.ds.avare.position.Projection;
 import com.ds.avare.shapes.TrackShape;
 import com.ds.avare.storage.DataBaseHelper;
 import com.ds.avare.storage.DataSource;
+import com.ds.avare.storage.DestinationRecord;
 import com.ds.avare.storage.Preferences;
 import com.ds.avare.storage.StringPreference;
 import com.ds.avare.utils.BitmapHolder;
@@ -410,13 +411,24 @@ public class Destination extends Observable {
                 return true;                    
 	        }
 	        
-	        mDataSource.findDestination(mName, mDestType, mParams, mRunways, mFreq, mAwos);
+	        /*
+	         * All from database in one go, copy what we change
+	         */
+	        DestinationRecord record = mDataSource.findDestinationRecord(mName, mDestType);
+	        if(record.isFound()) {
+	            mLond = record.getAirport().getLongitude();
+	            mLatd = record.getAirport().getLatitude();
+	        }
+	        mParams.putAll(record.getParams());
+	        mRunways.addAll(record.getRunways());
+	        mFreq.putAll(record.getFreq());
+	        mAwos.addAll(record.getAwos());
 
 	        if(mDestType.equals(BASE)) {
 	            
                 mPlateFound = null;
                 mAfdFound = null;
-                mAfdName = mDataSource.findAFD(mName);
+                mAfdName = record.getAfd();
                 
 	            /*
 	             * Found destination extract its airport plates
@@ -449,9 +461,10 @@ public class Destination extends Observable {
                 /*
                  * Take off and alternate minimums
                  */
-                String tmp2[] = mDataSource.findMinimums(mName);
+                String tmp2[] = record.getMinimums();
                 int len2 = 0;
                 if(null != tmp2) {
+                    tmp2 = tmp2.clone();
                     len2 = tmp2.length;
                     for(int min = 0; min < len2; min++) {
                         /*
@@ -511,7 +524,7 @@ public class Destination extends Observable {
             /*
              * GPS taxi for this airport?
              */
-            mMatrix = mDataSource.findDiagramMatrix(mName);
+            mMatrix = record.getMatrix();
 
             return(!mParams.isEmpty());
         }
@@ -527,14 +540,10 @@ public class Destination extends Observable {
         	 */
 			mFound = result;
 			if(mFound) {
+			    /*
+			     * Location was set with params
+			     */
                 mDbType = mParams.get(DataBaseHelper.TYPE);
-                try {
-        		    mLond = Double.parseDouble(mParams.get(DataBaseHelper.LONGITUDE));
-        		    mLatd = Double.parseDouble(mParams.get(DataBaseHelper.LATITUDE));
-                }
-                catch(Exception e) {
-                    mFound = false;
-                }
 			}
             /**
              * 
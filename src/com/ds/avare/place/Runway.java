@@ -22,6 +22,7 @@ public class Runway {
 
     private String mNumber;
     private String mHeading;
+    private float mHeadingTrue;
     private double mVariation;
     private double mLon;
     private double mLat;
@@ -44,7 +45,7 @@ public class Runway {
         mNumber = number;
         mLon = INVALID;
         mLat = INVALID;
-
+        mHeadingTrue = INVALID;
     }
 
     /**
@@ -117,18 +118,10 @@ public class Runway {
      * @return
      */
     public float getTrue() {
-        float ret = INVALID;
-
         /*
-         * Get true heading of runway if given
+         * True heading of runway if given
          */
-        try {
-            ret = Integer.parseInt(mHeading);
-        }
-        catch (Exception e) {
-            
-        }
-        
+        float ret = mHeadingTrue;
         
         /*
          * Nothing found in True, now parse number of runway and add variation.
@@ -242,6 +235,12 @@ public class Runway {
      */
     public void setHeading(String heading) {
         mHeading = heading;
+        mHeadingTrue = INVALID;
+        try {
+            mHeadingTrue = Integer.parseInt(heading);
+        }
+        catch (Exception e) {
+        }
     }
 
     /**
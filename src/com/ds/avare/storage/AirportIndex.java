@@ -0,0 +1,342 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Packed grid of airport locations in a file next to main database, memory mapped.
+ * Airports are sorted by grid cell, and a table of cell starts points into them, 
+ * so nearest airports are found by looking at few cells around a point, 
+ * going out ring by ring.
+ * File is stamped with size and time of main database it was made from, 
+ * and is made again when database changes.
+ *
+ */
+public class AirportIndex {
+
+    private static final int MAGIC = 0x41494458; // AIDX
+    private static final int VERSION = 1;
+    
+    /*
+     * Cell size in degrees
+     */
+    private static final float CELL = 0.5f;
+    
+    /*
+     * Header: magic, version, stamp(long), west, south, cols, rows, count
+     */
+    private static final int HEADER = 36;
+    
+    /*
+     * Record: lon, lat, row id, flags
+     */
+    private static final int RECORD = 16;
+    
+    public static final int FLAG_AIRPORT = 1;
+    
+    private MappedByteBuffer mMap;
+    private long mStamp;
+    private float mWest;
+    private float mSouth;
+    private int mCols;
+    private int mRows;
+    private int mCount;
+    private int mRecords;
+    
+    /*
+     * K best of a query, sorted by distance
+     */
+    private float mBest[];
+    
+    /**
+     * 
+     */
+    public AirportIndex() {
+        mMap = null;
+        mBest = new float[0];
+    }
+    
+    /**
+     * 
+     * @param path of index file
+     * @param stamp that index must have been built with
+     * @return true if index is mapped and usable
+     */
+    public boolean open(String path, long stamp) {
+        if(mMap != null && mStamp == stamp) {
+            return true;
+        }
+        close();
+        
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(path, "r");
+            MappedByteBuffer map = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if(map.getInt(0) != MAGIC || map.getInt(4) != VERSION || map.getLong(8) != stamp) {
+                file.close();
+                return false;
+            }
+            mWest = map.getFloat(16);
+            mSouth = map.getFloat(20);
+            mCols = map.getInt(24);
+            mRows = map.getInt(28);
+            mCount = map.getInt(32);
+            mRecords = HEADER + (mCols * mRows + 1) * 4;
+            if(map.capacity() < mRecords + mCount * RECORD) {
+                file.close();
+                return false;
+            }
+            mStamp = stamp;
+            mMap = map;
+        }
+        catch (Exception e) {
+            mMap = null;
+        }
+        
+        /*
+         * Mapping stays valid after file is closed
+         */
+        try {
+            if(file != null) {
+                file.close();
+            }
+        }
+        catch (Exception e) {
+        }
+        return mMap != null;
+    }
+    
+    /**
+     * Unmapped when collected
+     */
+    public void close() {
+        mMap = null;
+    }
+    
+    /**
+     * 
+     * @param lon
+     * @return
+     */
+    private static int column(float lon, float west) {
+        return (int)Math.floor((lon - west) / CELL);
+    }
+
+    /**
+     * 
+     * @param lat
+     * @return
+     */
+    private static int row(float lat, float south) {
+        return (int)Math.floor((lat - south) / CELL);
+    }
+    
+    /**
+     * Write index file. Written to a temporary file first then renamed, 
+     * so a reader never sees a partial index.
+     * @param path
+     * @param stamp
+     * @param lon
+     * @param lat
+     * @param id row id in database table
+     * @param flags FLAG_*
+     * @param count
+     * @return
+     */
+    public static boolean build(String path, long stamp, float lon[], float lat[], int id[], int flags[], int count) {
+        
+        float west = Float.MAX_VALUE;
+        float east = -Float.MAX_VALUE;
+        float south = Float.MAX_VALUE;
+        float north = -Float.MAX_VALUE;
+        for(int i = 0; i < count; i++) {
+            west = Math.min(west, lon[i]);
+            east = Math.max(east, lon[i]);
+            south = Math.min(south, lat[i]);
+            north = Math.max(north, lat[i]);
+        }
+        if(count == 0) {
+            west = east = south = north = 0;
+        }
+        int cols = column(east, west) + 1;
+        int rows = row(north, south) + 1;
+        
+        /*
+         * Counting sort on cell
+         */
+        int start[] = new int[cols * rows + 1];
+        int cell[] = new int[count];
+        for(int i = 0; i < count; i++) {
+            cell[i] = row(lat[i], south) * cols + column(lon[i], west);
+            start[cell[i] + 1]++;
+        }
+        for(int c = 0; c < cols * rows; c++) {
+            start[c + 1] += start[c];
+        }
+        int order[] = new int[count];
+        int fill[] = new int[cols * rows];
+        for(int i = 0; i < count; i++) {
+            order[start[cell[i]] + fill[cell[i]]++] = i;
+        }
+        
+        File tmp = new File(path + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 32768));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(stamp);
+            out.writeFloat(west);
+            out.writeFloat(south);
+            out.writeInt(cols);
+            out.writeInt(rows);
+            out.writeInt(count);
+            for(int c = 0; c < start.length; c++) {
+                out.writeInt(start[c]);
+            }
+            for(int o = 0; o < count; o++) {
+                int i = order[o];
+                out.writeFloat(lon[i]);
+                out.writeFloat(lat[i]);
+                out.writeInt(id[i]);
+                out.writeInt(flags[i]);
+            }
+            out.close();
+            out = null;
+            File f = new File(path);
+            f.delete();
+            return tmp.renameTo(f);
+        }
+        catch (Exception e) {
+            try {
+                if(out != null) {
+                    out.close();
+                }
+            }
+            catch (Exception e1) {
+            }
+            tmp.delete();
+        }
+        return false;
+    }
+    
+    /**
+     * Look in one cell, keep k best
+     * @return number found so far
+     */
+    private int scan(int c, float lon, float lat, int mask, int ids[], int found) {
+        int k = ids.length;
+        int end = mMap.getInt(HEADER + (c + 1) * 4);
+        for(int r = mMap.getInt(HEADER + c * 4); r < end; r++) {
+            int pos = mRecords + r * RECORD;
+            if((mMap.getInt(pos + 12) & mask) != mask) {
+                continue;
+            }
+            float dlon = mMap.getFloat(pos) - lon;
+            float dlat = mMap.getFloat(pos + 4) - lat;
+            float d = dlon * dlon + dlat * dlat;
+            if(found == k && d >= mBest[k - 1]) {
+                continue;
+            }
+            
+            /*
+             * Insert sorted
+             */
+            int j = found < k ? found++ : k - 1;
+            while(j > 0 && mBest[j - 1] > d) {
+                mBest[j] = mBest[j - 1];
+                ids[j] = ids[j - 1];
+                j--;
+            }
+            mBest[j] = d;
+            ids[j] = mMap.getInt(pos + 8);
+        }
+        return found;
+    }
+    
+    /**
+     * Find nearest airports, by same distance measure as degrees squared
+     * @param lon
+     * @param lat
+     * @param mask FLAG_* all of which must be set, 0 for all
+     * @param ids row ids of nearest first, length of this is number to find
+     * @param dist if not null, gets distance squared in degrees of each found
+     * @return number found
+     */
+    public synchronized int nearest(double lon, double lat, int mask, int ids[], float dist[]) {
+        if(null == mMap || ids.length == 0) {
+            return 0;
+        }
+        int k = ids.length;
+        if(mBest.length < k) {
+            mBest = new float[k];
+        }
+        
+        float x = (float)lon;
+        float y = (float)lat;
+        int c0 = column(x, mWest);
+        int r0 = row(y, mSouth);
+        
+        /*
+         * Rings till all grid is covered
+         */
+        int rings = Math.max(Math.max(c0, mCols - 1 - c0), Math.max(r0, mRows - 1 - r0));
+        int found = 0;
+        for(int ring = 0; ring <= rings; ring++) {
+            
+            /*
+             * Anything outside rings seen so far is at least this far
+             */
+            if(found == k) {
+                float reach = (ring - 1) * CELL;
+                if(ring > 0 && mBest[k - 1] <= reach * reach) {
+                    break;
+                }
+            }
+            for(int r = r0 - ring; r <= r0 + ring; r++) {
+                if(r < 0 || r >= mRows) {
+                    continue;
+                }
+                boolean edge = (r == r0 - ring) || (r == r0 + ring);
+                int step = edge ? 1 : 2 * ring;
+                for(int c = c0 - ring; c <= c0 + ring; c += Math.max(step, 1)) {
+                    if(c < 0 || c >= mCols) {
+                        continue;
+                    }
+                    found = scan(r * mCols + c, x, y, mask, ids, found);
+                }
+            }
+        }
+        if(null != dist) {
+            System.arraycopy(mBest, 0, dist, 0, Math.min(found, dist.length));
+        }
+        return found;
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public int getCount() {
+        return mCount;
+    }
+}
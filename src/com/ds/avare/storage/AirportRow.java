@@ -0,0 +1,127 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.storage;
+
+import java.util.LinkedHashMap;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * A row of a facility table, airports, navaids or fixes, with numbers kept as numbers.
+ * Fields only shown to user are kept as text in extras; getParams() gives the map 
+ * that lists and screens show.
+ *
+ */
+public class AirportRow {
+
+    private String mId;
+    private String mName;
+    private String mType;
+    private double mLon;
+    private double mLat;
+    private String mFuel;
+    private double mVariation;
+    private double mElevation;
+    private LinkedHashMap<String, String> mExtras;
+    
+    /**
+     * 
+     * @param id
+     * @param name
+     * @param type
+     * @param lon
+     * @param lat
+     */
+    public AirportRow(String id, String name, String type, double lon, double lat) {
+        mId = id;
+        mName = name;
+        mType = type;
+        mLon = lon;
+        mLat = lat;
+        mFuel = null;
+        mVariation = 0;
+        mElevation = 0;
+        mExtras = new LinkedHashMap<String, String>();
+    }
+
+    public String getId() {
+        return mId;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public String getType() {
+        return mType;
+    }
+
+    public double getLongitude() {
+        return mLon;
+    }
+
+    public double getLatitude() {
+        return mLat;
+    }
+
+    public String getFuel() {
+        return mFuel;
+    }
+
+    public double getVariation() {
+        return mVariation;
+    }
+
+    /**
+     * 
+     * @return feet
+     */
+    public double getElevation() {
+        return mElevation;
+    }
+
+    void setFuel(String fuel) {
+        mFuel = fuel;
+    }
+
+    void setVariation(double variation) {
+        mVariation = variation;
+    }
+
+    void setElevation(double elevation) {
+        mElevation = elevation;
+    }
+
+    /**
+     * Text fields, in order shown
+     * @return
+     */
+    LinkedHashMap<String, String> getExtras() {
+        return mExtras;
+    }
+    
+    /**
+     * Map view for display, ID and name first. Made on every call; caller may change it.
+     * @return
+     */
+    public LinkedHashMap<String, String> getParams() {
+        LinkedHashMap<String, String> params = new LinkedHashMap<String, String>();
+        params.put(DataBaseHelper.LOCATION_ID, mId);
+        params.put(DataBaseHelper.FACILITY_NAME, mName);
+        params.put(DataBaseHelper.LATITUDE, Double.toString(mLat));
+        params.put(DataBaseHelper.LONGITUDE, Double.toString(mLon));
+        params.put(DataBaseHelper.TYPE, mType);
+        params.putAll(mExtras);
+        return params;
+    }
+}
@@ -0,0 +1,373 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.storage;
+
+import java.io.File;
+import java.util.LinkedList;
+import java.util.Locale;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Long lived read only connections to one database file. A query takes a connection,
+ * and its cursor gives it back when closed. Connections stay open between queries, 
+ * so page cache and compiled statements are kept. Downloaded databases are not in 
+ * WAL mode and are never written, so several read only connections read in parallel.
+ * When file changes, like a new download, or is deleted, connections to old file are 
+ * closed; those in use are closed when given back, and count against the limit till then.
+ * File is looked at every CHECK_MS, or on next query after close().
+ * A thread can hold one connection for several queries between begin() and end(), so 
+ * they all see the same file and do not wait for a connection each.
+ *
+ */
+public class ConnectionPool {
+
+    private static final int CONNECTIONS = 3;
+    
+    /*
+     * Longest wait for a connection, ms. A connection kept longer is a cursor not closed.
+     */
+    private static final long WAIT_MS = 10000;
+    
+    /*
+     * Look at file for change at most this often, ms
+     */
+    private static final long CHECK_MS = 2000;
+    
+    private String mPath;
+    private int mMax;
+    
+    /*
+     * All below under mLock
+     */
+    private Object mLock;
+    private LinkedList<SQLiteDatabase> mIdle;
+    private LinkedList<SQLiteDatabase> mBusy;
+    private LinkedList<SQLiteDatabase> mStale;
+    private long mStamp;
+    private long mChecked;
+    
+    /*
+     * Connection held by a thread between begin() and end()
+     */
+    private ThreadLocal<SQLiteDatabase> mHeld;
+    
+    /*
+     * Stats
+     */
+    private int mOpens;
+    private int mCloses;
+    private int mServed;
+    private int mWaits;
+    private int mTimeouts;
+    private long mWaitNs;
+    
+    /**
+     * Cursor that gives its connection back on close
+     */
+    private class PooledCursor extends CursorWrapper {
+        
+        private SQLiteDatabase mDb;
+        
+        public PooledCursor(Cursor c, SQLiteDatabase db) {
+            super(c);
+            mDb = db;
+        }
+        
+        @Override
+        public void close() {
+            super.close();
+            if(null != mDb) {
+                release(mDb);
+                mDb = null;
+            }
+        }
+    }
+    
+    /**
+     * 
+     * @param path
+     */
+    public ConnectionPool(String path) {
+        this(path, CONNECTIONS);
+    }
+
+    /**
+     * 
+     * @param path
+     * @param max connections
+     */
+    public ConnectionPool(String path, int max) {
+        mPath = path;
+        mMax = max;
+        mLock = new Object();
+        mIdle = new LinkedList<SQLiteDatabase>();
+        mBusy = new LinkedList<SQLiteDatabase>();
+        mStale = new LinkedList<SQLiteDatabase>();
+        mStamp = 0;
+        mChecked = 0;
+        mHeld = new ThreadLocal<SQLiteDatabase>();
+    }
+    
+    /**
+     * Close connections to old file if file changed. Under lock.
+     * @return stamp of file, 0 if no file
+     */
+    private long checkFile() {
+        long now = System.nanoTime() / 1000000;
+        if(0 != mChecked && (now - mChecked) < CHECK_MS) {
+            return mStamp;
+        }
+        mChecked = now;
+        File f = new File(mPath);
+        long stamp = f.exists() ? (f.lastModified() * 31 + f.length()) : 0;
+        if(stamp != mStamp) {
+            dropAll();
+            mStamp = stamp;
+        }
+        return stamp;
+    }
+    
+    /**
+     * Close idle connections, busy ones are closed when given back. Under lock.
+     */
+    private void dropAll() {
+        for(SQLiteDatabase db : mIdle) {
+            close(db);
+        }
+        mIdle.clear();
+        mStale.addAll(mBusy);
+        mBusy.clear();
+    }
+    
+    /**
+     * Under lock
+     * @param db
+     */
+    private void close(SQLiteDatabase db) {
+        mCloses++;
+        try {
+            db.close();
+        }
+        catch (Exception e) {
+        }
+    }
+    
+    /**
+     * Take a connection, wait if all are in use
+     * @return null if database cannot be opened, or none given back in WAIT_MS
+     */
+    private SQLiteDatabase acquire() {
+        synchronized(mLock) {
+            long start = 0;
+            SQLiteDatabase db;
+            while(true) {
+                if(0 == checkFile()) {
+                    return null;
+                }
+                if(!mIdle.isEmpty()) {
+                    db = mIdle.removeFirst();
+                    break;
+                }
+                if((mIdle.size() + mBusy.size() + mStale.size()) < mMax) {
+                    try {
+                        db = SQLiteDatabase.openDatabase(mPath, null, SQLiteDatabase.OPEN_READONLY | 
+                                SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+                        db.setMaxSqlCacheSize(SQLiteDatabase.MAX_SQL_CACHE_SIZE);
+                    }
+                    catch(RuntimeException e) {
+                        return null;
+                    }
+                    mOpens++;
+                    break;
+                }
+                
+                /*
+                 * All busy
+                 */
+                if(0 == start) {
+                    start = System.nanoTime();
+                    mWaits++;
+                }
+                long left = WAIT_MS - (System.nanoTime() - start) / 1000000;
+                if(left <= 0) {
+                    mTimeouts++;
+                    mWaitNs += System.nanoTime() - start;
+                    Log.w("ConnectionPool", new File(mPath).getName() + ": no connection given back in " + WAIT_MS + " ms");
+                    return null;
+                }
+                try {
+                    mLock.wait(left);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            if(0 != start) {
+                mWaitNs += System.nanoTime() - start;
+            }
+            mBusy.add(db);
+            mServed++;
+            return db;
+        }
+    }
+    
+    /**
+     * Give a connection back
+     * @param db
+     */
+    private void release(SQLiteDatabase db) {
+        synchronized(mLock) {
+            if(mBusy.remove(db) && db.isOpen()) {
+                mIdle.addFirst(db);
+            }
+            else {
+                /*
+                 * From a file that changed
+                 */
+                mStale.remove(db);
+                close(db);
+            }
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Run a query with values bound, not put in SQL text, so the compiled statement is 
+     * found in connection's statement cache next time. Timed in QueryStats.
+     * @param statement
+     * @param args values for ? in statement
+     * @param method that asks, for QueryStats
+     * @return cursor that must be closed, null on failure
+     */
+    public Cursor query(String statement, String args[], String method) {
+        SQLiteDatabase held = mHeld.get();
+        SQLiteDatabase db = (null != held) ? held : acquire();
+        if(null == db) {
+            return null;
+        }
+        Cursor c = null;
+        try {
+            long start = System.nanoTime();
+            c = db.rawQuery(statement, args);
+            long prepared = System.nanoTime();
+            int rows = c.getCount();
+            QueryStats.getInstance().record(method, statement, prepared - start, System.nanoTime() - prepared, rows);
+        }
+        catch (Exception e) {
+            if(null != c) {
+                c.close();
+            }
+            if(null == held) {
+                release(db);
+            }
+            return null;
+        }
+        if(null != held) {
+            /*
+             * Given back on end()
+             */
+            return c;
+        }
+        return new PooledCursor(c, db);
+    }
+
+    /**
+     * Hold a connection for this thread; queries from it use that connection till end().
+     * Cursors must be closed before end().
+     * @return false if no connection, queries then work as usual
+     */
+    public boolean begin() {
+        if(null != mHeld.get()) {
+            return false;
+        }
+        SQLiteDatabase db = acquire();
+        if(null == db) {
+            return false;
+        }
+        mHeld.set(db);
+        return true;
+    }
+    
+    /**
+     * Give back connection held by begin()
+     */
+    public void end() {
+        SQLiteDatabase db = mHeld.get();
+        if(null != db) {
+            mHeld.set(null);
+            release(db);
+        }
+    }
+
+    /**
+     * Close idle connections, busy ones close when given back. File is looked at again on next query.
+     */
+    public void close() {
+        synchronized(mLock) {
+            dropAll();
+            mStamp = 0;
+            mChecked = 0;
+        }
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public String getPath() {
+        return mPath;
+    }
+    
+    /**
+     * 
+     * @return one line of numbers
+     */
+    public String getStats() {
+        synchronized(mLock) {
+            return String.format(Locale.US, "%s open %d busy %d opened %d closed %d served %d waits %d timeouts %d wait %.3f ms", 
+                    new File(mPath).getName(), mIdle.size() + mBusy.size() + mStale.size(), mBusy.size() + mStale.size(), 
+                    mOpens, mCloses, mServed, mWaits, mTimeouts, mWaitNs / 1e6);
+        }
+    }
+
+    public int getOpens() {
+        synchronized(mLock) {
+            return mOpens;
+        }
+    }
+
+    public int getCloses() {
+        synchronized(mLock) {
+            return mCloses;
+        }
+    }
+
+    public int getServed() {
+        synchronized(mLock) {
+            return mServed;
+        }
+    }
+
+    public long getWaitNs() {
+        synchronized(mLock) {
+            return mWaitNs;
+        }
+    }
+}
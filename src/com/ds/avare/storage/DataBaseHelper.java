@@ -16,8 +16,10 @@ package com.ds.avare.storage;
 
 
 import java.io.File;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
 import com.ds.avare.R;
 import com.ds.avare.place.Airport;
@@ -32,6 +34,7 @@ import com.ds.avare.weather.AirSigMet;
 import com.ds.avare.weather.Airep;
 import com.ds.avare.weather.Metar;
 import com.ds.avare.weather.Taf;
+import com.ds.avare.weather.UplinkWeather;
 import com.ds.avare.weather.WindsAloft;
 
 import android.content.Context;
@@ -53,9 +56,10 @@ public class DataBaseHelper extends SQLiteOpenHelper {
     /**
      * Cache this class to sqlite
      */
-    private SQLiteDatabase mDataBase; 
-    private SQLiteDatabase mDataBaseFiles; 
-    private SQLiteDatabase mDataBaseWeather; 
+    /*
+     * Connections per database file
+     */
+    private HashMap<String, ConnectionPool> mPools;
     
     /*
      * Center tile info
@@ -73,12 +77,43 @@ public class DataBaseHelper extends SQLiteOpenHelper {
     private Context mContext;
     
     /*
-     * How many users at this point. Used for closing the database
-     * Will serve as a non blocking sem with synchronized statement
+     * Spatial index of airports, made from main database when it changes
+     */
+    private AirportIndex mAirportIndex;
+    private long mAirportIndexFailed;
+    private ObstacleIndex mObstacleIndex;
+    private long mObstacleIndexFailed;
+    
+    /*
+     * Tile grids per zoom level, and recently used tiles, for current chart database.
+     * Under lock of mTiles.
+     */
+    private static final int TILES = 64;
+    private static final int TILE_WALK = 4;
+    private HashMap<Integer, TileGrid[]> mTileGrids;
+    private LinkedHashMap<String, Tile> mTiles;
+    private String mTilesDb;
+    private long mTilesStamp;
+    
+    /*
+     * Recent destinations, most recently used last. Under lock of mDestinations.
      */
-    private Integer mUsers;
-    private Integer mUsersFiles;
-    private Integer mUsersWeather;
+    private static final int DESTINATIONS = 32;
+    private LinkedHashMap<String, DestinationRecord> mDestinations;
+    private long mDestinationsStamp;
+    
+    /*
+     * Weather database in memory, swapped whole for new one. Made under lock of mWeatherLock.
+     */
+    private volatile WeatherSnapshot mWeather;
+    private Object mWeatherLock;
+    
+    /*
+     * Search index of main database, loaded on first search. Under lock of mSearchLock.
+     */
+    private Object mSearchLock;
+    private SearchIndex mSearchIndex;
+    private long mSearchIndexFailed;
     
     
     public  static final String  FACILITY_NAME = "Facility Name";
@@ -137,6 +172,22 @@ public class DataBaseHelper extends SQLiteOpenHelper {
         return "main.db";
     }
 
+    /**
+     * 
+     * @return
+     */
+    private static String getAirportIndexFile() {
+        return "airports.idx";
+    }
+
+    /**
+     * 
+     * @return
+     */
+    private static String getObstacleIndexFile() {
+        return "obstacles.idx";
+    }
+
     /**
      * @param context
      */
@@ -144,7 +195,36 @@ public class DataBaseHelper extends SQLiteOpenHelper {
         super(context, null, null, DATABASE_VERSION);
         mPref = new Preferences(context);
         mCenterTile = null;
-        mUsers = mUsersFiles = mUsersWeather = 0;
+        mPools = new HashMap<String, ConnectionPool>();
+        mAirportIndex = new AirportIndex();
+        mAirportIndexFailed = 0;
+        mObstacleIndex = new ObstacleIndex();
+        mObstacleIndexFailed = 0;
+        mTileGrids = new HashMap<Integer, TileGrid[]>();
+        mTiles = new LinkedHashMap<String, Tile>(TILES, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Tile> eldest) {
+                return size() > TILES;
+            }
+        };
+        mTilesDb = "";
+        mTilesStamp = 0;
+        mDestinations = new LinkedHashMap<String, DestinationRecord>(DESTINATIONS, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DestinationRecord> eldest) {
+                return size() > DESTINATIONS;
+            }
+        };
+        mDestinationsStamp = 0;
+        mWeather = null;
+        mWeatherLock = new Object();
+        mSearchLock = new Object();
+        mSearchIndex = null;
+        mSearchIndexFailed = 0;
         mContext = context;
     }
 
@@ -173,82 +253,81 @@ public class DataBaseHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * Close database
+     * Close cursor, which gives its connection back to pool
      */
     private void closes(Cursor c) {
         if(null != c) {
             c.close();
         }
+    }
 
-        synchronized(mUsers) {
-            mUsers--;
-            if((mDataBase != null) && (mUsers <= 0)) {
-                try {
-                    mDataBase.close();
-                    super.close();
-                }
-                catch (Exception e) {
-                }
-                mDataBase = null;
-                mUsers = 0;
+    /**
+     * 
+     * @param name of database file
+     * @return pool of connections to it
+     */
+    private ConnectionPool getPool(String name) {
+        String path = mPref.mapsFolder() + "/" + name;
+        synchronized(mPools) {
+            ConnectionPool pool = mPools.get(path);
+            if(null == pool) {
+                pool = new ConnectionPool(path);
+                mPools.put(path, pool);
             }
+            return pool;
         }
     }
 
     /**
      * 
      * @param statement
+     * @param args values for ? in statement
+     * @param name of database file
+     * @param method that asks, for QueryStats
      * @return
      */
-    private Cursor doQuery(String statement, String name) {
-        Cursor c = null;
-        
-        String path = mPref.mapsFolder() + "/" + name;
+    private Cursor doQuery(String statement, String args[], String name, String method) {
+        return getPool(name).query(statement, args, method);
+    }
 
-        /*
-         * 
-         */
-        synchronized(mUsers) {
-            if(mDataBase == null) {
-                mUsers = 0;
-                try {
-                    
-                    mDataBase = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY | 
-                            SQLiteDatabase.NO_LOCALIZED_COLLATORS);
-                }
-                catch(RuntimeException e) {
-                    mDataBase = null;
-                }
-            }
-            if(mDataBase == null) {
-                return c;
+    /**
+     * Close all connections
+     */
+    @Override
+    public synchronized void close() {
+        synchronized(mPools) {
+            for(ConnectionPool pool : mPools.values()) {
+                pool.close();
             }
-            mUsers++;
-        }
-        
-        /*
-         * In case we fail
-         */
-        
-        if(mDataBase == null) {
-            return c;
-        }
-        
-        if(!mDataBase.isOpen()) {
-            return c;
-        }
-        
-        /*
-         * Find with sqlite query
-         */
-        try {
-               c = mDataBase.rawQuery(statement, null);
-        }
-        catch (Exception e) {
-            c = null;
         }
+        super.close();
+    }
 
-        return c;
+    /**
+     * Latency of hot lookups without and with indexes, for main and current chart database.
+     * Slow, run in background.
+     * @param scratch folder for copy of database
+     * @return report
+     */
+    public String benchmarkIndexes(String scratch) {
+        String copy = scratch + "/indexbench.db";
+        return DatabaseIndexer.benchmark(mPref.mapsFolder() + "/" + getMainDb(), copy) +
+                DatabaseIndexer.benchmark(mPref.mapsFolder() + "/" + getFilesDb(), copy);
+    }
+
+    /**
+     * 
+     * @return connection numbers, one line per database
+     */
+    public String getPoolStats() {
+        StringBuilder sb = new StringBuilder();
+        synchronized(mPools) {
+            for(ConnectionPool pool : mPools.values()) {
+                sb.append(pool.getStats());
+                sb.append("\n");
+            }
+        }
+        return sb.toString();
     }
 
     /**
@@ -264,8 +343,8 @@ public class DataBaseHelper extends SQLiteOpenHelper {
             ret[it] = 0;
         }
         
-        String qry = "select * from " + TABLE_AIRPORT_DIAGS + " where " + LOCATION_ID_DB + "=='" + name +"'";
-        Cursor cursor = doQuery(qry, getMainDb());
+        String qry = "select * from " + TABLE_AIRPORT_DIAGS + " where " + LOCATION_ID_DB + "==?";
+        Cursor cursor = doQuery(qry, new String[] {name}, getMainDb(), "findDiagramMatrix");
         try {
             if(cursor != null) {
                 if(cursor.moveToFirst()) {
@@ -294,7 +373,7 @@ public class DataBaseHelper extends SQLiteOpenHelper {
     public LinkedList<String> findFilesToDelete(String name) {
         String dbs[] = mContext.getResources().getStringArray(R.array.ChartDbNames);
 
-        String query = "select name from " + TABLE_FILES + " where " + INFO_DB + "=='" + name +"'";
+        String query = "select name from " + TABLE_FILES + " where " + INFO_DB + "==?";
 
         LinkedList<String> list = new LinkedList<String>();
         
@@ -325,6 +404,8 @@ public class DataBaseHelper extends SQLiteOpenHelper {
                 list.add(dbs[i]);
             }
             list.add(getMainDb());
+            list.add(getAirportIndexFile());
+            list.add(getObstacleIndexFile());
             return list;                    
         }
 
@@ -332,7 +413,7 @@ public class DataBaseHelper extends SQLiteOpenHelper {
          * Delete files from all databases
          */
         for(int i = 0; i < dbs.length; i++) {
-            Cursor cursor = doQuery(query, dbs[i]);
+            Cursor cursor = doQuery(query, new String[] {name}, dbs[i], "findFilesToDelete");
     
             try {
                 if(cursor != null) {
@@ -349,6 +430,99 @@ public class DataBaseHelper extends SQLiteOpenHelper {
         return list;            
     }
 
+    /**
+     * Airport index for current main database, made if missing or old.
+     * @return null if index cannot be used
+     */
+    private AirportIndex getAirportIndex() {
+        File db = new File(mPref.mapsFolder() + "/" + getMainDb());
+        if(!db.exists()) {
+            return null;
+        }
+        long stamp = db.lastModified() * 31 + db.length();
+        String path = mPref.mapsFolder() + "/" + getAirportIndexFile();
+
+        synchronized(mAirportIndex) {
+            if(mAirportIndex.open(path, stamp)) {
+                return mAirportIndex;
+            }
+            
+            /*
+             * Do not keep trying to make it on every call if it failed for this database
+             */
+            if(mAirportIndexFailed == stamp) {
+                return null;
+            }
+            if(buildAirportIndex(path, stamp) && mAirportIndex.open(path, stamp)) {
+                return mAirportIndex;
+            }
+            mAirportIndexFailed = stamp;
+        }
+        return null;
+    }
+    
+    /**
+     * Make airport index file from airports table. Happens once after a new main database
+     * is installed.
+     * @param path
+     * @param stamp
+     * @return
+     */
+    private boolean buildAirportIndex(String path, long stamp) {
+        String qry = "select " + LONGITUDE_DB + "," + LATITUDE_DB + "," + TYPE_DB + ",rowid from " + TABLE_AIRPORTS + ";";
+        Cursor cursor = doQuery(qry, null, getMainDb(), "buildAirportIndex");
+        if(null == cursor) {
+            closes(cursor);
+            return false;
+        }
+
+        int count = 0;
+        float lon[] = new float[0];
+        float lat[] = new float[0];
+        int id[] = new int[0];
+        int flags[] = new int[0];
+        try {
+            int size = cursor.getCount();
+            lon = new float[size];
+            lat = new float[size];
+            id = new int[size];
+            flags = new int[size];
+            for(cursor.moveToFirst(); !cursor.isAfterLast() && count < size; cursor.moveToNext()) {
+                lon[count] = (float)cursor.getDouble(0);
+                lat[count] = (float)cursor.getDouble(1);
+                flags[count] = "AIRPORT".equals(cursor.getString(2)) ? AirportIndex.FLAG_AIRPORT : 0;
+                id[count] = cursor.getInt(3);
+                count++;
+            }
+        }
+        catch (Exception e) {
+            count = 0;
+        }
+        closes(cursor);
+        
+        if(0 == count) {
+            return false;
+        }
+        return AirportIndex.build(path, stamp, lon, lat, id, flags, count);
+    }
+    
+    /**
+     * 
+     * @param cursor
+     * @param lon
+     * @param lat
+     * @return
+     */
+    private Airport makeAirport(Cursor cursor, double lon, double lat) {
+        AirportRow row = new AirportRow(cursor.getString(LOCATION_ID_COL), cursor.getString(FACILITY_NAME_COL),
+                cursor.getString(TYPE_COL).trim(),
+                Helper.truncGeo(cursor.getDouble(LONGITUDE_COL)), Helper.truncGeo(cursor.getDouble(LATITUDE_COL)));
+        row.setFuel(cursor.getString(FUEL_TYPES_COL));
+        row.setVariation(Helper.parseVariation(cursor.getString(MAGNETIC_VARIATION_COL).trim()));
+        row.setElevation(cursor.getDouble(9));
+        return new Airport(row, lon, lat);
+    }
+
     /**
      * Find airports in an particular area
      * @param name
@@ -356,6 +530,58 @@ public class DataBaseHelper extends SQLiteOpenHelper {
      */
     public void findClosestAirports(double lon, double lat, Airport[] airports) {
 
+        /*
+         * Nearest from index, then only those rows from database
+         */
+        AirportIndex index = getAirportIndex();
+        if(null != index) {
+            int ids[] = new int[airports.length];
+            int found = index.nearest(lon, lat, 
+                    mPref.shouldShowAllFacilities() ? 0 : AirportIndex.FLAG_AIRPORT, ids, null);
+            if(0 == found) {
+                return;
+            }
+            String qry = "select *,rowid from " + TABLE_AIRPORTS + " where rowid in (?";
+            String args[] = new String[found];
+            args[0] = Integer.toString(ids[0]);
+            for(int i = 1; i < found; i++) {
+                qry += ",?";
+                args[i] = Integer.toString(ids[i]);
+            }
+            qry += ");";
+            
+            Cursor cursor = doQuery(qry, args, getMainDb(), "findClosestAirports");
+            try {
+                if(cursor != null) {
+                    Airport ranked[] = new Airport[found];
+                    int rowid = cursor.getColumnCount() - 1;
+                    for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                        int id = cursor.getInt(rowid);
+                        for(int i = 0; i < found; i++) {
+                            if(ids[i] == id) {
+                                ranked[i] = makeAirport(cursor, lon, lat);
+                                break;
+                            }
+                        }
+                    }
+                    
+                    /*
+                     * Nearest first
+                     */
+                    int n = 0;
+                    for(int i = 0; i < found; i++) {
+                        if(null != ranked[i]) {
+                            airports[n++] = ranked[i];
+                        }
+                    }
+                }
+            }
+            catch (Exception e) {
+            }
+            closes(cursor);
+            return;
+        }
+
         /*
          * Limit to airports taken by array airports
          */
@@ -364,26 +590,18 @@ public class DataBaseHelper extends SQLiteOpenHelper {
             qry += " where " + TYPE_DB + "=='AIRPORT' ";
         }
         qry += " order by ((" + 
-                lon + " - " + LONGITUDE_DB + ") * (" + lon + "- " + LONGITUDE_DB +") + (" + 
-                lat + " - " + LATITUDE_DB + ") * (" + lat + "- " + LATITUDE_DB + ")) ASC limit " + airports.length + ";";            
+                "cast(?1 as real) - " + LONGITUDE_DB + ") * (cast(?1 as real) - " + LONGITUDE_DB +") + (" + 
+                "cast(?2 as real) - " + LATITUDE_DB + ") * (cast(?2 as real) - " + LATITUDE_DB + ")) ASC limit ?3;";            
 
-        Cursor cursor = doQuery(qry, getMainDb());
+        Cursor cursor = doQuery(qry, new String[] {Double.toString(lon), Double.toString(lat), 
+                Integer.toString(airports.length)}, getMainDb(), "findClosestAirports");
 
         try {
             int id = 0;
             if(cursor != null) {
                 if(cursor.moveToFirst()) {
                     do {
-                        LinkedHashMap<String, String> params = new LinkedHashMap<String, String>();
-                        params.put(LOCATION_ID, cursor.getString(LOCATION_ID_COL));
-                        params.put(FACILITY_NAME, cursor.getString(FACILITY_NAME_COL));
-                        params.put(FUEL_TYPES, cursor.getString(FUEL_TYPES_COL));
-                        params.put(LATITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LATITUDE_COL))));
-                        params.put(LONGITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LONGITUDE_COL))));
-                        params.put(MAGNETIC_VARIATION, cursor.getString(MAGNETIC_VARIATION_COL).trim());
-                        String parts[] = cursor.getString(9).trim().split("[.]");
-                        params.put("Elevation", parts[0] + "ft");
-                        airports[id] = new Airport(params, lon, lat);
+                        airports[id] = makeAirport(cursor, lon, lat);
                         id++;
                     }
                     while(cursor.moveToNext());
@@ -405,8 +623,8 @@ public class DataBaseHelper extends SQLiteOpenHelper {
         String types = TABLE_AIRPORTS;
         Coordinate c = null;
 
-        String qry = "select * from " + types + " where " + LOCATION_ID_DB + "=='" + name + "';";
-        cursor = doQuery(qry, getMainDb());
+        String qry = "select * from " + types + " where " + LOCATION_ID_DB + "==?;";
+        cursor = doQuery(qry, new String[] {name}, getMainDb(), "getCoordinate");
 
         try {
             if(cursor != null) {
@@ -427,6 +645,73 @@ public class DataBaseHelper extends SQLiteOpenHelper {
         return c;
     }
     
+    /**
+     * Search index for current main database, loaded if missing or old.
+     * @return null if index cannot be used
+     */
+    private SearchIndex getSearchIndex() {
+        File db = new File(mPref.mapsFolder() + "/" + getMainDb());
+        if(!db.exists()) {
+            return null;
+        }
+        long stamp = db.lastModified() * 31 + db.length();
+        
+        synchronized(mSearchLock) {
+            if(null != mSearchIndex && mSearchIndex.getStamp() == stamp) {
+                return mSearchIndex;
+            }
+            if(mSearchIndexFailed == stamp) {
+                return null;
+            }
+            
+            /*
+             * Let old one go before loading
+             */
+            mSearchIndex = null;
+            SearchIndex index = new SearchIndex(stamp);
+            if(loadSearchIndex(index, TABLE_NAV, SearchIndex.NAVAID, true) &&
+                    loadSearchIndex(index, TABLE_AIRPORTS, SearchIndex.BASE, true) &&
+                    loadSearchIndex(index, TABLE_FIX, SearchIndex.FIX, false)) {
+                index.finish();
+                mSearchIndex = index;
+            }
+            else {
+                mSearchIndexFailed = stamp;
+            }
+            return mSearchIndex;
+        }
+    }
+    
+    /**
+     * 
+     * @param index
+     * @param table
+     * @param kind
+     * @param words index words of names
+     * @return false if table cannot be read, or index is too large
+     */
+    private boolean loadSearchIndex(SearchIndex index, String table, int kind, boolean words) {
+        String qry = "select " + LOCATION_ID_DB + "," + FACILITY_NAME_DB + "," + TYPE_DB + " from " + table + ";";
+        Cursor cursor = doQuery(qry, null, getMainDb(), "loadSearchIndex");
+        if(null == cursor) {
+            return false;
+        }
+        boolean ret = true;
+        try {
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                if(!index.add(kind, cursor.getString(0), cursor.getString(1), cursor.getString(2), words)) {
+                    ret = false;
+                    break;
+                }
+            }
+        }
+        catch (Exception e) {
+            ret = false;
+        }
+        closes(cursor);
+        return ret;
+    }
+
     /**
      * Search something in database
      * @param name
@@ -434,16 +719,43 @@ public class DataBaseHelper extends SQLiteOpenHelper {
      */
     public void search(String name, LinkedHashMap<String, String> params) {
         
+        /*
+         * From index, IDs then names then near misses
+         */
+        SearchIndex index = getSearchIndex();
+        if(null != index) {
+            int found[] = index.search(name, !mPref.shouldShowAllFacilities());
+            for(int i = 0; i < found.length; i++) {
+                int e = found[i];
+                String type;
+                switch(index.getKind(e)) {
+                    case SearchIndex.NAVAID:
+                        type = Destination.NAVAID;
+                        break;
+                    case SearchIndex.BASE:
+                        type = Destination.BASE;
+                        break;
+                    default:
+                        type = Destination.FIX;
+                        break;
+                }
+                StringPreference s = new StringPreference(type, index.getType(e), index.getName(e), index.getId(e));
+                s.putInHash(params);
+            }
+            return;
+        }
+        
         String qry;
         String qbasic = "select " + LOCATION_ID_DB + "," + FACILITY_NAME_DB + "," + TYPE_DB + " from ";
-        String qend = " (" + LOCATION_ID_DB + " like '" + name + "%' " + ") order by " + LOCATION_ID_DB + " asc"; 
+        String qend = " (" + LOCATION_ID_DB + " like ?) order by " + LOCATION_ID_DB + " asc"; 
+        String args[] = new String[] {name + "%"};
         
         /*
          * All queries for airports, navaids, fixes
          */
 
         qry = qbasic + TABLE_NAV + " where " + qend;
-        Cursor cursor = doQuery(qry, getMainDb());
+        Cursor cursor = doQuery(qry, args, getMainDb(), "search");
 
         try {
             if(cursor != null) {
@@ -463,7 +775,7 @@ public class DataBaseHelper extends SQLiteOpenHelper {
         }
         qry += qend;
 
-        cursor = doQuery(qry, getMainDb());
+        cursor = doQuery(qry, args, getMainDb(), "search");
         try {
             if(cursor != null) {
                 while(cursor.moveToNext()) {
@@ -478,7 +790,7 @@ public class DataBaseHelper extends SQLiteOpenHelper {
 
 
         qry = qbasic + TABLE_FIX + " where " + qend;
-        cursor = doQuery(qry, getMainDb());
+        cursor = doQuery(qry, args, getMainDb(), "search");
         try {
             if(cursor != null) {
                 while(cursor.moveToNext()) {
@@ -492,15 +804,71 @@ public class DataBaseHelper extends SQLiteOpenHelper {
         closes(cursor);
     }
 
+    /**
+     * Everything on a destination: facility, frequencies, AWOS, runways, A/FD, minimums, 
+     * and diagram matrix. All lookups are done on one connection. Found records are kept 
+     * so picking a recent destination again does not go to database.
+     * @param name
+     * @param type
+     * @return record, see isFound(). Must not be changed.
+     */
+    public DestinationRecord findDestinationRecord(String name, String type) {
+        File db = new File(mPref.mapsFolder() + "/" + getMainDb());
+        long stamp = db.lastModified() * 31 + db.length();
+        String key = type + " " + name;
+        
+        synchronized(mDestinations) {
+            if(stamp != mDestinationsStamp) {
+                mDestinations.clear();
+                mDestinationsStamp = stamp;
+            }
+            DestinationRecord record = mDestinations.get(key);
+            if(null != record) {
+                return record;
+            }
+        }
+        
+        DestinationRecord record = new DestinationRecord(name, type);
+        ConnectionPool pool = getPool(getMainDb());
+        boolean held = pool.begin();
+        try {
+            record.setAirport(findDestination(name, type, record.getRunways(), record.getFrequencies(), record.getAwos()));
+            if(type.equals(Destination.BASE)) {
+                record.setAfd(findAFD(name));
+                record.setMinimums(findMinimums(name));
+            }
+            record.setMatrix(findDiagramMatrix(name));
+        }
+        finally {
+            if(held) {
+                pool.end();
+            }
+        }
+
+        /*
+         * Not found could be a database being installed, look again next time
+         */
+        if(record.isFound()) {
+            synchronized(mDestinations) {
+                if(stamp == mDestinationsStamp) {
+                    mDestinations.put(key, record);
+                }
+            }
+        }
+        return record;
+    }
+
     /**
      * Find all information about a facility / destination based on its name
      * @param name
      * @param params
      * @return
      */
-    public void findDestination(String name, String type, LinkedHashMap<String, String> params, LinkedList<Runway> runways, LinkedHashMap<String, String> freq, LinkedList<Awos> awos) {
+    public AirportRow findDestination(String name, String type, LinkedList<Runway> runways, LinkedList<FrequencyRow> freq, LinkedList<Awos> awos) {
         
         Cursor cursor;
+        AirportRow row = null;
+        LinkedHashMap<String, String> params = new LinkedHashMap<String, String>();
         
         String types = "";
         if(type.equals(Destination.BASE)) {
@@ -513,21 +881,20 @@ public class DataBaseHelper extends SQLiteOpenHelper {
             types = TABLE_FIX;
         }
 
-        String qry = "select * from " + types + " where " + LOCATION_ID_DB + "=='" + name + "';";
-        cursor = doQuery(qry, getMainDb());
+        String qry = "select * from " + types + " where " + LOCATION_ID_DB + "==?;";
+        cursor = doQuery(qry, new String[] {name}, getMainDb(), "findDestination");
 
         try {
             if(cursor != null) {
                 if(cursor.moveToFirst()) {
                     
                     /*
-                     * Put ID and name first
+                     * ID, name, location as such, rest as text for display
                      */
-                    params.put(LOCATION_ID, cursor.getString(LOCATION_ID_COL));
-                    params.put(FACILITY_NAME, cursor.getString(FACILITY_NAME_COL));
-                    params.put(LATITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LATITUDE_COL))));
-                    params.put(LONGITUDE, Double.toString(Helper.truncGeo(cursor.getDouble(LONGITUDE_COL))));
-                    params.put(TYPE, cursor.getString(TYPE_COL).trim());
+                    row = new AirportRow(cursor.getString(LOCATION_ID_COL), cursor.getString(FACILITY_NAME_COL),
+                            cursor.getString(TYPE_COL).trim(),
+                            Helper.truncGeo(cursor.getDouble(LONGITUDE_COL)), Helper.truncGeo(cursor.getDouble(LATITUDE_COL)));
+                    params = row.getExtras();
                     if(type.equals(Destination.BASE)) {
                         String use = cursor.getString(5).trim();
                         if(use.equals("PU")) {
@@ -543,6 +910,7 @@ public class DataBaseHelper extends SQLiteOpenHelper {
                         params.put("Manager", cursor.getString(7).trim());
                         params.put(MANAGER_PHONE, cursor.getString(8).trim());
                         params.put("Elevation", cursor.getString(9).trim());
+                        row.setElevation(cursor.getDouble(9));
                         String customs = cursor.getString(CUSTOMS_COL);
                         if(customs.equals("YN")) {
                             params.put(CUSTOMS, "Intl. Entry");
@@ -593,6 +961,7 @@ public class DataBaseHelper extends SQLiteOpenHelper {
                             fuel = mContext.getString(R.string.No);
                         }
                         params.put(FUEL_TYPES, fuel);
+                        row.setFuel(fuel);
                         String ct = cursor.getString(17).trim();
                         if(ct.equals("Y")) {
                             ct = mContext.getString(R.string.Yes);
@@ -604,11 +973,11 @@ public class DataBaseHelper extends SQLiteOpenHelper {
                         
                         String unicom = cursor.getString(18).trim();
                         if(!unicom.equals("")) {
-                            freq.put("UNICOM", unicom);
+                            freq.add(new FrequencyRow("UNICOM", unicom));
                         }
                         String ctaf = cursor.getString(19).trim();
                         if(!ctaf.equals("")) {
-                            freq.put("CTAF", ctaf);
+                            freq.add(new FrequencyRow("CTAF", ctaf));
                         }
                         
                         String fee = cursor.getString(20).trim();
@@ -634,17 +1003,17 @@ public class DataBaseHelper extends SQLiteOpenHelper {
         
         closes(cursor);
 
-        if(!type.equals(Destination.BASE)) {
-            return;
+        if(null == row || !type.equals(Destination.BASE)) {
+            return row;
         }
         
         /*
          * Find frequencies (ATIS, TOWER, GROUND, etc)  Not AWOS    
          */
         
-        qry = "select * from " + TABLE_AIRPORT_FREQ + " where " + LOCATION_ID_DB + "=='" + name                            
-                + "' or " + LOCATION_ID_DB + "=='K" + name + "';";
-        cursor = doQuery(qry, getMainDb());
+        qry = "select * from " + TABLE_AIRPORT_FREQ + " where " + LOCATION_ID_DB + "==?1" 
+                + " or " + LOCATION_ID_DB + "==?2;";
+        cursor = doQuery(qry, new String[] {name, "K" + name}, getMainDb(), "findDestination");
 
         try {
             /*
@@ -663,24 +1032,11 @@ public class DataBaseHelper extends SQLiteOpenHelper {
                     /*
                      * Filter out UHF
                      */
-                    try {
-                        double frequency = Double.parseDouble(cursor.getString(2));
-                        if(Helper.isFrequencyUHF(frequency)) {
-                            continue;
-                        }
-                    }
-                    catch (Exception e) {
-                    }
-                    
-                    if(freq.containsKey(typeof)) {
-                        /*
-                         * Add a hash if duplicate value
-                         */
-                        freq.put(typeof + "#", cursor.getString(2));                                
-                    }
-                    else {
-                        freq.put(typeof, cursor.getString(2));
+                    FrequencyRow f = new FrequencyRow(typeof, cursor.getString(2));
+                    if(Helper.isFrequencyUHF(f.getFrequency())) {
+                        continue;
                     }
+                    freq.add(f);
                 }
             }
         }
@@ -693,9 +1049,9 @@ public class DataBaseHelper extends SQLiteOpenHelper {
 		 */
 
 		qry = "select * from " + TABLE_AIRPORT_AWOS + " where "
-				+ LOCATION_ID_DB + "=='" + name + "' or " + LOCATION_ID_DB
-				+ "=='K" + name + "';";
-		cursor = doQuery(qry, getMainDb());
+				+ LOCATION_ID_DB + "==?1 or " + LOCATION_ID_DB
+				+ "==?2;";
+		cursor = doQuery(qry, new String[] {name, "K" + name}, getMainDb(), "findDestination");
 		// 0     1    2          3  4  5    6     7     8    9    10
 		// ident,type,commstatus,lt,ln,elev,freq1,freq2,tel1,tel2,remark
 		try {
@@ -729,9 +1085,9 @@ public class DataBaseHelper extends SQLiteOpenHelper {
          *Find runways        
          */
 
-        qry = "select * from " + TABLE_AIRPORT_RUNWAYS + " where " + LOCATION_ID_DB + "=='" + name
-                + "' or " + LOCATION_ID_DB + "=='K" + name + "';";
-        cursor = doQuery(qry, getMainDb());
+        qry = "select * from " + TABLE_AIRPORT_RUNWAYS + " where " + LOCATION_ID_DB + "==?1"
+                + " or " + LOCATION_ID_DB + "==?2;";
+        cursor = doQuery(qry, new String[] {name, "K" + name}, getMainDb(), "findDestination");
         
         try {
             /*
@@ -856,7 +1212,8 @@ public class DataBaseHelper extends SQLiteOpenHelper {
         catch (Exception e) {
         }
 
-        closes(cursor);        
+        closes(cursor);
+        return row;
     }
 
 
@@ -875,9 +1232,9 @@ public class DataBaseHelper extends SQLiteOpenHelper {
          * Find frequencies (ATIS, TOWER, GROUND, etc)  Not AWOS    
          */
         
-        String qry = "select * from " + TABLE_AIRPORT_FREQ + " where " + LOCATION_ID_DB + "=='" + name                            
-                + "' or " + LOCATION_ID_DB + "=='K" + name + "';";
-        cursor = doQuery(qry, getMainDb());
+        String qry = "select * from " + TABLE_AIRPORT_FREQ + " where " + LOCATION_ID_DB + "==?1" 
+                + " or " + LOCATION_ID_DB + "==?2;";
+        cursor = doQuery(qry, new String[] {name, "K" + name}, getMainDb(), "findFrequencies");
 
         try {
             /*
@@ -918,9 +1275,9 @@ public class DataBaseHelper extends SQLiteOpenHelper {
 		 */
 
 		qry = "select * from " + TABLE_AIRPORT_AWOS + " where "
-				+ LOCATION_ID_DB + "=='" + name + "' or " + LOCATION_ID_DB
-				+ "=='K" + name + "';";
-		cursor = doQuery(qry, getMainDb());
+				+ LOCATION_ID_DB + "==?1 or " + LOCATION_ID_DB
+				+ "==?2;";
+		cursor = doQuery(qry, new String[] {name, "K" + name}, getMainDb(), "findFrequencies");
 		// 0     1    2          3  4  5    6     7     8    9    10
 		// ident,type,commstatus,lt,ln,elev,freq1,freq2,tel1,tel2,remark
 		try {
@@ -953,9 +1310,8 @@ public class DataBaseHelper extends SQLiteOpenHelper {
 		 * Get CTAF and UNICOM info
 		 */
 		qry = "select * from " + TABLE_AIRPORTS + " where " + LOCATION_ID_DB
-				+ "=='" + name + "' or " + LOCATION_ID_DB + "=='K" + name
-				+ "';";
-		cursor = doQuery(qry, getMainDb());
+				+ "==?1 or " + LOCATION_ID_DB + "==?2;";
+		cursor = doQuery(qry, new String[] {name, "K" + name}, getMainDb(), "findFrequencies");
 
 		try {
 			if (cursor != null) {
@@ -1038,6 +1394,34 @@ public class DataBaseHelper extends SQLiteOpenHelper {
      */
     public String findClosestAirportID(double lon, double lat) {
 
+        /*
+         * Nearest one from index, if close enough
+         */
+        AirportIndex index = getAirportIndex();
+        if(null != index) {
+            int ids[] = new int[1];
+            float dist[] = new float[1];
+            int found = index.nearest(lon, lat, 
+                    mPref.shouldShowAllFacilities() ? 0 : AirportIndex.FLAG_AIRPORT, ids, dist);
+            if(0 == found || dist[0] >= 0.001) {
+                return null;
+            }
+            String qry = "select " + LOCATION_ID_DB + " from " + TABLE_AIRPORTS + " where rowid==?;";
+            Cursor cursor = doQuery(qry, new String[] {Integer.toString(ids[0])}, getMainDb(), "findClosestAirportID");
+            String ret = null;
+            try {
+                if(cursor != null) {
+                    if(cursor.moveToFirst()) {
+                        ret = cursor.getString(0);
+                    }
+                }
+            }
+            catch (Exception e) {
+            }
+            closes(cursor);
+            return ret;
+        }
+
         /*
          * Find with sqlite query
          */
@@ -1049,11 +1433,11 @@ public class DataBaseHelper extends SQLiteOpenHelper {
             qry += " where ((";
         }
 
-        qry += "(" + LONGITUDE_DB + " - " + lon + ") * (" + LONGITUDE_DB  + " - " + lon + ") + "
-                + "(" + LATITUDE_DB + " - " + lat + ") * (" + LATITUDE_DB + " - " + lat + ")"
+        qry += "(" + LONGITUDE_DB + " - cast(?1 as real)) * (" + LONGITUDE_DB  + " - cast(?1 as real)) + "
+                + "(" + LATITUDE_DB + " - cast(?2 as real)) * (" + LATITUDE_DB + " - cast(?2 as real))"
                 + ") < 0.001) limit 1;";
         
-        Cursor cursor = doQuery(qry, getMainDb());
+        Cursor cursor = doQuery(qry, new String[] {Double.toString(lon), Double.toString(lat)}, getMainDb(), "findClosestAirportID");
         String ret = null;
 
         try {
@@ -1097,8 +1481,8 @@ public class DataBaseHelper extends SQLiteOpenHelper {
          * Find with sqlite query
          */
         String qry = "select * from " + table + 
-                " where " + LOCATION_ID_DB + "=='" + name + "';";
-        Cursor cursor = doQuery(qry, getMainDb());
+                " where " + LOCATION_ID_DB + "==?;";
+        Cursor cursor = doQuery(qry, new String[] {name}, getMainDb(), "findLonLat");
         String ret = null;
 
         try {
@@ -1128,11 +1512,12 @@ public class DataBaseHelper extends SQLiteOpenHelper {
         /*
          * Silly that FAA gives K and P for some airports as ICAO
          */
-        String qry = "select File from " + TABLE_ALT + " where " + LOCATION_ID_DB + "==" + "'" + airportId + "'" +
-                " or " + LOCATION_ID_DB + "==" + "'K" + airportId + "'" +
-                " or " + LOCATION_ID_DB + "==" + "'P" + airportId + "'";
+        String qry = "select File from " + TABLE_ALT + " where " + LOCATION_ID_DB + "==?1" +
+                " or " + LOCATION_ID_DB + "==?2" +
+                " or " + LOCATION_ID_DB + "==?3";
+        String args[] = new String[] {airportId, "K" + airportId, "P" + airportId};
         
-        Cursor cursor = doQuery(qry, getMainDb());
+        Cursor cursor = doQuery(qry, args, getMainDb(), "findMinimums");
 
         try {
             if(cursor != null) {
@@ -1146,11 +1531,11 @@ public class DataBaseHelper extends SQLiteOpenHelper {
         }
         closes(cursor);
 
-        qry = "select File from " + TABLE_TO + " where " + LOCATION_ID_DB + "==" + "'" + airportId + "'" +
-                " or " + LOCATION_ID_DB + "==" + "'K" + airportId + "'" +
-                " or " + LOCATION_ID_DB + "==" + "'P" + airportId + "'";
+        qry = "select File from " + TABLE_TO + " where " + LOCATION_ID_DB + "==?1" +
+                " or " + LOCATION_ID_DB + "==?2" +
+                " or " + LOCATION_ID_DB + "==?3";
         
-        cursor = doQuery(qry, getMainDb());
+        cursor = doQuery(qry, args, getMainDb(), "findMinimums");
 
         try {
             if(cursor != null) {
@@ -1186,9 +1571,9 @@ public class DataBaseHelper extends SQLiteOpenHelper {
     public String findAFD(String airportId) {
         
         String ret = null;
-        String qry = "select File from " + TABLE_AFD + " where " + LOCATION_ID_DB + "==" + "'" + airportId + "'";
+        String qry = "select File from " + TABLE_AFD + " where " + LOCATION_ID_DB + "==?";
         
-        Cursor cursor = doQuery(qry, getMainDb());
+        Cursor cursor = doQuery(qry, new String[] {airportId}, getMainDb(), "findAFD");
 
         try {
             if(cursor != null) {
@@ -1205,126 +1590,132 @@ public class DataBaseHelper extends SQLiteOpenHelper {
     }
 
     /**
-     *
-     * @param lon
-     * @param lat
-     * @param height
-     * @return
+     * Obstacle index for current main database, made if missing or old.
+     * @return null if index cannot be used
      */
-    public LinkedList<Obstacle> findObstacles(double lon, double lat, int height) {
-        
-        LinkedList<Obstacle> list = new LinkedList<Obstacle>();
-        
-        String qry = "select * from " + TABLE_OBSTACLES + " where (Height > " + (height - (int)Obstacle.HEIGHT_BELOW) + ") and " +
-                "(" + LATITUDE_DB  + " > " + (lat - Obstacle.RADIUS) + ") and (" + LATITUDE_DB  + " < " + (lat + Obstacle.RADIUS) + ") and " +
-                "(" + LONGITUDE_DB + " > " + (lon - Obstacle.RADIUS) + ") and (" + LONGITUDE_DB + " < " + (lon + Obstacle.RADIUS) + ");";
-        /*
-         * Find obstacles at below or higher in lon/lat radius
-         * We ignore all obstacles 500 AGL below in our script
-         */
-        Cursor cursor = doQuery(qry, getMainDb());
-        
-        try {
-            if(cursor != null) {
-                while(cursor.moveToNext()) {
-                    list.add(new Obstacle(cursor.getFloat(1), cursor.getFloat(0), (int)cursor.getFloat(2)));
-                }
-            }
-        }
-        catch (Exception e) {
+    private ObstacleIndex getObstacleIndex() {
+        File db = new File(mPref.mapsFolder() + "/" + getMainDb());
+        if(!db.exists()) {
+            return null;
         }
-        
-        closes(cursor);
-        return list;
-    }
+        long stamp = db.lastModified() * 31 + db.length();
+        String path = mPref.mapsFolder() + "/" + getObstacleIndexFile();
 
-    /**
-     * 
-     * @return
-     */
-    private String getFilesDb() {
-        int db = Integer.parseInt(mPref.getChartType());
-        String dbs[] = mContext.getResources().getStringArray(R.array.ChartDbNames);
-        return dbs[db];
+        synchronized(mObstacleIndex) {
+            if(mObstacleIndex.open(path, stamp)) {
+                return mObstacleIndex;
+            }
+            
+            /*
+             * Do not keep trying to make it on every call if it failed for this database
+             */
+            if(mObstacleIndexFailed == stamp) {
+                return null;
+            }
+            if(buildObstacleIndex(path, stamp) && mObstacleIndex.open(path, stamp)) {
+                return mObstacleIndex;
+            }
+            mObstacleIndexFailed = stamp;
+        }
+        return null;
     }
-
+    
     /**
-     * 
-     * @param statement
+     * Make obstacle index file from obstacles table. Happens once after a new main database
+     * is installed.
+     * @param path
+     * @param stamp
      * @return
      */
-    private Cursor doQueryFiles(String statement, String name) {
-        Cursor c = null;
-        
-        String path = mPref.mapsFolder() + "/" + name;
+    private boolean buildObstacleIndex(String path, long stamp) {
+        String qry = "select " + LONGITUDE_DB + "," + LATITUDE_DB + ",Height from " + TABLE_OBSTACLES + ";";
+        Cursor cursor = doQuery(qry, null, getMainDb(), "buildObstacleIndex");
+        if(null == cursor) {
+            closes(cursor);
+            return false;
+        }
 
-        /*
-         * 
-         */
-        synchronized(mUsersFiles) {
-            if(mDataBaseFiles == null) {
-                mUsersFiles = 0;
-                try {
-                    
-                    mDataBaseFiles = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY | 
-                            SQLiteDatabase.NO_LOCALIZED_COLLATORS);
-                }
-                catch(RuntimeException e) {
-                    mDataBaseFiles = null;
-                }
-            }
-            if(mDataBaseFiles == null) {
-                return c;
+        int count = 0;
+        float lon[] = new float[0];
+        float lat[] = new float[0];
+        float height[] = new float[0];
+        try {
+            int size = cursor.getCount();
+            lon = new float[size];
+            lat = new float[size];
+            height = new float[size];
+            for(cursor.moveToFirst(); !cursor.isAfterLast() && count < size; cursor.moveToNext()) {
+                lon[count] = cursor.getFloat(0);
+                lat[count] = cursor.getFloat(1);
+                height[count] = cursor.getFloat(2);
+                count++;
             }
-            mUsersFiles++;
         }
+        catch (Exception e) {
+            count = 0;
+        }
+        closes(cursor);
+        
+        if(0 == count) {
+            return false;
+        }
+        return ObstacleIndex.build(path, stamp, lon, lat, height, count);
+    }
+
+    /**
+     *
+     * @param lon
+     * @param lat
+     * @param height
+     * @return
+     */
+    public LinkedList<Obstacle> findObstacles(double lon, double lat, int height) {
         
         /*
-         * In case we fail
+         * From index, pages near us with something tall enough
          */
-        
-        if(mDataBaseFiles == null) {
-            return c;
+        ObstacleIndex index = getObstacleIndex();
+        if(null != index) {
+            return index.find(lon, lat, Obstacle.RADIUS, height - (int)Obstacle.HEIGHT_BELOW);
         }
         
-        if(!mDataBaseFiles.isOpen()) {
-            return c;
-        }
+        LinkedList<Obstacle> list = new LinkedList<Obstacle>();
         
+        String qry = "select * from " + TABLE_OBSTACLES + " where (Height > cast(?1 as real)) and " +
+                "(" + LATITUDE_DB  + " > cast(?2 as real)) and (" + LATITUDE_DB  + " < cast(?3 as real)) and " +
+                "(" + LONGITUDE_DB + " > cast(?4 as real)) and (" + LONGITUDE_DB + " < cast(?5 as real));";
+        String args[] = new String[] {
+                Integer.toString(height - (int)Obstacle.HEIGHT_BELOW),
+                Double.toString(lat - Obstacle.RADIUS), Double.toString(lat + Obstacle.RADIUS),
+                Double.toString(lon - Obstacle.RADIUS), Double.toString(lon + Obstacle.RADIUS)};
         /*
-         * Find with sqlite query
+         * Find obstacles at below or higher in lon/lat radius
+         * We ignore all obstacles 500 AGL below in our script
          */
+        Cursor cursor = doQuery(qry, args, getMainDb(), "findObstacles");
+        
         try {
-               c = mDataBaseFiles.rawQuery(statement, null);
+            if(cursor != null) {
+                while(cursor.moveToNext()) {
+                    list.add(new Obstacle(cursor.getFloat(1), cursor.getFloat(0), (int)cursor.getFloat(2)));
+                }
+            }
         }
         catch (Exception e) {
-            c = null;
         }
-
-        return c;
+        
+        closes(cursor);
+        return list;
     }
 
     /**
-     * Close database
+     * 
+     * @return
      */
-    private void closesFiles(Cursor c) {
-        if(null != c) {
-            c.close();
-        }
-
-        synchronized(mUsersFiles) {
-            mUsersFiles--;
-            if((mDataBaseFiles != null) && (mUsersFiles <= 0)) {
-                try {
-                    mDataBaseFiles.close();
-                    super.close();
-                }
-                catch (Exception e) {
-                }
-                mDataBaseFiles = null;
-                mUsersFiles = 0;
-            }
-        }
+    private String getFilesDb() {
+        int db = Integer.parseInt(mPref.getChartType());
+        String dbs[] = mContext.getResources().getStringArray(R.array.ChartDbNames);
+        return dbs[db];
     }
 
     
@@ -1339,59 +1730,209 @@ public class DataBaseHelper extends SQLiteOpenHelper {
      */
     public Tile findClosest(double lon, double lat, double offset[], double p[], int factor) {
       
-        String qry =
-                "select * from " + TABLE_FILES + " where " + 
-                "((latul - " + lat + ") > 0) and " +
-                "((latll - " + lat + ") < 0) and " + 
-                "((lonul - " + lon + ") < 0) and " + 
-                "((lonur - " + lon + ") > 0) and " +
-                "level like '%" + factor + "%';";
-        
         /*
          * In case we fail
          */
         offset[0] = 0;
         offset[1] = 0;
         
-        Cursor cursor = doQueryFiles(qry, getFilesDb());
+        /*
+         * Tile from grid arithmetic, database search only at chart seams or edges
+         */
+        Tile tile = findClosestInGrid(lon, lat, factor);
+        if(null == tile) {
+            tile = findClosestInDb(lon, lat, factor);
+        }
         
+        if(null != tile) {
+            mCenterTile = tile;
+            
+            /*
+             * Position on tile
+             */
+            offset[0] = mCenterTile.getOffsetX(lon);
+            offset[1] = mCenterTile.getOffsetY(lat);
+            p[0] = mCenterTile.getPx();
+            p[1] = mCenterTile.getPy();
+        }
+        return mCenterTile;        
+    }
+
+    /**
+     * 
+     * @param cursor at a files row
+     * @return
+     */
+    private Tile makeTile(Cursor cursor) {
+        return new Tile(
+                mPref,
+                cursor.getString(0),
+                cursor.getDouble(1),
+                cursor.getDouble(2),
+                cursor.getDouble(3),
+                cursor.getDouble(4),
+                cursor.getDouble(5),
+                cursor.getDouble(6),
+                cursor.getDouble(7),
+                cursor.getDouble(8),
+                cursor.getDouble(9),
+                cursor.getDouble(10),
+                cursor.getString(11));
+    }
+
+    /**
+     * Search tile containing point in database
+     * @param lon
+     * @param lat
+     * @param factor
+     * @return
+     */
+    private Tile findClosestInDb(double lon, double lat, int factor) {
+        String qry =
+                "select * from " + TABLE_FILES + " where " + 
+                "((latul - cast(?2 as real)) > 0) and " +
+                "((latll - cast(?2 as real)) < 0) and " + 
+                "((lonul - cast(?1 as real)) < 0) and " + 
+                "((lonur - cast(?1 as real)) > 0) and " +
+                "level like ?3;";
+        
+        Cursor cursor = doQuery(qry, new String[] {Double.toString(lon), Double.toString(lat), 
+                "%" + factor + "%"}, getFilesDb(), "findClosestInDb");
+        
+        Tile tile = null;
         try {
             if(cursor != null) {
                 if(cursor.moveToFirst()) {
+                    tile = makeTile(cursor);
+                }
+            }
+        }
+        catch (Exception e) {
+        }
+        
+        closes(cursor);
+        return tile;
+    }
     
-                    /*
-                     * Database only return center tile, we find tiles around it using arithmetic
-                     */
-                    mCenterTile = new Tile(
-                            mPref,
-                            cursor.getString(0),
-                            cursor.getDouble(1),
-                            cursor.getDouble(2),
-                            cursor.getDouble(3),
-                            cursor.getDouble(4),
-                            cursor.getDouble(5),
-                            cursor.getDouble(6),
-                            cursor.getDouble(7),
-                            cursor.getDouble(8),
-                            cursor.getDouble(9),
-                            cursor.getDouble(10),
-                            cursor.getString(11));
-                  
-                    /*
-                     * Position on tile
-                     */
-                    offset[0] = mCenterTile.getOffsetX(lon);
-                    offset[1] = mCenterTile.getOffsetY(lat);
-                    p[0] = mCenterTile.getPx();
-                    p[1] = mCenterTile.getPy();
+    /**
+     * Drop grids and tiles if chart database changed. Under lock of mTiles.
+     */
+    private void checkTiles() {
+        String db = getFilesDb();
+        File f = new File(mPref.mapsFolder() + "/" + db);
+        long stamp = f.lastModified() * 31 + f.length();
+        if(!db.equals(mTilesDb) || stamp != mTilesStamp) {
+            mTileGrids.clear();
+            mTiles.clear();
+            mTilesDb = db;
+            mTilesStamp = stamp;
+        }
+    }
+    
+    /**
+     * Grids of all charts at a zoom level, made from one pass over files table the first time.
+     * Under lock of mTiles.
+     * @param factor
+     * @return null if database could not be read
+     */
+    private TileGrid[] getTileGrids(int factor) {
+        TileGrid grids[] = mTileGrids.get(factor);
+        if(null != grids) {
+            return grids;
+        }
+        
+        Cursor cursor = doQuery("select * from " + TABLE_FILES + " where level like ?;", 
+                new String[] {"%" + factor + "%"}, getFilesDb(), "getTileGrids");
+        if(null == cursor) {
+            return null;
+        }
+        
+        HashMap<String, TileGrid> map = new HashMap<String, TileGrid>();
+        int rc[] = new int[2];
+        try {
+            for(cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+                String name = cursor.getString(0);
+                String key = TileGrid.parse(name, rc);
+                if(null == key) {
+                    continue;
+                }
+                key += "/" + cursor.getString(11);
+                TileGrid g = map.get(key);
+                if(null == g) {
+                    g = TileGrid.make(name, rc[0], rc[1], cursor.getDouble(9), cursor.getDouble(10));
+                    map.put(key, g);
                 }
+                g.add(rc[0], rc[1],
+                        Math.min(cursor.getDouble(1), cursor.getDouble(3)),
+                        Math.max(cursor.getDouble(5), cursor.getDouble(7)),
+                        Math.min(cursor.getDouble(4), cursor.getDouble(8)),
+                        Math.max(cursor.getDouble(2), cursor.getDouble(6)),
+                        cursor.getDouble(9), cursor.getDouble(10));
             }
         }
         catch (Exception e) {
         }
+        closes(cursor);
         
-        closesFiles(cursor);
-        return mCenterTile;        
+        LinkedList<TileGrid> list = new LinkedList<TileGrid>();
+        for(TileGrid g : map.values()) {
+            if(g.fit()) {
+                list.add(g);
+            }
+        }
+        grids = list.toArray(new TileGrid[list.size()]);
+        mTileGrids.put(factor, grids);
+        return grids;
+    }
+    
+    /**
+     * Find tile by row/col from grid fit, then walk to neighbors till tile contains point.
+     * @param lon
+     * @param lat
+     * @param factor
+     * @return null if not found in any grid
+     */
+    private Tile findClosestInGrid(double lon, double lat, int factor) {
+        synchronized(mTiles) {
+            checkTiles();
+            TileGrid grids[] = getTileGrids(factor);
+            if(null == grids) {
+                return null;
+            }
+            for(int i = 0; i < grids.length; i++) {
+                TileGrid g = grids[i];
+                if(!g.contains(lon, lat)) {
+                    continue;
+                }
+                int row = g.getRow(lon, lat);
+                int col = g.getCol(lon, lat);
+                for(int step = 0; step < TILE_WALK && g.has(row, col); step++) {
+                    String name = g.getName(row, col);
+                    Tile tile = null == name ? null : findTile(name);
+                    if(null == tile) {
+                        break;
+                    }
+                    if(tile.within(lon, lat)) {
+                        return tile;
+                    }
+                    
+                    /*
+                     * Move by how far point is from this tile's center
+                     */
+                    double dc = g.getColDelta(lon - tile.getLongitude(), lat - tile.getLatitude());
+                    double dr = g.getRowDelta(lon - tile.getLongitude(), lat - tile.getLatitude());
+                    int mc = (int)Math.round(dc);
+                    int mr = (int)Math.round(dr);
+                    if(0 == mc && 0 == mr) {
+                        mc = (int)Math.signum(dc);
+                        mr = (int)Math.signum(dr);
+                    }
+                    row += mr;
+                    col += mc;
+                }
+            }
+        }
+        return null;
     }
 
     /**
@@ -1400,45 +1941,41 @@ public class DataBaseHelper extends SQLiteOpenHelper {
      * @return
      */
     public Tile findTile(String name) {
-        String query = "select * from " + TABLE_FILES + " where " + TILE_NAME + "=='" + name +"'";
-        Cursor cursor = doQueryFiles(query, getFilesDb());
+        synchronized(mTiles) {
+            checkTiles();
+            Tile tile = mTiles.get(name);
+            if(null != tile) {
+                return tile;
+            }
+        }
+        
+        String query = "select * from " + TABLE_FILES + " where " + TILE_NAME + "==?";
+        Cursor cursor = doQuery(query, new String[] {name}, getFilesDb(), "findTile");
         Tile tile = null;
         try {
             if(cursor != null) {
                 if(cursor.moveToFirst()) {
-        
-                    /*
-                     * Database
-                     */
-                    tile = new Tile(
-                            mPref,
-                            cursor.getString(0),
-                            cursor.getDouble(1),
-                            cursor.getDouble(2),
-                            cursor.getDouble(3),
-                            cursor.getDouble(4),
-                            cursor.getDouble(5),
-                            cursor.getDouble(6),
-                            cursor.getDouble(7),
-                            cursor.getDouble(8),
-                            cursor.getDouble(9),
-                            cursor.getDouble(10),
-                            cursor.getString(11));
-                    /*
-                     * Position on tile
-                     */
+                    tile = makeTile(cursor);
                 }
             }
         }
         catch (Exception e) {
         }
         
-        closesFiles(cursor);
+        closes(cursor);
+        
+        /*
+         * Size of a tile without its image is a guess, so look it up again once chart is downloaded
+         */
+        if(null != tile && new File(mPref.mapsFolder() + "/" + name).exists()) {
+            synchronized(mTiles) {
+                mTiles.put(name, tile);
+            }
+        }
         return tile;            
 
     }
 
-
     /**
      * 
      * @return
@@ -1449,84 +1986,138 @@ public class DataBaseHelper extends SQLiteOpenHelper {
 
     /**
      * 
-     * @param statement
-     * @return
+     * @return stamp of weather database file, 0 if none
      */
-    private Cursor doQueryWeather(String statement, String name) {
-        Cursor c = null;
-        
-        String path = mPref.mapsFolder() + "/" + name;
+    private long getWeatherStamp() {
+        File db = new File(mPref.mapsFolder() + "/" + getWeatherDb());
+        return db.lastModified() * 31 + db.length();
+    }
 
-        /*
-         * 
-         */
-        synchronized(mUsersWeather) {
-            if(mDataBaseWeather == null) {
-                mUsersWeather = 0;
-                try {
-                    
-                    mDataBaseWeather = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY | 
-                            SQLiteDatabase.NO_LOCALIZED_COLLATORS);
-                }
-                catch(RuntimeException e) {
-                    mDataBaseWeather = null;
-                }
-            }
-            if(mDataBaseWeather == null) {
-                return c;
+    /**
+     * 
+     * @return weather in memory, loaded first time only. New database comes in with loadWeather()
+     */
+    private WeatherSnapshot getWeather() {
+        WeatherSnapshot weather = mWeather;
+        if(null != weather) {
+            return weather;
+        }
+        synchronized(mWeatherLock) {
+            if(null == mWeather) {
+                mWeather = makeWeather(getWeatherStamp());
             }
-            mUsersWeather++;
+            return mWeather;
         }
-        
-        /*
-         * In case we fail
-         */
-        
-        if(mDataBaseWeather == null) {
-            return c;
+    }
+    
+    /**
+     * Load weather database in memory, and use it in place of old one when done.
+     * Call when a new weather database is installed. Slow, run in background.
+     */
+    public void loadWeather() {
+        synchronized(mWeatherLock) {
+            long stamp = getWeatherStamp();
+            if(null != mWeather && mWeather.getStamp() == stamp) {
+                /*
+                 * Same file as in memory
+                 */
+                return;
+            }
+            mWeather = makeWeather(stamp);
         }
-        
-        if(!mDataBaseWeather.isOpen()) {
-            return c;
+    }
+    
+    /**
+     * Read all of weather database. Missing tables give no reports.
+     * @param stamp of weather database file
+     * @return
+     */
+    private WeatherSnapshot makeWeather(long stamp) {
+        File db = new File(mPref.mapsFolder() + "/" + getWeatherDb());
+        WeatherSnapshot weather = new WeatherSnapshot(stamp);
+        if(!db.exists()) {
+            weather.finish();
+            return weather;
         }
         
-        /*
-         * Find with sqlite query
-         */
+        Cursor cursor = doQuery("select * from metars;", null, getWeatherDb(), "makeWeather");
         try {
-               c = mDataBaseWeather.rawQuery(statement, null);
+            if(cursor != null) {
+                int station = cursor.getColumnIndex("station_id");
+                while(cursor.moveToNext()) {
+                    weather.addMetar(cursor.getString(0), cursor.getString(1), 
+                            cursor.getString(station < 0 ? 2 : station), cursor.getString(3));
+                }
+            }
         }
         catch (Exception e) {
-            c = null;
         }
+        closes(cursor);
 
-        return c;
-    }
+        cursor = doQuery("select * from tafs;", null, getWeatherDb(), "makeWeather");
+        try {
+            if(cursor != null) {
+                int station = cursor.getColumnIndex("station_id");
+                while(cursor.moveToNext()) {
+                    weather.addTaf(cursor.getString(0), cursor.getString(1), 
+                            cursor.getString(station < 0 ? 2 : station));
+                }
+            }
+        }
+        catch (Exception e) {
+        }
+        closes(cursor);
 
-    /**
-     * Close database
-     */
-    private void closesWeather(Cursor c) {
-        if(null != c) {
-            c.close();
+        cursor = doQuery("select * from wa;", null, getWeatherDb(), "makeWeather");
+        try {
+            if(cursor != null) {
+                String levels[] = new String[9];
+                while(cursor.moveToNext()) {
+                    for(int level = 0; level < levels.length; level++) {
+                        levels[level] = cursor.getString(4 + level);
+                    }
+                    weather.addWinds(cursor.getString(0), cursor.getString(1), 
+                            cursor.getFloat(2), cursor.getFloat(3), levels);
+                }
+            }
         }
+        catch (Exception e) {
+        }
+        closes(cursor);
 
-        synchronized(mUsersWeather) {
-            mUsersWeather--;
-            if((mDataBaseWeather != null) && (mUsersWeather <= 0)) {
-                try {
-                    mDataBaseWeather.close();
-                    super.close();
+        cursor = doQuery("select * from apirep;", null, getWeatherDb(), "makeWeather");
+        try {
+            if(cursor != null) {
+                while(cursor.moveToNext()) {
+                    weather.addAirep(cursor.getString(0), cursor.getString(1), 
+                            cursor.getFloat(2), cursor.getFloat(3), cursor.getString(4));
                 }
-                catch (Exception e) {
+            }
+        }
+        catch (Exception e) {
+        }
+        closes(cursor);
+
+        cursor = doQuery("select * from airsig;", null, getWeatherDb(), "makeWeather");
+        try {
+            if(cursor != null) {
+                while(cursor.moveToNext()) {
+                    String columns[] = new String[11];
+                    for(int column = 0; column < columns.length; column++) {
+                        columns[column] = cursor.getString(column);
+                    }
+                    weather.addAirSig(columns);
                 }
-                mDataBaseWeather = null;
-                mUsersWeather = 0;
             }
         }
+        catch (Exception e) {
+        }
+        closes(cursor);
+        
+        weather.finish();
+        return weather;
     }
 
-
     /**
      * 
      * @param station
@@ -1534,28 +2125,19 @@ public class DataBaseHelper extends SQLiteOpenHelper {
      */
     public Taf getTAF(String station) {
       
-        Taf taf = null;
-        String qry =
-                "select * from tafs where station_id='K" + station + "';";
-        
-        Cursor cursor = doQueryWeather(qry, getWeatherDb());
-        
-        try {
-            if(cursor != null) {
-                if(cursor.moveToFirst()) {
-
-                    taf = new Taf();
-                    taf.rawText = cursor.getString(0);
-                    taf.time = cursor.getString(1);
-                    taf.stationId = cursor.getString(1);
-                }
-            }
-        }
-        catch (Exception e) {
+        /*
+         * ADS-B weather is newer than downloaded
+         */
+        UplinkWeather.Report r = UplinkWeather.getInstance().get(UplinkWeather.TAF, station);
+        if(null != r) {
+            Taf taf = new Taf();
+            taf.rawText = r.getText();
+            taf.time = r.getTime();
+            taf.stationId = r.getStation();
+            return taf;
         }
         
-        closesWeather(cursor);
-        return taf;        
+        return getWeather().getTaf("K" + station);
     }
 
     /**
@@ -1565,29 +2147,20 @@ public class DataBaseHelper extends SQLiteOpenHelper {
      */
     public Metar getMETAR(String station) {
       
-        Metar metar = null;
-        String qry =
-                "select * from metars where station_id='K" + station + "';";
-        
-        Cursor cursor = doQueryWeather(qry, getWeatherDb());
-        
-        try {
-            if(cursor != null) {
-                if(cursor.moveToFirst()) {
-
-                    metar = new Metar();
-                    metar.rawText = cursor.getString(0);
-                    metar.time = cursor.getString(1);
-                    metar.stationId = cursor.getString(2);
-                    metar.flightCategory = cursor.getString(3);
-                }
-            }
-        }
-        catch (Exception e) {
+        /*
+         * ADS-B weather is newer than downloaded
+         */
+        UplinkWeather.Report r = UplinkWeather.getInstance().get(UplinkWeather.METAR, station);
+        if(null != r) {
+            Metar metar = new Metar();
+            metar.rawText = r.getText();
+            metar.time = r.getTime();
+            metar.stationId = r.getStation();
+            metar.flightCategory = UplinkWeather.getFlightCategory(r.getText());
+            return metar;
         }
         
-        closesWeather(cursor);
-        return metar;        
+        return getWeather().getMetar("K" + station);
     }
 
     
@@ -1599,41 +2172,62 @@ public class DataBaseHelper extends SQLiteOpenHelper {
      */
     public WindsAloft getWindsAloft(double lon, double lat) {
       
-        WindsAloft wa = null;
-        String qry =
-                "select * from wa order by " +
-                "((longitude - " + lon + ")*" + "(longitude - " + lon + ") + " +    
-                "(latitude - " + lat + ")*" + "(latitude - " + lat + ")) limit 1;";
-
-        Cursor cursor = doQueryWeather(qry, getWeatherDb());
+        WindsAloft wa = getWeather().getWindsAloft(lon, lat);
         
-        try {
-            if(cursor != null) {
-                if(cursor.moveToFirst()) {
-
-                    wa = new WindsAloft();
-                    wa.station = cursor.getString(0);
-                    wa.time = cursor.getString(1);
-                    wa.lon = cursor.getFloat(2);
-                    wa.lat = cursor.getFloat(3);
-                    wa.w3k = cursor.getString(4);
-                    wa.w6k = cursor.getString(5);
-                    wa.w9k = cursor.getString(6);
-                    wa.w12k = cursor.getString(7);
-                    wa.w18k = cursor.getString(8);
-                    wa.w24k = cursor.getString(9);
-                    wa.w30k = cursor.getString(10);
-                    wa.w34k = cursor.getString(11);
-                    wa.w39k = cursor.getString(12);
-                }
+        /*
+         * Use ADS-B winds if from a station as close
+         */
+        double dist = (null == wa) ? Double.MAX_VALUE :
+            (wa.lon - lon) * (wa.lon - lon) + (wa.lat - lat) * (wa.lat - lat);
+        UplinkWeather.Report near = null;
+        for(UplinkWeather.Report r : UplinkWeather.getInstance().getAll(UplinkWeather.WINDS)) {
+            locate(r);
+            if(Float.isNaN(r.getLon())) {
+                continue;
+            }
+            double d = (r.getLon() - lon) * (r.getLon() - lon) + (r.getLat() - lat) * (r.getLat() - lat);
+            if(d <= dist) {
+                dist = d;
+                near = r;
             }
         }
-        catch (Exception e) {
+        if(null != near) {
+            String levels[] = near.getLevels();
+            wa = new WindsAloft();
+            wa.station = near.getStation();
+            wa.time = near.getTime();
+            wa.lon = near.getLon();
+            wa.lat = near.getLat();
+            wa.w3k = levels[0];
+            wa.w6k = levels[1];
+            wa.w9k = levels[2];
+            wa.w12k = levels[3];
+            wa.w18k = levels[4];
+            wa.w24k = levels[5];
+            wa.w30k = levels[6];
+            wa.w34k = levels[7];
+            wa.w39k = levels[8];
         }
-        
-        closesWeather(cursor);
         return wa;        
     }
+    
+    /**
+     * Find where an ADS-B weather station is, once
+     * @param r
+     */
+    private void locate(UplinkWeather.Report r) {
+        if(r.isLocated()) {
+            return;
+        }
+        Coordinate c = getCoordinate(r.getStation());
+        if(null == c) {
+            UplinkWeather.getInstance().setLocation(r.getStation(), Float.NaN, Float.NaN);
+        }
+        else {
+            UplinkWeather.getInstance().setLocation(r.getStation(), 
+                    (float)c.getLongitude(), (float)c.getLatitude());
+        }
+    }
 
     /**
      * 
@@ -1642,36 +2236,25 @@ public class DataBaseHelper extends SQLiteOpenHelper {
      */
     public LinkedList<Airep> getAireps(double lon, double lat) {
 
-        LinkedList<Airep> airep = new LinkedList<Airep>();
-
+        LinkedList<Airep> airep = getWeather().getAireps(lon, lat);
+        
         /*
-         * All aireps/pireps sep by \n
+         * Add ADS-B PIREPs, located at their station
          */
-        
-        String qry =
-                "select * from apirep where " +                
-                "(" + "latitude"  + " > " + (lat - Airep.RADIUS) + ") and (" + "latitude"  + " < " + (lat + Airep.RADIUS) + ") and " +
-                "(" + "longitude" + " > " + (lon - Airep.RADIUS) + ") and (" + "longitude" + " < " + (lon + Airep.RADIUS) + ");";
-     
-        Cursor cursor = doQueryWeather(qry, getWeatherDb());
-        
-        try {
-            if(cursor != null) {
-                while(cursor.moveToNext()) {
-                    Airep a = new Airep();
-                    a.rawText = cursor.getString(0);
-                    a.time = cursor.getString(1);
-                    a.lon = cursor.getFloat(2);
-                    a.lat = cursor.getFloat(3);
-                    a.reportType = cursor.getString(4);
-                    airep.add(a);
-                }
+        for(UplinkWeather.Report r : UplinkWeather.getInstance().getAll(UplinkWeather.PIREP)) {
+            locate(r);
+            if(Float.isNaN(r.getLon()) || 
+                    Math.abs(r.getLat() - lat) >= Airep.RADIUS || Math.abs(r.getLon() - lon) >= Airep.RADIUS) {
+                continue;
             }
+            Airep a = new Airep();
+            a.rawText = r.getText();
+            a.time = r.getTime();
+            a.lon = r.getLon();
+            a.lat = r.getLat();
+            a.reportType = "PIREP";
+            airep.add(a);
         }
-        catch (Exception e) {
-        }
-        
-        closesWeather(cursor);
         return airep;
     }
 
@@ -1683,40 +2266,7 @@ public class DataBaseHelper extends SQLiteOpenHelper {
      */
     public LinkedList<AirSigMet> getAirSigMets() {
 
-        LinkedList<AirSigMet> airsig = new LinkedList<AirSigMet>();
-        
-        /*
-         * Get all
-         */
-        String qry =
-                "select * from airsig"; 
-     
-        Cursor cursor = doQueryWeather(qry, getWeatherDb());
-        
-        try {
-            if(cursor != null) {
-                while(cursor.moveToNext()) {
-                    AirSigMet a = new AirSigMet();
-                    a.rawText = cursor.getString(0);
-                    a.timeFrom = cursor.getString(1);
-                    a.timeTo = cursor.getString(2);
-                    a.points = cursor.getString(3);
-                    a.minFt = cursor.getString(4);
-                    a.maxFt = cursor.getString(5);
-                    a.movementDeg = cursor.getString(6);
-                    a.movementKt = cursor.getString(7);
-                    a.hazard = cursor.getString(8);
-                    a.severity = cursor.getString(9);
-                    a.reportType = cursor.getString(10);
-                    airsig.add(a);
-                }
-            }
-        }
-        catch (Exception e) {
-        }
-        
-        closesWeather(cursor);
-        return airsig;
+        return getWeather().getAirSigMets();
     }
 
 }
@@ -90,10 +90,21 @@ public class DataSource {
 
     /**
      * @param name
-     * @param params
+     * @param type
+     * @return null if not found
+     */
+    public AirportRow findDestination(String name, String type, LinkedList<Runway> runways, LinkedList<FrequencyRow> freq,  LinkedList<Awos> awos) {
+        return dbHelper.findDestination(name, type, runways, freq, awos);
+    }
+    
+    /**
+     * 
+     * @param name
+     * @param type
+     * @return
      */
-    public void findDestination(String name, String type, LinkedHashMap<String, String> params, LinkedList<Runway> runways, LinkedHashMap<String, String> freq,  LinkedList<Awos> awos) {
-        dbHelper.findDestination(name, type, params, runways, freq, awos);
+    public DestinationRecord findDestinationRecord(String name, String type) {
+        return dbHelper.findDestinationRecord(name, type);
     }
     
     /**
@@ -233,6 +244,13 @@ public class DataSource {
         return dbHelper.getAirSigMets();
     }
 
+    /**
+     * Load new weather database in memory. Slow, run in background.
+     */
+    public void loadWeather() {
+        dbHelper.loadWeather();
+    }
+
     /**
      * 
      * @param name
@@ -242,4 +260,28 @@ public class DataSource {
         return  dbHelper.findFrequencies(name);
 
     }
+
+    /**
+     * 
+     * @return connection pool numbers per database
+     */
+    public String getPoolStats() {
+        return dbHelper.getPoolStats();
+    }
+
+    /**
+     * 
+     * @param scratch folder for temporary copy of database
+     * @return query latency without and with indexes
+     */
+    public String benchmarkIndexes(String scratch) {
+        return dbHelper.benchmarkIndexes(scratch);
+    }
+
+    /**
+     * Close all database connections
+     */
+    public void close() {
+        dbHelper.close();
+    }
 }
@@ -0,0 +1,405 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.storage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import com.ds.avare.place.Obstacle;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Adds indexes to downloaded databases for the lookups the app does, 
+ * once after download. Version of indexes made is kept in the database, 
+ * so a database from a new cycle, which has none, gets them, and one that 
+ * has them is left alone.
+ *
+ */
+public class DatabaseIndexer {
+
+    public static final int VERSION = 1;
+    
+    private static final String TABLE_VERSION = "avareindex";
+    
+    /*
+     * Name, table, columns
+     */
+    private static final String INDEXES[][] = {
+        {"idx_airports_id",       "airports",       "LocationID"},
+        {"idx_airports_type_id",  "airports",       "Type,LocationID"},
+        {"idx_airportfreq_id",    "airportfreq",    "LocationID"},
+        {"idx_awos_id",           "awos",           "LocationID"},
+        {"idx_airportrunways_id", "airportrunways", "LocationID"},
+        {"idx_airportdiags_id",   "airportdiags",   "LocationID"},
+        {"idx_takeoff_id",        "takeoff",        "LocationID,File"},
+        {"idx_alternate_id",      "alternate",      "LocationID,File"},
+        {"idx_afd_id",            "afd",            "LocationID,File"},
+        {"idx_nav_id",            "nav",            "LocationID"},
+        {"idx_fix_id",            "fix",            "LocationID"},
+        {"idx_files_info",        "files",          "info,name"},
+        {"idx_files_name",        "files",          "name"},
+        {"idx_obs_latlon",        "obs",            "ARPLatitude,ARPLongitude,Height"},
+    };
+    
+    /*
+     * Hot lookups for benchmark: table it needs, SQL, kind of values bound
+     */
+    private static final int BY_ID = 0;
+    private static final int BY_ID_K = 1;
+    private static final int BY_LATLON = 2;
+    private static final int BY_NAME = 3;
+    private static final int BY_INFO = 4;
+    private static final Object QUERIES[][] = {
+        {"airports", "select * from airports where LocationID==?;", BY_ID},
+        {"airportfreq", "select * from airportfreq where LocationID==?1 or LocationID==?2;", BY_ID_K},
+        {"awos", "select * from awos where LocationID==?1 or LocationID==?2;", BY_ID_K},
+        {"airportrunways", "select * from airportrunways where LocationID==?1 or LocationID==?2;", BY_ID_K},
+        {"afd", "select File from afd where LocationID==?;", BY_ID},
+        {"obs", "select * from obs where (Height > cast(?1 as real)) and " +
+                "(ARPLatitude > cast(?2 as real)) and (ARPLatitude < cast(?3 as real)) and " +
+                "(ARPLongitude > cast(?4 as real)) and (ARPLongitude < cast(?5 as real));", BY_LATLON},
+        {"files", "select * from files where name==?;", BY_NAME},
+        {"files", "select name from files where info==?;", BY_INFO},
+    };
+    
+    private static final int SAMPLES = 50;
+    
+    /**
+     * 
+     * @param db
+     * @param table
+     * @return
+     */
+    private static boolean hasTable(SQLiteDatabase db, String table) {
+        Cursor c = null;
+        boolean ret = false;
+        try {
+            c = db.rawQuery("select name from sqlite_master where type=='table' and name==?;", new String[] {table});
+            ret = c.moveToFirst();
+        }
+        catch (Exception e) {
+        }
+        if(null != c) {
+            c.close();
+        }
+        return ret;
+    }
+    
+    /**
+     * 
+     * @param db
+     * @return version of indexes in database, 0 if none
+     */
+    private static int getVersion(SQLiteDatabase db) {
+        if(!hasTable(db, TABLE_VERSION)) {
+            return 0;
+        }
+        Cursor c = null;
+        int ret = 0;
+        try {
+            c = db.rawQuery("select version from " + TABLE_VERSION + ";", null);
+            if(c.moveToFirst()) {
+                ret = c.getInt(0);
+            }
+        }
+        catch (Exception e) {
+        }
+        if(null != c) {
+            c.close();
+        }
+        return ret;
+    }
+
+    /**
+     * Make indexes for tables that are present
+     * @param db
+     * @return number made
+     */
+    private static int create(SQLiteDatabase db) {
+        int made = 0;
+        for(int i = 0; i < INDEXES.length; i++) {
+            if(!hasTable(db, INDEXES[i][1])) {
+                continue;
+            }
+            try {
+                db.execSQL("create index if not exists " + INDEXES[i][0] + " on " + INDEXES[i][1] + 
+                        "(" + INDEXES[i][2] + ");");
+                made++;
+            }
+            catch (Exception e) {
+                /*
+                 * Column not in this database
+                 */
+            }
+        }
+        return made;
+    }
+    
+    /**
+     * 
+     * @param db
+     */
+    private static void drop(SQLiteDatabase db) {
+        for(int i = 0; i < INDEXES.length; i++) {
+            db.execSQL("drop index if exists " + INDEXES[i][0] + ";");
+        }
+        if(hasTable(db, "sqlite_stat1")) {
+            db.execSQL("delete from sqlite_stat1;");
+        }
+    }
+    
+    /**
+     * Index a downloaded database, if not done already. Databases without any of 
+     * the tables are not touched.
+     * @param path
+     * @return true if database has indexes now
+     */
+    public static boolean index(String path) {
+        SQLiteDatabase db = null;
+        boolean ret = false;
+        try {
+            db = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READWRITE | 
+                    SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+            if(getVersion(db) >= VERSION) {
+                ret = true;
+            }
+            else {
+                db.beginTransaction();
+                try {
+                    if(create(db) > 0) {
+                        db.execSQL("create table if not exists " + TABLE_VERSION + "(version integer);");
+                        db.execSQL("delete from " + TABLE_VERSION + ";");
+                        db.execSQL("insert into " + TABLE_VERSION + " values(" + VERSION + ");");
+                        db.setTransactionSuccessful();
+                        ret = true;
+                    }
+                }
+                finally {
+                    db.endTransaction();
+                }
+                
+                /*
+                 * Statistics for query planner
+                 */
+                if(ret) {
+                    db.execSQL("analyze;");
+                }
+            }
+        }
+        catch (Exception e) {
+        }
+        if(null != db) {
+            try {
+                db.close();
+            }
+            catch (Exception e) {
+            }
+        }
+        return ret;
+    }
+    
+    /**
+     * 
+     * @param db
+     * @param qry
+     * @return values of first column, or first two joined by comma
+     */
+    private static ArrayList<String> sample(SQLiteDatabase db, String qry) {
+        ArrayList<String> list = new ArrayList<String>();
+        Cursor c = null;
+        try {
+            c = db.rawQuery(qry, null);
+            while(c.moveToNext()) {
+                list.add(c.getString(0) + (c.getColumnCount() > 1 ? ("," + c.getString(1)) : ""));
+            }
+        }
+        catch (Exception e) {
+        }
+        if(null != c) {
+            c.close();
+        }
+        return list;
+    }
+
+    /**
+     * 
+     * @param db
+     * @param sql
+     * @param args
+     * @return time taken ns
+     */
+    private static long time(SQLiteDatabase db, String sql, String args[]) {
+        long start = System.nanoTime();
+        Cursor c = null;
+        try {
+            c = db.rawQuery(sql, args);
+            while(c.moveToNext()) {
+            }
+        }
+        catch (Exception e) {
+        }
+        if(null != c) {
+            c.close();
+        }
+        return System.nanoTime() - start;
+    }
+    
+    /**
+     * Average time per query for each hot query
+     * @param db
+     * @param ids
+     * @param latlons
+     * @param names
+     * @param infos
+     * @return ns per query, -1 if not run
+     */
+    private static long[] run(SQLiteDatabase db, ArrayList<String> ids, ArrayList<String> latlons, 
+            ArrayList<String> names, ArrayList<String> infos) {
+        long ret[] = new long[QUERIES.length];
+        for(int q = 0; q < QUERIES.length; q++) {
+            ret[q] = -1;
+            if(!hasTable(db, (String)QUERIES[q][0])) {
+                continue;
+            }
+            String sql = (String)QUERIES[q][1];
+            int kind = (Integer)QUERIES[q][2];
+            ArrayList<String> values = kind == BY_LATLON ? latlons : (kind == BY_NAME ? names : (kind == BY_INFO ? infos : ids));
+            if(values.isEmpty()) {
+                continue;
+            }
+            long total = 0;
+            for(String v : values) {
+                String args[];
+                if(BY_ID_K == kind) {
+                    args = new String[] {v, "K" + v};
+                }
+                else if(BY_LATLON == kind) {
+                    String ll[] = v.split(",");
+                    double lon = Double.parseDouble(ll[0]);
+                    double lat = Double.parseDouble(ll[1]);
+                    args = new String[] {"0", 
+                            Double.toString(lat - Obstacle.RADIUS), Double.toString(lat + Obstacle.RADIUS),
+                            Double.toString(lon - Obstacle.RADIUS), Double.toString(lon + Obstacle.RADIUS)};
+                }
+                else {
+                    args = new String[] {v};
+                }
+                total += time(db, sql, args);
+            }
+            ret[q] = total / values.size();
+        }
+        return ret;
+    }
+    
+    /**
+     * 
+     * @param from
+     * @param to
+     * @throws IOException
+     */
+    private static void copy(String from, String to) throws IOException {
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            in = new FileInputStream(from);
+            out = new FileOutputStream(to);
+            byte buf[] = new byte[65536];
+            int red;
+            while((red = in.read(buf)) > 0) {
+                out.write(buf, 0, red);
+            }
+        }
+        finally {
+            if(null != in) {
+                try {
+                    in.close();
+                }
+                catch (IOException e) {
+                }
+            }
+            if(null != out) {
+                /*
+                 * Not quietly, a copy not written out is not a database
+                 */
+                out.close();
+            }
+        }
+    }
+    
+    /**
+     * Compare latency of hot queries without and with indexes, on a copy of database.
+     * Runs on device, takes a while for main database.
+     * @param path database to test
+     * @param scratch where copy is made, deleted after
+     * @return report, one line per query
+     */
+    public static String benchmark(String path, String scratch) {
+        StringBuilder sb = new StringBuilder();
+        SQLiteDatabase db = null;
+        try {
+            copy(path, scratch);
+            
+            db = SQLiteDatabase.openDatabase(scratch, null, SQLiteDatabase.OPEN_READWRITE | 
+                    SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+            drop(db);
+            
+            ArrayList<String> ids = hasTable(db, "airports") ? 
+                    sample(db, "select LocationID from airports order by random() limit " + SAMPLES + ";") : new ArrayList<String>();
+            ArrayList<String> latlons = hasTable(db, "airports") ? 
+                    sample(db, "select ARPLongitude,ARPLatitude from airports order by random() limit " + SAMPLES + ";") : new ArrayList<String>();
+            ArrayList<String> names = hasTable(db, "files") ? 
+                    sample(db, "select name from files order by random() limit " + SAMPLES + ";") : new ArrayList<String>();
+            ArrayList<String> infos = hasTable(db, "files") ? 
+                    sample(db, "select distinct info from files limit " + SAMPLES + ";") : new ArrayList<String>();
+            
+            long before[] = run(db, ids, latlons, names, infos);
+            long start = System.nanoTime();
+            create(db);
+            db.execSQL("analyze;");
+            long build = System.nanoTime() - start;
+            long after[] = run(db, ids, latlons, names, infos);
+            
+            sb.append(String.format(Locale.US, "%s, index build %.1f ms\n", new File(path).getName(), build / 1e6));
+            for(int q = 0; q < QUERIES.length; q++) {
+                if(before[q] < 0 || after[q] < 0) {
+                    continue;
+                }
+                sb.append(String.format(Locale.US, "%9.3f ms -> %9.3f ms  %s\n", 
+                        before[q] / 1e6, after[q] / 1e6, QUERIES[q][1]));
+            }
+        }
+        catch (Exception e) {
+            sb.append("failed " + e.getMessage() + "\n");
+        }
+        if(null != db) {
+            try {
+                db.close();
+            }
+            catch (Exception e) {
+            }
+        }
+        new File(scratch).delete();
+        new File(scratch + "-journal").delete();
+        return sb.toString();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.storage;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+
+import com.ds.avare.place.Awos;
+import com.ds.avare.place.Runway;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * All that database has on a destination, found in one go and kept for a while.
+ * Shared between users, so it must not be changed; copy what needs changing.
+ *
+ */
+public class DestinationRecord {
+
+    private String mName;
+    private String mType;
+    private AirportRow mAirport;
+    private LinkedList<Runway> mRunways;
+    private LinkedList<FrequencyRow> mFreq;
+    private LinkedList<Awos> mAwos;
+    private String mAfd;
+    private String mMinimums[];
+    private float mMatrix[];
+    
+    /**
+     * 
+     * @param name
+     * @param type
+     */
+    public DestinationRecord(String name, String type) {
+        mName = name;
+        mType = type;
+        mAirport = null;
+        mRunways = new LinkedList<Runway>();
+        mFreq = new LinkedList<FrequencyRow>();
+        mAwos = new LinkedList<Awos>();
+        mAfd = null;
+        mMinimums = null;
+        mMatrix = null;
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public boolean isFound() {
+        return null != mAirport;
+    }
+    
+    public String getName() {
+        return mName;
+    }
+
+    public String getType() {
+        return mType;
+    }
+
+    /**
+     * 
+     * @return null if not found
+     */
+    public AirportRow getAirport() {
+        return mAirport;
+    }
+
+    /**
+     * 
+     * @return map view for display, empty if not found
+     */
+    public LinkedHashMap<String, String> getParams() {
+        if(null == mAirport) {
+            return new LinkedHashMap<String, String>();
+        }
+        return mAirport.getParams();
+    }
+
+    public LinkedList<Runway> getRunways() {
+        return mRunways;
+    }
+
+    public LinkedList<FrequencyRow> getFrequencies() {
+        return mFreq;
+    }
+
+    /**
+     * 
+     * @return map view for display
+     */
+    public LinkedHashMap<String, String> getFreq() {
+        return FrequencyRow.getParams(mFreq);
+    }
+
+    public LinkedList<Awos> getAwos() {
+        return mAwos;
+    }
+
+    /**
+     * 
+     * @return A/FD file name, null if none
+     */
+    public String getAfd() {
+        return mAfd;
+    }
+
+    /**
+     * 
+     * @return alternate and take off minimums files, null if none
+     */
+    public String[] getMinimums() {
+        return mMinimums;
+    }
+
+    /**
+     * 
+     * @return airport diagram matrix
+     */
+    public float[] getMatrix() {
+        return mMatrix;
+    }
+
+    void setAirport(AirportRow airport) {
+        mAirport = airport;
+    }
+
+    void setAfd(String afd) {
+        mAfd = afd;
+    }
+
+    void setMinimums(String minimums[]) {
+        mMinimums = minimums;
+    }
+
+    void setMatrix(float matrix[]) {
+        mMatrix = matrix;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.storage;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * A frequency of an airport, as text shown and as number.
+ *
+ */
+public class FrequencyRow {
+
+    private String mType;
+    private String mText;
+    private double mFrequency;
+    
+    /**
+     * 
+     * @param type like TWR
+     * @param text as in database
+     */
+    public FrequencyRow(String type, String text) {
+        mType = type;
+        mText = text;
+        try {
+            mFrequency = Double.parseDouble(text);
+        }
+        catch (Exception e) {
+            mFrequency = 0;
+        }
+    }
+
+    public String getType() {
+        return mType;
+    }
+
+    public String getText() {
+        return mText;
+    }
+
+    /**
+     * 
+     * @return MHz, 0 if not a number
+     */
+    public double getFrequency() {
+        return mFrequency;
+    }
+    
+    /**
+     * Map view for display, type to frequency. A second frequency of a type 
+     * is put under type with a # after it.
+     * @param rows
+     * @return
+     */
+    public static LinkedHashMap<String, String> getParams(LinkedList<FrequencyRow> rows) {
+        LinkedHashMap<String, String> freq = new LinkedHashMap<String, String>();
+        for(FrequencyRow row : rows) {
+            if(freq.containsKey(row.mType)) {
+                freq.put(row.mType + "#", row.mText);
+            }
+            else {
+                freq.put(row.mType, row.mText);
+            }
+        }
+        return freq;
+    }
+}
@@ -0,0 +1,361 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import com.ds.avare.place.Obstacle;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Obstacles packed in a file next to main database, memory mapped.
+ * Obstacles are sorted on Z order (Morton code) of their location so near ones are together, 
+ * and are grouped in pages of fixed size. A directory of pages gives first code, 
+ * bounds, and lowest and highest obstacle of each page, so a lookup reads only pages 
+ * that cross the area and have something tall enough in them.
+ * File is stamped with size and time of main database it was made from, 
+ * and is made again when database changes.
+ *
+ */
+public class ObstacleIndex {
+
+    private static final int MAGIC = 0x4F494458; // OIDX
+    private static final int VERSION = 1;
+    
+    /*
+     * Obstacles in a page
+     */
+    private static final int PAGE = 128;
+    
+    /*
+     * Locations are made 16 bit each for codes
+     */
+    private static final int STEPS = 65535;
+    
+    /*
+     * Header: magic, version, stamp(long), west, south, x scale, y scale, count, pages
+     */
+    private static final int HEADER = 40;
+    
+    /*
+     * Page: first code, min height, max height, west, south, east, north
+     */
+    private static final int DIRECTORY = 28;
+    
+    /*
+     * Record: lon, lat, height
+     */
+    private static final int RECORD = 12;
+    
+    private MappedByteBuffer mMap;
+    private long mStamp;
+    private float mWest;
+    private float mSouth;
+    private float mScaleX;
+    private float mScaleY;
+    private int mCount;
+    private int mPages;
+    private int mRecords;
+    
+    /**
+     * 
+     */
+    public ObstacleIndex() {
+        mMap = null;
+    }
+    
+    /**
+     * 
+     * @param path of index file
+     * @param stamp that index must have been built with
+     * @return true if index is mapped and usable
+     */
+    public boolean open(String path, long stamp) {
+        if(mMap != null && mStamp == stamp) {
+            return true;
+        }
+        close();
+        
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(path, "r");
+            MappedByteBuffer map = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if(map.getInt(0) == MAGIC && map.getInt(4) == VERSION && map.getLong(8) == stamp) {
+                mWest = map.getFloat(16);
+                mSouth = map.getFloat(20);
+                mScaleX = map.getFloat(24);
+                mScaleY = map.getFloat(28);
+                mCount = map.getInt(32);
+                mPages = map.getInt(36);
+                mRecords = HEADER + mPages * DIRECTORY;
+                if(map.capacity() >= mRecords + mCount * RECORD) {
+                    mStamp = stamp;
+                    mMap = map;
+                }
+            }
+        }
+        catch (Exception e) {
+            mMap = null;
+        }
+        
+        /*
+         * Mapping stays valid after file is closed
+         */
+        try {
+            if(file != null) {
+                file.close();
+            }
+        }
+        catch (Exception e) {
+        }
+        return mMap != null;
+    }
+    
+    /**
+     * Unmapped when collected
+     */
+    public void close() {
+        mMap = null;
+    }
+    
+    /**
+     * Spread 16 bits of v to even bits
+     * @param v
+     * @return
+     */
+    private static long spread(int v) {
+        long x = v & 0xFFFF;
+        x = (x | (x << 8)) & 0x00FF00FFL;
+        x = (x | (x << 4)) & 0x0F0F0F0FL;
+        x = (x | (x << 2)) & 0x33333333L;
+        x = (x | (x << 1)) & 0x55555555L;
+        return x;
+    }
+    
+    /**
+     * 
+     * @param x
+     * @param y
+     * @return Z order code, 32 bits
+     */
+    private static long code(int x, int y) {
+        return spread(x) | (spread(y) << 1);
+    }
+    
+    /**
+     * 
+     * @param v degrees from west or south
+     * @param scale
+     * @return
+     */
+    private static int step(double v, float scale) {
+        int s = (int)Math.floor(v * scale);
+        return Math.max(0, Math.min(STEPS, s));
+    }
+
+    /**
+     * Write index file. Written to a temporary file first then renamed, 
+     * so a reader never sees a partial index.
+     * @param path
+     * @param stamp
+     * @param lon
+     * @param lat
+     * @param height
+     * @param count
+     * @return
+     */
+    public static boolean build(String path, long stamp, float lon[], float lat[], float height[], int count) {
+        
+        float west = Float.MAX_VALUE;
+        float east = -Float.MAX_VALUE;
+        float south = Float.MAX_VALUE;
+        float north = -Float.MAX_VALUE;
+        for(int i = 0; i < count; i++) {
+            west = Math.min(west, lon[i]);
+            east = Math.max(east, lon[i]);
+            south = Math.min(south, lat[i]);
+            north = Math.max(north, lat[i]);
+        }
+        if(count == 0) {
+            west = east = south = north = 0;
+        }
+        float scaleX = STEPS / Math.max(east - west, 1e-3f);
+        float scaleY = STEPS / Math.max(north - south, 1e-3f);
+        
+        /*
+         * Sort on code, index of obstacle in low bits
+         */
+        long keys[] = new long[count];
+        for(int i = 0; i < count; i++) {
+            long c = code(step(lon[i] - west, scaleX), step(lat[i] - south, scaleY));
+            keys[i] = (c << 31) | i;
+        }
+        Arrays.sort(keys);
+        
+        int pages = (count + PAGE - 1) / PAGE;
+        File tmp = new File(path + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 32768));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(stamp);
+            out.writeFloat(west);
+            out.writeFloat(south);
+            out.writeFloat(scaleX);
+            out.writeFloat(scaleY);
+            out.writeInt(count);
+            out.writeInt(pages);
+            for(int p = 0; p < pages; p++) {
+                float min = Float.MAX_VALUE;
+                float max = -Float.MAX_VALUE;
+                float w = Float.MAX_VALUE;
+                float s = Float.MAX_VALUE;
+                float e = -Float.MAX_VALUE;
+                float n = -Float.MAX_VALUE;
+                int end = Math.min(count, (p + 1) * PAGE);
+                for(int o = p * PAGE; o < end; o++) {
+                    int i = (int)(keys[o] & 0x7FFFFFFFL);
+                    min = Math.min(min, height[i]);
+                    max = Math.max(max, height[i]);
+                    w = Math.min(w, lon[i]);
+                    e = Math.max(e, lon[i]);
+                    s = Math.min(s, lat[i]);
+                    n = Math.max(n, lat[i]);
+                }
+                out.writeInt((int)(keys[p * PAGE] >>> 31));
+                out.writeFloat(min);
+                out.writeFloat(max);
+                out.writeFloat(w);
+                out.writeFloat(s);
+                out.writeFloat(e);
+                out.writeFloat(n);
+            }
+            for(int o = 0; o < count; o++) {
+                int i = (int)(keys[o] & 0x7FFFFFFFL);
+                out.writeFloat(lon[i]);
+                out.writeFloat(lat[i]);
+                out.writeFloat(height[i]);
+            }
+            out.close();
+            out = null;
+            File f = new File(path);
+            f.delete();
+            return tmp.renameTo(f);
+        }
+        catch (Exception e) {
+            try {
+                if(out != null) {
+                    out.close();
+                }
+            }
+            catch (Exception e1) {
+            }
+            tmp.delete();
+        }
+        return false;
+    }
+    
+    /**
+     * 
+     * @param p
+     * @return first code of page, unsigned
+     */
+    private long getCode(int p) {
+        return mMap.getInt(HEADER + p * DIRECTORY) & 0xFFFFFFFFL;
+    }
+    
+    /**
+     * Find obstacles higher than a height, in a box around a point. 
+     * Obstacles are made only for those found.
+     * @param lon
+     * @param lat
+     * @param radius half size of box in degrees
+     * @param above height obstacles must be higher than
+     * @return
+     */
+    public synchronized LinkedList<Obstacle> find(double lon, double lat, double radius, float above) {
+        LinkedList<Obstacle> list = new LinkedList<Obstacle>();
+        if(null == mMap || mPages == 0) {
+            return list;
+        }
+        
+        double west = lon - radius;
+        double east = lon + radius;
+        double south = lat - radius;
+        double north = lat + radius;
+        
+        /*
+         * All codes in box are between code of its corners
+         */
+        long lo = code(step(west - mWest, mScaleX), step(south - mSouth, mScaleY));
+        long hi = code(step(east - mWest, mScaleX), step(north - mSouth, mScaleY));
+        
+        /*
+         * Last page starting before lo, as pages after it may start with lo too
+         */
+        int first = 0;
+        int last = mPages - 1;
+        while(first < last) {
+            int mid = (first + last + 1) >>> 1;
+            if(getCode(mid) < lo) {
+                first = mid;
+            }
+            else {
+                last = mid - 1;
+            }
+        }
+        
+        for(int p = first; p < mPages && getCode(p) <= hi; p++) {
+            int dir = HEADER + p * DIRECTORY;
+            if(mMap.getFloat(dir + 8) <= above) {
+                continue;
+            }
+            if(mMap.getFloat(dir + 12) >= east || mMap.getFloat(dir + 20) <= west ||
+                    mMap.getFloat(dir + 16) >= north || mMap.getFloat(dir + 24) <= south) {
+                continue;
+            }
+            int end = Math.min(mCount, (p + 1) * PAGE);
+            for(int r = p * PAGE; r < end; r++) {
+                int pos = mRecords + r * RECORD;
+                float h = mMap.getFloat(pos + 8);
+                if(h <= above) {
+                    continue;
+                }
+                float x = mMap.getFloat(pos);
+                float y = mMap.getFloat(pos + 4);
+                if(x > west && x < east && y > south && y < north) {
+                    list.add(new Obstacle(x, y, (int)h));
+                }
+            }
+        }
+        return list;
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public int getCount() {
+        return mCount;
+    }
+}
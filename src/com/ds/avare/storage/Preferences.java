@@ -318,6 +318,37 @@ public class Preferences {
         return(false);
     }
 
+    /**
+     * 
+     * @return ADS-B receivers, each as bt:name, udp:port, tcp:host:port or file:path,
+     * several are separated by commas
+     */
+    public String[] getAdsbSources() {
+        String sources[] = mPref.getString(mContext.getString(R.string.AdsbSource), "bt:XGPS170").split(",");
+        int count = 0;
+        for(int i = 0; i < sources.length; i++) {
+            sources[i] = sources[i].trim();
+            if(sources[i].length() > 0) {
+                sources[count++] = sources[i];
+            }
+        }
+        String ret[] = new String[count];
+        System.arraycopy(sources, 0, ret, 0, count);
+        return ret;
+    }
+
+    /**
+     * 
+     * @param receiver index in getAdsbSources()
+     * @return file to record ADS-B receiver data to, null to not record
+     */
+    public String getAdsbCaptureFile(int receiver) {
+        if(!mPref.getBoolean(mContext.getString(R.string.AdsbCapture), false)) {
+            return null;
+        }
+        return mapsFolder() + "/adsb" + System.currentTimeMillis() + "-" + receiver + ".cap";
+    }
+
     /**
      * 
      * @return
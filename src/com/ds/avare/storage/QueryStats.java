@@ -0,0 +1,311 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Time taken by database queries, per SQL text and method of DataBaseHelper that 
+ * made it, named at the call. Since values are bound, and not 
+ * put in SQL text, all calls of a query add up in one place.
+ * Prepare is time to compile statement, which is near zero when statement is found 
+ * in connection's statement cache. Execute is time to run it and fill first window.
+ * Queries are also added up per method, with a histogram of latency. All counters are made when a query is first seen, so recording does not allocate.
+ *
+ */
+public class QueryStats {
+
+    private static QueryStats mInstance = null;
+    
+    /*
+     * Histogram buckets: 4 per power of 2 of microseconds, so each is within 25%, up to about 2 minutes
+     */
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 26 * SUB_BUCKETS;
+    
+    /**
+     * Numbers for one method, over all its queries
+     */
+    public static class Method {
+        private String mName;
+        private int mCount;
+        private long mRows;
+        private long mTotalNs;
+        private long mMaxNs;
+        private int mBuckets[];
+        
+        /*
+         * Queries of this method, by SQL text
+         */
+        private HashMap<String, Entry> mEntries;
+        
+        private Method(String name) {
+            mName = name;
+            mBuckets = new int[BUCKETS];
+            mEntries = new HashMap<String, Entry>();
+        }
+        
+        public String getName() {
+            return mName;
+        }
+        
+        public int getCount() {
+            return mCount;
+        }
+        
+        public long getRows() {
+            return mRows;
+        }
+        
+        public long getTotalNs() {
+            return mTotalNs;
+        }
+        
+        public long getMaxNs() {
+            return mMaxNs;
+        }
+        
+        /**
+         * 
+         * @param fraction like 0.99
+         * @return upper end of bucket holding that fraction of queries, in ns
+         */
+        public long getPercentileNs(double fraction) {
+            long want = (long)Math.ceil(mCount * fraction);
+            long seen = 0;
+            for(int b = 0; b < BUCKETS; b++) {
+                seen += mBuckets[b];
+                if(seen >= want && seen > 0) {
+                    return Math.min(getBucketEnd(b) * 1000, mMaxNs);
+                }
+            }
+            return mMaxNs;
+        }
+    }
+    
+    /**
+     * Numbers for one SQL text from one method
+     */
+    public static class Entry {
+        private String mSql;
+        private String mMethod;
+        private int mCount;
+        private long mPrepareNs;
+        private long mExecuteNs;
+        private long mMaxNs;
+        
+        public String getSql() {
+            return mSql;
+        }
+        
+        public String getMethod() {
+            return mMethod;
+        }
+        
+        public int getCount() {
+            return mCount;
+        }
+        
+        public long getPrepareNs() {
+            return mPrepareNs;
+        }
+        
+        public long getExecuteNs() {
+            return mExecuteNs;
+        }
+        
+        public long getMaxNs() {
+            return mMaxNs;
+        }
+    }
+    
+    private HashMap<String, Method> mMethods;
+    
+    /**
+     * 
+     */
+    private QueryStats() {
+        mMethods = new HashMap<String, Method>();
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public static synchronized QueryStats getInstance() {
+        if(null == mInstance) {
+            mInstance = new QueryStats();
+        }
+        return mInstance;
+    }
+    
+    /**
+     * 
+     * @param us
+     * @return
+     */
+    private static int getBucket(long us) {
+        if(us < SUB_BUCKETS) {
+            return (int)Math.max(us, 0);
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(us);
+        int sub = (int)(us >> (exp - 2)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKETS - 1, (exp - 1) * SUB_BUCKETS + sub);
+    }
+    
+    /**
+     * 
+     * @param bucket
+     * @return largest microseconds that go in bucket
+     */
+    private static long getBucketEnd(int bucket) {
+        if(bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exp = bucket / SUB_BUCKETS + 1;
+        int sub = bucket % SUB_BUCKETS;
+        return ((long)(SUB_BUCKETS + sub + 1) << (exp - 2)) - 1;
+    }
+    
+    /**
+     * Same SQL from different methods is kept apart.
+     * @param method that made the query
+     * @param sql
+     * @param prepareNs
+     * @param executeNs
+     * @param rows
+     */
+    public synchronized void record(String method, String sql, long prepareNs, long executeNs, int rows) {
+        Method m = mMethods.get(method);
+        if(null == m) {
+            m = new Method(method);
+            mMethods.put(method, m);
+        }
+        Entry e = m.mEntries.get(sql);
+        if(null == e) {
+            e = new Entry();
+            e.mSql = sql;
+            e.mMethod = method;
+            m.mEntries.put(sql, e);
+        }
+        long ns = prepareNs + executeNs;
+        e.mCount++;
+        e.mPrepareNs += prepareNs;
+        e.mExecuteNs += executeNs;
+        e.mMaxNs = Math.max(e.mMaxNs, ns);
+        
+        m.mCount++;
+        m.mRows += rows;
+        m.mTotalNs += ns;
+        m.mMaxNs = Math.max(m.mMaxNs, ns);
+        m.mBuckets[getBucket(ns / 1000)]++;
+    }
+    
+    /**
+     * 
+     * @return copies, most total time first
+     */
+    public synchronized ArrayList<Entry> getEntries() {
+        ArrayList<Entry> list = new ArrayList<Entry>();
+        for(Method m : mMethods.values()) {
+            for(Entry e : m.mEntries.values()) {
+                Entry c = new Entry();
+                c.mSql = e.mSql;
+                c.mMethod = e.mMethod;
+                c.mCount = e.mCount;
+                c.mPrepareNs = e.mPrepareNs;
+                c.mExecuteNs = e.mExecuteNs;
+                c.mMaxNs = e.mMaxNs;
+                list.add(c);
+            }
+        }
+        Collections.sort(list, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                long ta = a.mPrepareNs + a.mExecuteNs;
+                long tb = b.mPrepareNs + b.mExecuteNs;
+                return ta > tb ? -1 : (ta < tb ? 1 : 0);
+            }
+        });
+        return list;
+    }
+    
+    /**
+     * 
+     * @return copies, most total time first
+     */
+    public synchronized ArrayList<Method> getMethods() {
+        ArrayList<Method> list = new ArrayList<Method>();
+        for(Method m : mMethods.values()) {
+            Method c = new Method(m.mName);
+            c.mCount = m.mCount;
+            c.mRows = m.mRows;
+            c.mTotalNs = m.mTotalNs;
+            c.mMaxNs = m.mMaxNs;
+            System.arraycopy(m.mBuckets, 0, c.mBuckets, 0, BUCKETS);
+            list.add(c);
+        }
+        Collections.sort(list, new Comparator<Method>() {
+            @Override
+            public int compare(Method a, Method b) {
+                return a.mTotalNs > b.mTotalNs ? -1 : (a.mTotalNs < b.mTotalNs ? 1 : 0);
+            }
+        });
+        return list;
+    }
+    
+    /**
+     * 
+     */
+    public synchronized void reset() {
+        mMethods.clear();
+    }
+    
+    /**
+     * 
+     * @return one line per method, then one line per query, times in ms
+     */
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%6s %8s %8s %8s %8s %8s %8s  %s\n", 
+                "calls", "rows", "avg", "p50", "p90", "p99", "max", "method"));
+        for(Method m : getMethods()) {
+            sb.append(String.format(Locale.US, "%6d %8d %8.3f %8.3f %8.3f %8.3f %8.3f  %s\n", 
+                    m.mCount,
+                    m.mRows,
+                    m.mTotalNs / 1e6 / m.mCount,
+                    m.getPercentileNs(0.5) / 1e6,
+                    m.getPercentileNs(0.9) / 1e6,
+                    m.getPercentileNs(0.99) / 1e6,
+                    m.mMaxNs / 1e6,
+                    m.mName));
+        }
+        sb.append("\n");
+        for(Entry e : getEntries()) {
+            sb.append(String.format(Locale.US, "%6d  prep %7.3f  exec %7.3f  max %8.3f  %s: %s\n", 
+                    e.mCount, 
+                    e.mPrepareNs / 1e6 / e.mCount, 
+                    e.mExecuteNs / 1e6 / e.mCount,
+                    e.mMaxNs / 1e6,
+                    e.mMethod,
+                    e.mSql));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,496 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.storage;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Locale;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * In memory prefix index of facility IDs, and words of facility names, for search as you type.
+ * All strings are packed in one byte array, and entries are kept in two orders, 
+ * by ID and by name word, so a prefix is two binary searches. When a prefix matches little, 
+ * IDs one edit away are also given, for typos.
+ * Size is bounded; a database too large for it is not indexed.
+ *
+ */
+public class SearchIndex {
+
+    /*
+     * Kinds, in order results are given
+     */
+    public static final int NAVAID = 0;
+    public static final int BASE = 1;
+    public static final int FIX = 2;
+    private static final int KINDS = 3;
+    
+    /*
+     * Most bytes of strings kept
+     */
+    public static final int BUDGET = 4 * 1024 * 1024;
+    
+    /*
+     * Typos looked for if fewer than this matched, and only this many given
+     */
+    private static final int TYPO_BELOW = 5;
+    private static final int TYPO_MAX = 20;
+    private static final int TYPO_MIN_LENGTH = 3;
+    
+    private byte mBlob[];
+    private int mBlobLen;
+    
+    /*
+     * Per entry: start of id, name, type strings in blob; kind
+     */
+    private int mCount;
+    private int mId[];
+    private int mName[];
+    private int mType[];
+    private byte mKind[];
+    
+    /*
+     * Entries sorted by ID, and blob position of their IDs in same order
+     */
+    private int mById[];
+    private int mByIdPos[];
+    
+    /*
+     * Name words sorted: blob position of word, and its entry
+     */
+    private int mWords;
+    private int mWordPos[];
+    private int mWordEntry[];
+    
+    /*
+     * Entries given already in a search
+     */
+    private int mSeen[];
+    private int mGeneration;
+    private int mFound[];
+    private int mFoundCount;
+
+    private long mStamp;
+    
+    /**
+     * 
+     * @param stamp of database this is made from
+     */
+    public SearchIndex(long stamp) {
+        mStamp = stamp;
+        mBlob = new byte[65536];
+        mBlobLen = 0;
+        mCount = 0;
+        mId = new int[1024];
+        mName = new int[1024];
+        mType = new int[1024];
+        mKind = new byte[1024];
+        mWords = 0;
+        mWordPos = new int[1024];
+        mWordEntry = new int[1024];
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public long getStamp() {
+        return mStamp;
+    }
+    
+    /**
+     * Strings end with a 0
+     * @param s
+     * @return position in blob, -1 if over budget
+     */
+    private int put(String s) {
+        byte b[];
+        try {
+            b = (null == s ? "" : s.trim()).getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            b = new byte[0];
+        }
+        if(mBlobLen + b.length + 1 > BUDGET) {
+            return -1;
+        }
+        if(mBlobLen + b.length + 1 > mBlob.length) {
+            byte blob[] = new byte[Math.min(BUDGET, Math.max(mBlob.length * 2, mBlobLen + b.length + 1))];
+            System.arraycopy(mBlob, 0, blob, 0, mBlobLen);
+            mBlob = blob;
+        }
+        int pos = mBlobLen;
+        System.arraycopy(b, 0, mBlob, pos, b.length);
+        mBlobLen += b.length;
+        mBlob[mBlobLen++] = 0;
+        return pos;
+    }
+    
+    /**
+     * 
+     * @param a
+     * @param n
+     * @return
+     */
+    private static int[] grow(int a[], int n) {
+        if(n < a.length) {
+            return a;
+        }
+        int b[] = new int[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    /**
+     * 
+     * @param kind NAVAID, BASE, FIX
+     * @param id
+     * @param name
+     * @param type as in database, like AIRPORT
+     * @param words index words of name
+     * @return false if over budget, index then should not be used
+     */
+    public boolean add(int kind, String id, String name, String type, boolean words) {
+        int pid = put(id);
+        int pname = put(name);
+        int ptype = put(type);
+        if(pid < 0 || pname < 0 || ptype < 0) {
+            return false;
+        }
+        
+        mId = grow(mId, mCount);
+        mName = grow(mName, mCount);
+        mType = grow(mType, mCount);
+        if(mCount >= mKind.length) {
+            byte k[] = new byte[mKind.length * 2];
+            System.arraycopy(mKind, 0, k, 0, mKind.length);
+            mKind = k;
+        }
+        mId[mCount] = pid;
+        mName[mCount] = pname;
+        mType[mCount] = ptype;
+        mKind[mCount] = (byte)kind;
+        
+        /*
+         * Each word of name
+         */
+        if(words) {
+            boolean start = true;
+            for(int i = pname; mBlob[i] != 0; i++) {
+                boolean letter = mBlob[i] != ' ' && mBlob[i] != '-' && mBlob[i] != '/' && mBlob[i] != '(';
+                if(start && letter) {
+                    mWordPos = grow(mWordPos, mWords);
+                    mWordEntry = grow(mWordEntry, mWords);
+                    mWordPos[mWords] = i;
+                    mWordEntry[mWords] = mCount;
+                    mWords++;
+                }
+                start = !letter;
+            }
+        }
+        mCount++;
+        return true;
+    }
+    
+    /**
+     * Upper case of ASCII letters, for compares that ignore case, like SQL like
+     * @param pos
+     * @return
+     */
+    private int upper(int pos) {
+        int c = mBlob[pos] & 0xFF;
+        return (c >= 'a' && c <= 'z') ? c - ('a' - 'A') : c;
+    }
+
+    /**
+     * Compare 0 ended strings in blob, ignoring case
+     * @param a
+     * @param b
+     * @return
+     */
+    private int compare(int a, int b) {
+        while(true) {
+            int ca = upper(a);
+            int cb = upper(b);
+            if(ca != cb || 0 == ca) {
+                return ca - cb;
+            }
+            a++;
+            b++;
+        }
+    }
+    
+    /**
+     * Merge sort of keys, with values moved along
+     * @param key blob positions
+     * @param val
+     * @param n
+     */
+    private void sort(int key[], int val[], int n) {
+        int k2[] = new int[n];
+        int v2[] = new int[n];
+        for(int width = 1; width < n; width *= 2) {
+            for(int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + 2 * width, n);
+                int i = lo, j = mid, o = lo;
+                while(i < mid && j < hi) {
+                    if(compare(key[j], key[i]) < 0) {
+                        k2[o] = key[j];
+                        v2[o++] = val[j++];
+                    }
+                    else {
+                        k2[o] = key[i];
+                        v2[o++] = val[i++];
+                    }
+                }
+                while(i < mid) {
+                    k2[o] = key[i];
+                    v2[o++] = val[i++];
+                }
+                while(j < hi) {
+                    k2[o] = key[j];
+                    v2[o++] = val[j++];
+                }
+            }
+            System.arraycopy(k2, 0, key, 0, n);
+            System.arraycopy(v2, 0, val, 0, n);
+        }
+    }
+    
+    /**
+     * Call after all are added
+     */
+    public void finish() {
+        int key[] = new int[mCount];
+        mById = new int[mCount];
+        for(int e = 0; e < mCount; e++) {
+            key[e] = mId[e];
+            mById[e] = e;
+        }
+        sort(key, mById, mCount);
+        mByIdPos = key;
+        sort(mWordPos, mWordEntry, mWords);
+        mSeen = new int[mCount];
+        mFound = new int[64];
+        mGeneration = 0;
+        
+        /*
+         * Give back unused room
+         */
+        byte blob[] = new byte[mBlobLen];
+        System.arraycopy(mBlob, 0, blob, 0, mBlobLen);
+        mBlob = blob;
+    }
+    
+    /**
+     * 
+     * @param pos of string in blob
+     * @param q upper case
+     * @return <0 if string before all strings with prefix q, 0 if it has prefix q, >0 if after
+     */
+    private int comparePrefix(int pos, byte q[]) {
+        for(int i = 0; i < q.length; i++) {
+            int c = upper(pos + i);
+            int d = q[i] & 0xFF;
+            if(c != d) {
+                return (0 == c) ? -1 : c - d;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * 
+     * @param keys blob positions, sorted
+     * @param n
+     * @param q
+     * @param first true for first match, false for one after last
+     * @return
+     */
+    private int bound(int keys[], int n, byte q[], boolean first) {
+        int lo = 0, hi = n;
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = comparePrefix(keys[mid], q);
+            if(c < 0 || (!first && c == 0)) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * 
+     * @param e
+     * @param airports only type AIRPORT for BASE
+     */
+    private void found(int e, boolean airports) {
+        if(mSeen[e] == mGeneration) {
+            return;
+        }
+        mSeen[e] = mGeneration;
+        if(airports && mKind[e] == BASE && !"AIRPORT".equals(getString(mType[e]))) {
+            return;
+        }
+        if(mFoundCount >= mFound.length) {
+            int f[] = new int[mFound.length * 2];
+            System.arraycopy(mFound, 0, f, 0, mFoundCount);
+            mFound = f;
+        }
+        mFound[mFoundCount++] = e;
+    }
+    
+    /**
+     * One edit (change, insert, delete) or less between id at pos and q
+     * @param pos
+     * @param q
+     * @return
+     */
+    private boolean isNear(int pos, byte q[]) {
+        int len = 0;
+        while(mBlob[pos + len] != 0) {
+            len++;
+        }
+        if(Math.abs(len - q.length) > 1) {
+            return false;
+        }
+        int i = 0, j = 0, edits = 0;
+        while(i < len && j < q.length) {
+            if(upper(pos + i) == (q[j] & 0xFF)) {
+                i++;
+                j++;
+                continue;
+            }
+            if(++edits > 1) {
+                return false;
+            }
+            if(len > q.length) {
+                i++;
+            }
+            else if(len < q.length) {
+                j++;
+            }
+            else {
+                i++;
+                j++;
+            }
+        }
+        return edits + (len - i) + (q.length - j) <= 1;
+    }
+
+    /**
+     * 
+     * @param query
+     * @param airports if true, BASE entries that are not airports are left out
+     * @return entries, IDs starting with query first by kind then ID, 
+     * then names with a word starting with query, then IDs one typo away
+     */
+    public synchronized int[] search(String query, boolean airports) {
+        byte q[];
+        try {
+            q = query.trim().toUpperCase(Locale.US).getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            return new int[0];
+        }
+        mGeneration++;
+        mFoundCount = 0;
+        
+        /*
+         * IDs, grouped by kind, each in ID order
+         */
+        int lo = bound(mByIdPos, mCount, q, true);
+        int hi = bound(mByIdPos, mCount, q, false);
+        for(int kind = 0; kind < KINDS; kind++) {
+            for(int i = lo; i < hi; i++) {
+                int e = mById[i];
+                if(mKind[e] == kind) {
+                    found(e, airports);
+                }
+            }
+        }
+        
+        /*
+         * Names
+         */
+        lo = bound(mWordPos, mWords, q, true);
+        hi = bound(mWordPos, mWords, q, false);
+        for(int i = lo; i < hi; i++) {
+            found(mWordEntry[i], airports);
+        }
+        
+        /*
+         * Typos
+         */
+        if(mFoundCount < TYPO_BELOW && q.length >= TYPO_MIN_LENGTH) {
+            int typos = 0;
+            for(int i = 0; i < mCount && typos < TYPO_MAX; i++) {
+                int e = mById[i];
+                if(mSeen[e] != mGeneration && isNear(mId[e], q)) {
+                    found(e, airports);
+                    typos++;
+                }
+            }
+        }
+        
+        int ret[] = new int[mFoundCount];
+        System.arraycopy(mFound, 0, ret, 0, mFoundCount);
+        return ret;
+    }
+    
+    /**
+     * 
+     * @param pos
+     * @return
+     */
+    private String getString(int pos) {
+        int end = pos;
+        while(mBlob[end] != 0) {
+            end++;
+        }
+        try {
+            return new String(mBlob, pos, end - pos, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            return "";
+        }
+    }
+    
+    public synchronized String getId(int e) {
+        return getString(mId[e]);
+    }
+
+    public synchronized String getName(int e) {
+        return getString(mName[e]);
+    }
+
+    public synchronized String getType(int e) {
+        return getString(mType[e]);
+    }
+
+    public synchronized int getKind(int e) {
+        return mKind[e];
+    }
+    
+    /**
+     * 
+     * @return bytes used, about
+     */
+    public int getBytes() {
+        return mBlob.length + mCount * 13 + mCount * 4 * 3 + mWords * 8;
+    }
+}
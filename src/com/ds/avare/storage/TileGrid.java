@@ -0,0 +1,262 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.storage;
+
+import com.ds.avare.utils.Helper;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Tiles of one chart at one zoom level form a row/col grid. This describes the grid: 
+ * name of one tile to make names of others from, row/col range, area covered, and 
+ * a least squares fit of row and col on lon/lat of tile centers.
+ * Charts are not in lon/lat projection, so the fit is close but not exact, and the 
+ * tile it gives is checked, and walked to neighbors if needed.
+ *
+ */
+public class TileGrid {
+
+    private String mName;
+    private int mRow;
+    private int mCol;
+    
+    /*
+     * Fit is relative to center of first tile, for precision
+     */
+    private double mLon0;
+    private double mLat0;
+    
+    private int mRowMin;
+    private int mRowMax;
+    private int mColMin;
+    private int mColMax;
+    
+    private double mWest;
+    private double mEast;
+    private double mSouth;
+    private double mNorth;
+    
+    /*
+     * col = mC[0] + mC[1] * lon + mC[2] * lat, same for row in mR
+     */
+    private double mC[];
+    private double mR[];
+    
+    /*
+     * Sums for fit
+     */
+    private double mN;
+    private double mSx;
+    private double mSy;
+    private double mSxx;
+    private double mSxy;
+    private double mSyy;
+    private double mSc;
+    private double mSxc;
+    private double mSyc;
+    private double mSr;
+    private double mSxr;
+    private double mSyr;
+    
+    /**
+     * 
+     * @param name a tile in grid
+     * @param row
+     * @param col
+     * @param lonc
+     * @param latc
+     */
+    private TileGrid(String name, int row, int col, double lonc, double latc) {
+        mName = name;
+        mRow = row;
+        mCol = col;
+        mLon0 = lonc;
+        mLat0 = latc;
+        mRowMin = mRowMax = row;
+        mColMin = mColMax = col;
+        mWest = mSouth = Double.MAX_VALUE;
+        mEast = mNorth = -Double.MAX_VALUE;
+        mC = new double[3];
+        mR = new double[3];
+    }
+    
+    /**
+     * Tile names are like 0/row/master_row_col.ext with leading zeros in row, col.
+     * See Helper.incTileName()
+     * @param name
+     * @param rc gets row, col
+     * @return key common to all tiles in grid, null if name is not a tile name
+     */
+    public static String parse(String name, int rc[]) {
+        try {
+            String tokens[] = name.split("[/_.]");
+            rc[0] = Integer.parseInt(tokens[6]);
+            rc[1] = Integer.parseInt(tokens[7]);
+            return tokens[0] + "/" + tokens[1] + "/" + tokens[2] + "/" + tokens[3] + "/" + tokens[5] + 
+                    "/" + tokens[6].length() + "/" + tokens[7].length() + "/" + tokens[8];
+        }
+        catch (Exception e) {
+        }
+        return null;
+    }
+    
+    /**
+     * 
+     * @param name
+     * @param row
+     * @param col
+     * @param lonc center of tile
+     * @param latc
+     * @return
+     */
+    public static TileGrid make(String name, int row, int col, double lonc, double latc) {
+        return new TileGrid(name, row, col, lonc, latc);
+    }
+    
+    /**
+     * Add a tile of this grid
+     * @param row
+     * @param col
+     * @param west
+     * @param east
+     * @param south
+     * @param north
+     * @param lonc
+     * @param latc
+     */
+    public void add(int row, int col, double west, double east, double south, double north, double lonc, double latc) {
+        mRowMin = Math.min(mRowMin, row);
+        mRowMax = Math.max(mRowMax, row);
+        mColMin = Math.min(mColMin, col);
+        mColMax = Math.max(mColMax, col);
+        mWest = Math.min(mWest, west);
+        mEast = Math.max(mEast, east);
+        mSouth = Math.min(mSouth, south);
+        mNorth = Math.max(mNorth, north);
+        
+        double x = lonc - mLon0;
+        double y = latc - mLat0;
+        mN++;
+        mSx += x;
+        mSy += y;
+        mSxx += x * x;
+        mSxy += x * y;
+        mSyy += y * y;
+        mSc += col;
+        mSxc += x * col;
+        mSyc += y * col;
+        mSr += row;
+        mSxr += x * row;
+        mSyr += y * row;
+    }
+    
+    /**
+     * Solve 3x3 normal equations by Cramer's rule
+     * @param b0
+     * @param b1
+     * @param b2
+     * @param out
+     * @return
+     */
+    private boolean solve(double b0, double b1, double b2, double out[]) {
+        double a00 = mN,  a01 = mSx,  a02 = mSy;
+        double a10 = mSx, a11 = mSxx, a12 = mSxy;
+        double a20 = mSy, a21 = mSxy, a22 = mSyy;
+        double det = a00 * (a11 * a22 - a12 * a21) - a01 * (a10 * a22 - a12 * a20) + a02 * (a10 * a21 - a11 * a20);
+        if(Math.abs(det) < 1e-12) {
+            return false;
+        }
+        out[0] = (b0 * (a11 * a22 - a12 * a21) - a01 * (b1 * a22 - a12 * b2) + a02 * (b1 * a21 - a11 * b2)) / det;
+        out[1] = (a00 * (b1 * a22 - a12 * b2) - b0 * (a10 * a22 - a12 * a20) + a02 * (a10 * b2 - b1 * a20)) / det;
+        out[2] = (a00 * (a11 * b2 - b1 * a21) - a01 * (a10 * b2 - b1 * a20) + b0 * (a10 * a21 - a11 * a20)) / det;
+        return true;
+    }
+    
+    /**
+     * Call after all tiles are added
+     * @return false if grid is too small to fit, like a single row of tiles
+     */
+    public boolean fit() {
+        return solve(mSc, mSxc, mSyc, mC) && solve(mSr, mSxr, mSyr, mR);
+    }
+    
+    /**
+     * 
+     * @param lon
+     * @param lat
+     * @return
+     */
+    public boolean contains(double lon, double lat) {
+        return lon >= mWest && lon <= mEast && lat >= mSouth && lat <= mNorth;
+    }
+    
+    /**
+     * 
+     * @param dlon
+     * @param dlat
+     * @return change in col for a change in lon/lat
+     */
+    public double getColDelta(double dlon, double dlat) {
+        return mC[1] * dlon + mC[2] * dlat;
+    }
+    
+    /**
+     * 
+     * @param dlon
+     * @param dlat
+     * @return change in row for a change in lon/lat
+     */
+    public double getRowDelta(double dlon, double dlat) {
+        return mR[1] * dlon + mR[2] * dlat;
+    }
+    
+    /**
+     * 
+     * @param lon
+     * @param lat
+     * @return
+     */
+    public int getCol(double lon, double lat) {
+        return (int)Math.round(mC[0] + mC[1] * (lon - mLon0) + mC[2] * (lat - mLat0));
+    }
+
+    /**
+     * 
+     * @param lon
+     * @param lat
+     * @return
+     */
+    public int getRow(double lon, double lat) {
+        return (int)Math.round(mR[0] + mR[1] * (lon - mLon0) + mR[2] * (lat - mLat0));
+    }
+    
+    /**
+     * 
+     * @param row
+     * @param col
+     * @return
+     */
+    public boolean has(int row, int col) {
+        return row >= mRowMin && row <= mRowMax && col >= mColMin && col <= mColMax;
+    }
+    
+    /**
+     * 
+     * @param row
+     * @param col
+     * @return name of tile at row, col
+     */
+    public String getName(int row, int col) {
+        return Helper.incTileName(mName, row - mRow, col - mCol);
+    }
+}
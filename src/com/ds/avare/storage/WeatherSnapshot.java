@@ -0,0 +1,477 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+import com.ds.avare.weather.AirSigMet;
+import com.ds.avare.weather.Airep;
+import com.ds.avare.weather.Metar;
+import com.ds.avare.weather.Taf;
+import com.ds.avare.weather.WindsAloft;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * All of downloaded weather database in memory, one array per column.
+ * METARs and TAFs are found by station ID through a hash, winds aloft and PIREPs through 
+ * a grid of locations. Made once per download and not changed after finish(), 
+ * so it can be read from any thread while a new one is made.
+ * Lookups give new objects every time, as users change them.
+ *
+ */
+public class WeatherSnapshot {
+
+    /*
+     * Grid cell size in degrees
+     */
+    private static final float CELL = 5f;
+    
+    private static final int LEVELS = 9;
+    
+    /*
+     * Rows while loading, dropped on finish
+     */
+    private ArrayList<String[]> mMetarRows;
+    private ArrayList<String[]> mTafRows;
+    private ArrayList<String[]> mWindsRows;
+    private ArrayList<float[]> mWindsLocations;
+    private ArrayList<String[]> mAirepRows;
+    private ArrayList<float[]> mAirepLocations;
+    private ArrayList<String[]> mAirSigRows;
+
+    /*
+     * METAR: text, time, station, category
+     */
+    private String mMetarText[];
+    private String mMetarTime[];
+    private String mMetarStation[];
+    private String mMetarCategory[];
+    private HashMap<String, Integer> mMetars;
+    
+    /*
+     * TAF: text, time
+     */
+    private String mTafText[];
+    private String mTafTime[];
+    private HashMap<String, Integer> mTafs;
+    
+    /*
+     * Winds aloft: station, time, location, winds at each level
+     */
+    private String mWindsStation[];
+    private String mWindsTime[];
+    private float mWindsLon[];
+    private float mWindsLat[];
+    private String mWindsLevels[][];
+    private Grid mWindsGrid;
+    
+    /*
+     * AIREP/PIREP: text, time, location, type
+     */
+    private String mAirepText[];
+    private String mAirepTime[];
+    private float mAirepLon[];
+    private float mAirepLat[];
+    private String mAirepType[];
+    private Grid mAirepGrid;
+    
+    /*
+     * AIRMET/SIGMET, all columns of each
+     */
+    private String mAirSig[][];
+    
+    private long mStamp;
+    
+    /**
+     * Points sorted by grid cell, with start of each cell
+     */
+    private static class Grid {
+        float mWest;
+        float mSouth;
+        int mCols;
+        int mRows;
+        int mStart[];
+        int mOrder[];
+        
+        Grid(float lon[], float lat[]) {
+            int count = lon.length;
+            float west = Float.MAX_VALUE;
+            float east = -Float.MAX_VALUE;
+            float south = Float.MAX_VALUE;
+            float north = -Float.MAX_VALUE;
+            for(int i = 0; i < count; i++) {
+                west = Math.min(west, lon[i]);
+                east = Math.max(east, lon[i]);
+                south = Math.min(south, lat[i]);
+                north = Math.max(north, lat[i]);
+            }
+            if(0 == count) {
+                west = east = south = north = 0;
+            }
+            mWest = west;
+            mSouth = south;
+            mCols = column(east) + 1;
+            mRows = row(north) + 1;
+            
+            /*
+             * Counting sort on cell
+             */
+            mStart = new int[mCols * mRows + 1];
+            int cell[] = new int[count];
+            for(int i = 0; i < count; i++) {
+                cell[i] = row(lat[i]) * mCols + column(lon[i]);
+                mStart[cell[i] + 1]++;
+            }
+            for(int c = 0; c < mCols * mRows; c++) {
+                mStart[c + 1] += mStart[c];
+            }
+            mOrder = new int[count];
+            int fill[] = new int[mCols * mRows];
+            for(int i = 0; i < count; i++) {
+                mOrder[mStart[cell[i]] + fill[cell[i]]++] = i;
+            }
+        }
+        
+        int column(double lon) {
+            return (int)Math.floor((lon - mWest) / CELL);
+        }
+
+        int row(double lat) {
+            return (int)Math.floor((lat - mSouth) / CELL);
+        }
+    }
+    
+    /**
+     * 
+     * @param stamp of database this is made from
+     */
+    public WeatherSnapshot(long stamp) {
+        mStamp = stamp;
+        mMetarRows = new ArrayList<String[]>();
+        mTafRows = new ArrayList<String[]>();
+        mWindsRows = new ArrayList<String[]>();
+        mWindsLocations = new ArrayList<float[]>();
+        mAirepRows = new ArrayList<String[]>();
+        mAirepLocations = new ArrayList<float[]>();
+        mAirSigRows = new ArrayList<String[]>();
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public long getStamp() {
+        return mStamp;
+    }
+    
+    void addMetar(String text, String time, String station, String category) {
+        mMetarRows.add(new String[] {text, time, station, category});
+    }
+
+    void addTaf(String text, String time, String station) {
+        mTafRows.add(new String[] {text, time, station});
+    }
+
+    /**
+     * 
+     * @param station
+     * @param time
+     * @param lon
+     * @param lat
+     * @param levels winds at 3k, 6k, 9k, 12k, 18k, 24k, 30k, 34k, 39k
+     */
+    void addWinds(String station, String time, float lon, float lat, String levels[]) {
+        String row[] = new String[2 + LEVELS];
+        row[0] = station;
+        row[1] = time;
+        System.arraycopy(levels, 0, row, 2, LEVELS);
+        mWindsRows.add(row);
+        mWindsLocations.add(new float[] {lon, lat});
+    }
+
+    void addAirep(String text, String time, float lon, float lat, String type) {
+        mAirepRows.add(new String[] {text, time, type});
+        mAirepLocations.add(new float[] {lon, lat});
+    }
+
+    /**
+     * 
+     * @param columns text, from, to, points, min ft, max ft, movement deg, movement kt, 
+     * hazard, severity, type
+     */
+    void addAirSig(String columns[]) {
+        mAirSigRows.add(columns);
+    }
+
+    /**
+     * Call after all are added
+     */
+    void finish() {
+        int n = mMetarRows.size();
+        mMetarText = new String[n];
+        mMetarTime = new String[n];
+        mMetarStation = new String[n];
+        mMetarCategory = new String[n];
+        mMetars = new HashMap<String, Integer>(n * 2 + 1);
+        for(int i = 0; i < n; i++) {
+            String row[] = mMetarRows.get(i);
+            mMetarText[i] = row[0];
+            mMetarTime[i] = row[1];
+            mMetarStation[i] = row[2];
+            mMetarCategory[i] = row[3];
+            if(!mMetars.containsKey(row[2])) {
+                mMetars.put(row[2], i);
+            }
+        }
+        
+        n = mTafRows.size();
+        mTafText = new String[n];
+        mTafTime = new String[n];
+        mTafs = new HashMap<String, Integer>(n * 2 + 1);
+        for(int i = 0; i < n; i++) {
+            String row[] = mTafRows.get(i);
+            mTafText[i] = row[0];
+            mTafTime[i] = row[1];
+            if(!mTafs.containsKey(row[2])) {
+                mTafs.put(row[2], i);
+            }
+        }
+        
+        n = mWindsRows.size();
+        mWindsStation = new String[n];
+        mWindsTime = new String[n];
+        mWindsLon = new float[n];
+        mWindsLat = new float[n];
+        mWindsLevels = new String[n][];
+        for(int i = 0; i < n; i++) {
+            String row[] = mWindsRows.get(i);
+            mWindsStation[i] = row[0];
+            mWindsTime[i] = row[1];
+            mWindsLevels[i] = new String[LEVELS];
+            System.arraycopy(row, 2, mWindsLevels[i], 0, LEVELS);
+            mWindsLon[i] = mWindsLocations.get(i)[0];
+            mWindsLat[i] = mWindsLocations.get(i)[1];
+        }
+        mWindsGrid = new Grid(mWindsLon, mWindsLat);
+        
+        n = mAirepRows.size();
+        mAirepText = new String[n];
+        mAirepTime = new String[n];
+        mAirepType = new String[n];
+        mAirepLon = new float[n];
+        mAirepLat = new float[n];
+        for(int i = 0; i < n; i++) {
+            String row[] = mAirepRows.get(i);
+            mAirepText[i] = row[0];
+            mAirepTime[i] = row[1];
+            mAirepType[i] = row[2];
+            mAirepLon[i] = mAirepLocations.get(i)[0];
+            mAirepLat[i] = mAirepLocations.get(i)[1];
+        }
+        mAirepGrid = new Grid(mAirepLon, mAirepLat);
+        
+        mAirSig = mAirSigRows.toArray(new String[mAirSigRows.size()][]);
+        
+        mMetarRows = null;
+        mTafRows = null;
+        mWindsRows = null;
+        mWindsLocations = null;
+        mAirepRows = null;
+        mAirepLocations = null;
+        mAirSigRows = null;
+    }
+    
+    /**
+     * 
+     * @param station ID as in database, like KBOS
+     * @return null if none
+     */
+    public Metar getMetar(String station) {
+        Integer i = mMetars.get(station);
+        if(null == i) {
+            return null;
+        }
+        Metar metar = new Metar();
+        metar.rawText = mMetarText[i];
+        metar.time = mMetarTime[i];
+        metar.stationId = mMetarStation[i];
+        metar.flightCategory = mMetarCategory[i];
+        return metar;
+    }
+
+    /**
+     * 
+     * @param station ID as in database, like KBOS
+     * @return null if none
+     */
+    public Taf getTaf(String station) {
+        Integer i = mTafs.get(station);
+        if(null == i) {
+            return null;
+        }
+        Taf taf = new Taf();
+        taf.rawText = mTafText[i];
+        taf.time = mTafTime[i];
+        taf.stationId = mTafTime[i];
+        return taf;
+    }
+    
+    /**
+     * Winds aloft at station nearest to a point, in degrees
+     * @param lon
+     * @param lat
+     * @return null if none
+     */
+    public WindsAloft getWindsAloft(double lon, double lat) {
+        Grid g = mWindsGrid;
+        if(mWindsLon.length == 0) {
+            return null;
+        }
+        int c0 = g.column(lon);
+        int r0 = g.row(lat);
+        
+        /*
+         * Rings around cell of point till all grid is covered, or nothing 
+         * outside rings seen can be nearer
+         */
+        int rings = Math.max(Math.max(Math.abs(c0), Math.abs(g.mCols - 1 - c0)), 
+                Math.max(Math.abs(r0), Math.abs(g.mRows - 1 - r0)));
+        int best = -1;
+        double dist = Double.MAX_VALUE;
+        for(int ring = 0; ring <= rings; ring++) {
+            if(best >= 0 && ring > 0) {
+                double reach = (ring - 1) * CELL;
+                if(dist <= reach * reach) {
+                    break;
+                }
+            }
+            for(int r = r0 - ring; r <= r0 + ring; r++) {
+                if(r < 0 || r >= g.mRows) {
+                    continue;
+                }
+                boolean edge = (r == r0 - ring) || (r == r0 + ring);
+                int step = edge ? 1 : Math.max(2 * ring, 1);
+                for(int c = c0 - ring; c <= c0 + ring; c += step) {
+                    if(c < 0 || c >= g.mCols) {
+                        continue;
+                    }
+                    int cell = r * g.mCols + c;
+                    for(int o = g.mStart[cell]; o < g.mStart[cell + 1]; o++) {
+                        int i = g.mOrder[o];
+                        double d = (mWindsLon[i] - lon) * (mWindsLon[i] - lon) + 
+                                (mWindsLat[i] - lat) * (mWindsLat[i] - lat);
+                        if(d < dist || (d == dist && i < best)) {
+                            dist = d;
+                            best = i;
+                        }
+                    }
+                }
+            }
+        }
+        if(best < 0) {
+            return null;
+        }
+        
+        WindsAloft wa = new WindsAloft();
+        String levels[] = mWindsLevels[best];
+        wa.station = mWindsStation[best];
+        wa.time = mWindsTime[best];
+        wa.lon = mWindsLon[best];
+        wa.lat = mWindsLat[best];
+        wa.w3k = levels[0];
+        wa.w6k = levels[1];
+        wa.w9k = levels[2];
+        wa.w12k = levels[3];
+        wa.w18k = levels[4];
+        wa.w24k = levels[5];
+        wa.w30k = levels[6];
+        wa.w34k = levels[7];
+        wa.w39k = levels[8];
+        return wa;
+    }
+    
+    /**
+     * AIREPs/PIREPs within Airep.RADIUS degrees of a point
+     * @param lon
+     * @param lat
+     * @return
+     */
+    public LinkedList<Airep> getAireps(double lon, double lat) {
+        LinkedList<Airep> list = new LinkedList<Airep>();
+        Grid g = mAirepGrid;
+        double west = lon - Airep.RADIUS;
+        double east = lon + Airep.RADIUS;
+        double south = lat - Airep.RADIUS;
+        double north = lat + Airep.RADIUS;
+        int c0 = Math.max(0, g.column(west));
+        int c1 = Math.min(g.mCols - 1, g.column(east));
+        int r0 = Math.max(0, g.row(south));
+        int r1 = Math.min(g.mRows - 1, g.row(north));
+        for(int r = r0; r <= r1; r++) {
+            for(int c = c0; c <= c1; c++) {
+                int cell = r * g.mCols + c;
+                for(int o = g.mStart[cell]; o < g.mStart[cell + 1]; o++) {
+                    int i = g.mOrder[o];
+                    if(mAirepLat[i] > south && mAirepLat[i] < north && 
+                            mAirepLon[i] > west && mAirepLon[i] < east) {
+                        Airep a = new Airep();
+                        a.rawText = mAirepText[i];
+                        a.time = mAirepTime[i];
+                        a.lon = mAirepLon[i];
+                        a.lat = mAirepLat[i];
+                        a.reportType = mAirepType[i];
+                        list.add(a);
+                    }
+                }
+            }
+        }
+        return list;
+    }
+    
+    /**
+     * 
+     * @return all AIRMETs/SIGMETs
+     */
+    public LinkedList<AirSigMet> getAirSigMets() {
+        LinkedList<AirSigMet> list = new LinkedList<AirSigMet>();
+        for(int i = 0; i < mAirSig.length; i++) {
+            String row[] = mAirSig[i];
+            AirSigMet a = new AirSigMet();
+            a.rawText = row[0];
+            a.timeFrom = row[1];
+            a.timeTo = row[2];
+            a.points = row[3];
+            a.minFt = row[4];
+            a.maxFt = row[5];
+            a.movementDeg = row[6];
+            a.movementKt = row[7];
+            a.hazard = row[8];
+            a.severity = row[9];
+            a.reportType = row[10];
+            list.add(a);
+        }
+        return list;
+    }
+    
+    /**
+     * 
+     * @return number of reports of all kinds
+     */
+    public int getCount() {
+        return mMetarText.length + mTafText.length + mWindsStation.length + 
+                mAirepText.length + mAirSig.length;
+    }
+}
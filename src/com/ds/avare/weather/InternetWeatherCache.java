@@ -73,6 +73,11 @@ public class InternetWeatherCache {
         public void run() {
             try {
                 
+                /*
+                 * Weather database may be new, take it in memory
+                 */
+                mService.getDBResource().loadWeather();
+                
                 /*
                  * Create a list of air/sigmets
                  */
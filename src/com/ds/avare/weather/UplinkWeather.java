@@ -0,0 +1,508 @@
+/*
+Copyright (c) 2012, Zubair Khan (governer@gmail.com) 
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    *     * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    *
+    *     THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package com.ds.avare.weather;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import com.ds.avare.gdl90.ExpiryWheel;
+import com.ds.avare.gdl90.ProductType;
+
+/**
+ * 
+ * @author zkhan
+ *
+ * Text weather received over ADS-B (FIS-B product 413), newest per station,
+ * parsed straight from the decoded characters. Reports expire after 
+ * ProductType.TTL_TEXT. Written by the decoder, read by database queries.
+ * Reports are not changed once stored; a report given a location is replaced by a copy.
+ *
+ */
+public class UplinkWeather {
+
+    public static final int METAR = 0;
+    public static final int TAF = 1;
+    public static final int PIREP = 2;
+    public static final int WINDS = 3;
+    private static final int TYPES = 4;
+    
+    /*
+     * Winds aloft levels, in order of WindsAloft fields
+     */
+    private static final int LEVELS[] = {3000, 6000, 9000, 12000, 18000, 24000, 30000, 34000, 39000};
+    
+    /*
+     * Most PIREPs kept
+     */
+    private static final int MAX_PIREPS = 256;
+    
+    /**
+     * One report
+     */
+    public static class Report {
+        private int mType;
+        private String mKey;
+        private String mStation;
+        private String mTime;
+        private String mText;
+        private String mLevels[];
+        private ExpiryWheel.Entry mExpiry;
+        private float mLon;
+        private float mLat;
+        private boolean mLocated;
+        
+        public String getStation() {
+            return mStation;
+        }
+
+        /**
+         * 
+         * @return time as sent, like 261654Z
+         */
+        public String getTime() {
+            return mTime;
+        }
+
+        /**
+         * 
+         * @return report from station ID on
+         */
+        public String getText() {
+            return mText;
+        }
+
+        /**
+         * 
+         * @return winds at LEVELS, empty if not reported, null if not winds
+         */
+        public String[] getLevels() {
+            return mLevels;
+        }
+        
+        /**
+         * 
+         * @return true if location was looked for, found or not
+         */
+        public boolean isLocated() {
+            return mLocated;
+        }
+        
+        /**
+         * 
+         * @return NaN if not known
+         */
+        public float getLon() {
+            return mLon;
+        }
+
+        public float getLat() {
+            return mLat;
+        }
+    }
+    
+    private static UplinkWeather mInstance;
+    
+    private ArrayList<HashMap<String, Report>> mReports;
+    private ExpiryWheel mExpiry;
+    
+    /*
+     * Station locations found so far
+     */
+    private HashMap<String, float[]> mLocations;
+    
+    /**
+     * 
+     */
+    private UplinkWeather() {
+        mReports = new ArrayList<HashMap<String, Report>>(TYPES);
+        for(int i = 0; i < TYPES; i++) {
+            mReports.add(new HashMap<String, Report>());
+        }
+        mExpiry = new ExpiryWheel(1024, 5000);
+        mLocations = new HashMap<String, float[]>();
+    }
+    
+    /**
+     * 
+     * @return
+     */
+    public static synchronized UplinkWeather getInstance() {
+        if(null == mInstance) {
+            mInstance = new UplinkWeather();
+        }
+        return mInstance;
+    }
+    
+    /**
+     * KBOS is BOS in database queries
+     * @param station
+     * @return
+     */
+    private static String normalize(String station) {
+        if(station.length() == 4 && station.charAt(0) == 'K') {
+            return station.substring(1);
+        }
+        return station;
+    }
+    
+    /**
+     * 
+     * @param c
+     * @return
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+    
+    /**
+     * 
+     * @param c
+     * @param start
+     * @param end
+     * @return index of first non space at or after start
+     */
+    private static int skipSpace(char c[], int start, int end) {
+        while(start < end && isSpace(c[start])) {
+            start++;
+        }
+        return start;
+    }
+    
+    /**
+     * 
+     * @param c
+     * @param start
+     * @param end
+     * @return index after token starting at start
+     */
+    private static int skipToken(char c[], int start, int end) {
+        while(start < end && !isSpace(c[start])) {
+            start++;
+        }
+        return start;
+    }
+    
+    /**
+     * 
+     * @param c
+     * @param start
+     * @param end
+     * @param s
+     * @return true if token at start begins with s
+     */
+    private static boolean startsWith(char c[], int start, int end, String s) {
+        if(end - start < s.length()) {
+            return false;
+        }
+        for(int i = 0; i < s.length(); i++) {
+            if(c[start + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Add or replace a report from text like TYPE STATION TIME BODY
+     * @param c decoded chars
+     * @param start
+     * @param end
+     * @param now ms
+     * @return true if a report was stored
+     */
+    public synchronized boolean put(char c[], int start, int end, long now) {
+        expire(now);
+        
+        int t0 = skipSpace(c, start, end);
+        int t1 = skipToken(c, t0, end);
+        int type;
+        if(startsWith(c, t0, t1, "METAR") || startsWith(c, t0, t1, "SPECI")) {
+            type = METAR;
+        }
+        else if(startsWith(c, t0, t1, "TAF")) {
+            type = TAF;
+        }
+        else if(startsWith(c, t0, t1, "PIREP")) {
+            type = PIREP;
+        }
+        else if(startsWith(c, t0, t1, "WINDS")) {
+            type = WINDS;
+        }
+        else {
+            return false;
+        }
+        
+        int s0 = skipSpace(c, t1, end);
+        int s1 = skipToken(c, s0, end);
+        int m0 = skipSpace(c, s1, end);
+        int m1 = skipToken(c, m0, end);
+        if(s0 == s1 || m0 == m1) {
+            return false;
+        }
+        
+        /*
+         * Trim end
+         */
+        while(end > s0 && isSpace(c[end - 1])) {
+            end--;
+        }
+        
+        String station = normalize(new String(c, s0, s1 - s0));
+        String text = new String(c, s0, end - s0);
+        
+        /*
+         * PIREPs are many per station, keep each
+         */
+        String key = (PIREP == type) ? text : station;
+        HashMap<String, Report> reports = mReports.get(type);
+        Report old = reports.get(key);
+        if(null != old) {
+            mExpiry.cancel(old.mExpiry);
+        }
+        else if(PIREP == type && reports.size() >= MAX_PIREPS) {
+            /*
+             * Full, make room by dropping the one to expire soonest
+             */
+            Report soonest = null;
+            for(Report p : reports.values()) {
+                if(null == soonest || p.mExpiry.getDeadline() < soonest.mExpiry.getDeadline()) {
+                    soonest = p;
+                }
+            }
+            mExpiry.cancel(soonest.mExpiry);
+            reports.remove(soonest.mKey);
+        }
+        
+        /*
+         * New report each time, as readers may hold the old one
+         */
+        Report r = new Report();
+        r.mType = type;
+        r.mKey = key;
+        r.mExpiry = new ExpiryWheel.Entry(r, type);
+        r.mStation = station;
+        r.mTime = new String(c, m0, m1 - m0);
+        r.mText = text;
+        r.mLevels = (WINDS == type) ? parseWinds(c, m1, end) : null;
+        float ll[] = mLocations.get(station);
+        r.mLon = (null == ll) ? Float.NaN : ll[0];
+        r.mLat = (null == ll) ? Float.NaN : ll[1];
+        r.mLocated = null != ll;
+        reports.put(key, r);
+        mExpiry.schedule(r.mExpiry, now + ProductType.TTL_TEXT);
+        return true;
+    }
+    
+    /**
+     * Winds like FT 3000 6000 ... 39000 then a value for each level. 
+     * Levels not reported (3000 at high stations) are blank, so values 
+     * line up with the last levels.
+     * @param c
+     * @param start
+     * @param end
+     * @return
+     */
+    private static String[] parseWinds(char c[], int start, int end) {
+        String levels[] = new String[LEVELS.length];
+        for(int i = 0; i < levels.length; i++) {
+            levels[i] = "";
+        }
+        
+        int i = skipSpace(c, start, end);
+        if(!startsWith(c, i, end, "FT")) {
+            return levels;
+        }
+        i = skipToken(c, i, end);
+        
+        /*
+         * Count levels listed, till end of line
+         */
+        int listed = 0;
+        while(i < end && c[i] != '\n') {
+            if(isSpace(c[i])) {
+                i++;
+                continue;
+            }
+            i = skipToken(c, i, end);
+            listed++;
+        }
+        listed = Math.min(listed, LEVELS.length);
+        
+        /*
+         * Values
+         */
+        String values[] = new String[listed];
+        int count = 0;
+        while(count < listed) {
+            int a = skipSpace(c, i, end);
+            int b = skipToken(c, a, end);
+            if(a == b) {
+                break;
+            }
+            values[count++] = new String(c, a, b - a);
+            i = b;
+        }
+        for(int v = 0; v < count; v++) {
+            levels[listed - count + v] = values[v];
+        }
+        return levels;
+    }
+    
+    /**
+     * Remove old reports
+     * @param now ms
+     */
+    private void expire(long now) {
+        mExpiry.advance(now, mExpired);
+    }
+    
+    private ExpiryWheel.Listener mExpired = new ExpiryWheel.Listener() {
+        @Override
+        public void expired(ExpiryWheel.Entry e) {
+            Report r = (Report)e.getOwner();
+            mReports.get(r.mType).remove(r.mKey);
+        }
+    };
+    
+    /**
+     * 
+     * @param type
+     * @param station as in database queries, BOS for KBOS
+     * @return null if none
+     */
+    public synchronized Report get(int type, String station) {
+        expire(System.currentTimeMillis());
+        return mReports.get(type).get(station);
+    }
+    
+    /**
+     * 
+     * @param type
+     * @return all reports of a type
+     */
+    public synchronized LinkedList<Report> getAll(int type) {
+        expire(System.currentTimeMillis());
+        return new LinkedList<Report>(mReports.get(type).values());
+    }
+    
+    /**
+     * Remember where a station is, found from the database
+     * @param station
+     * @param lon NaN if not found
+     * @param lat NaN if not found
+     */
+    public synchronized void setLocation(String station, float lon, float lat) {
+        mLocations.put(station, new float[] {lon, lat});
+        for(int type = 0; type < TYPES; type++) {
+            for(Map.Entry<String, Report> e : mReports.get(type).entrySet()) {
+                Report r = e.getValue();
+                if(!r.mStation.equals(station)) {
+                    continue;
+                }
+                
+                /*
+                 * Readers may hold the old one, so swap in a located copy
+                 */
+                Report c = new Report();
+                c.mType = r.mType;
+                c.mKey = r.mKey;
+                c.mExpiry = new ExpiryWheel.Entry(c, r.mType);
+                c.mStation = r.mStation;
+                c.mTime = r.mTime;
+                c.mText = r.mText;
+                c.mLevels = r.mLevels;
+                c.mLon = lon;
+                c.mLat = lat;
+                c.mLocated = true;
+                long deadline = r.mExpiry.getDeadline();
+                mExpiry.cancel(r.mExpiry);
+                mExpiry.schedule(c.mExpiry, deadline);
+                e.setValue(c);
+            }
+        }
+    }
+    
+    /**
+     * Flight category from METAR text, as in weather database
+     * @param text
+     * @return VFR, MVFR, IFR or LIFR
+     */
+    public static String getFlightCategory(String text) {
+        int ceiling = Integer.MAX_VALUE;
+        double visibility = Double.MAX_VALUE;
+        String tokens[] = text.split(" ");
+        for(int i = 0; i < tokens.length; i++) {
+            String t = tokens[i];
+            if((t.startsWith("BKN") || t.startsWith("OVC")) && t.length() >= 6) {
+                ceiling = Math.min(ceiling, parseHundreds(t.substring(3, 6)));
+            }
+            else if(t.startsWith("VV") && t.length() >= 5) {
+                ceiling = Math.min(ceiling, parseHundreds(t.substring(2, 5)));
+            }
+            else if(t.endsWith("SM")) {
+                String v = t.substring(0, t.length() - 2).replace("P", "").replace("M", "");
+                double vis = parseFraction(v);
+                if(v.contains("/") && i > 0 && tokens[i - 1].matches("[0-9]")) {
+                    /*
+                     * Like 1 1/2SM
+                     */
+                    vis += Integer.parseInt(tokens[i - 1]);
+                }
+                visibility = vis;
+            }
+        }
+        if(ceiling < 500 || visibility < 1) {
+            return "LIFR";
+        }
+        if(ceiling < 1000 || visibility < 3) {
+            return "IFR";
+        }
+        if(ceiling <= 3000 || visibility <= 5) {
+            return "MVFR";
+        }
+        return "VFR";
+    }
+    
+    /**
+     * 
+     * @param s
+     * @return
+     */
+    private static int parseHundreds(String s) {
+        try {
+            return Integer.parseInt(s) * 100;
+        }
+        catch (Exception e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 
+     * @param s like 3, or 1/2
+     * @return
+     */
+    private static double parseFraction(String s) {
+        try {
+            int slash = s.indexOf('/');
+            if(slash > 0) {
+                return Double.parseDouble(s.substring(0, slash)) / Double.parseDouble(s.substring(slash + 1));
+            }
+            return Double.parseDouble(s);
+        }
+        catch (Exception e) {
+            return Double.MAX_VALUE;
+        }
+    }
+}